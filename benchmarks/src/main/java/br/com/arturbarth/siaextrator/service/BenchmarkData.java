@@ -0,0 +1,103 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ResultSchema;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dados e serviços montados fora do Spring para os benchmarks.
+ */
+final class BenchmarkData {
+
+    // Linhas distintas geradas por conjunto de dados; os benchmarks as percorrem em ciclo
+    static final int DISTINCT_ROWS = 1024;
+
+    private BenchmarkData() {
+    }
+
+    static ExtractionMetrics.ClusterMeters clusterMeters() {
+        return new ExtractionMetrics.ClusterMeters(new SimpleMeterRegistry(), "benchmark");
+    }
+
+    static ExtractionMetrics extractionMetrics() {
+        ExtractionMetrics metrics = new ExtractionMetrics();
+        setField(metrics, "meterRegistry", new SimpleMeterRegistry());
+        return metrics;
+    }
+
+    /**
+     * CsvService com a configuração padrão da aplicação, gravando em {@code storagePath}.
+     */
+    static CsvService csvService(String storagePath, String compression) {
+        CsvService csvService = new CsvService();
+        setField(csvService, "csvStoragePath", storagePath);
+        setField(csvService, "csvDelimiter", ",");
+        setField(csvService, "csvEncoding", "UTF-8");
+        setField(csvService, "includeHeader", true);
+        setField(csvService, "compression", compression);
+        setField(csvService, "compressionLevel", -1);
+        setField(csvService, "extractionMetrics", extractionMetrics());
+        return csvService;
+    }
+
+    /**
+     * Linhas já convertidas pelo executor, com os mesmos tipos Java que chegam aos sinks.
+     */
+    static Rows convertedRows(SyntheticResultSet.TypeMix mix, int columns, double specialRatio) {
+        SyntheticResultSet resultSet = new SyntheticResultSet(mix, columns, DISTINCT_ROWS, 0.05, specialRatio, 42);
+        CollectingSink sink = new CollectingSink();
+        try {
+            new RdsExecutorService().processResultSet(resultSet.resultSet(), sink, null, Long.MAX_VALUE, clusterMeters());
+        } catch (Exception e) {
+            throw new IllegalStateException("Falha ao gerar as linhas do benchmark: " + e.getMessage(), e);
+        }
+        return new Rows(sink.schema, sink.rows.toArray(new Object[0][]));
+    }
+
+    static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Campo " + name + " não encontrado em " + target.getClass().getSimpleName(), e);
+        }
+    }
+
+    static final class Rows {
+        final ResultSchema schema;
+        final Object[][] values;
+
+        Rows(ResultSchema schema, Object[][] values) {
+            this.schema = schema;
+            this.values = values;
+        }
+    }
+
+    // O array recebido é reutilizado pelo executor; cada linha é copiada
+    private static final class CollectingSink implements RowSink {
+        private final List<Object[]> rows = new ArrayList<>();
+        private ResultSchema schema;
+
+        @Override
+        public void start(ResultSchema schema) {
+            this.schema = schema;
+        }
+
+        @Override
+        public void accept(Object[] values) {
+            rows.add(values.clone());
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void abort() {
+        }
+    }
+}
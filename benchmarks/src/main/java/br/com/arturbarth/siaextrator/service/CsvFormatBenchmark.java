@@ -0,0 +1,61 @@
+package br.com.arturbarth.siaextrator.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatação de valores para CSV ({@code CsvService.formatCsvValue}): conversão para texto,
+ * escape de aspas e detecção de delimitador/quebra de linha. Tempo e alocação por valor;
+ * {@code specialRatio} é a fração dos textos que exigem escape.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CsvFormatBenchmark {
+
+    private static final int COLUMNS = 16;
+
+    private static final int VALUES = BenchmarkData.DISTINCT_ROWS * COLUMNS;
+
+    @Param({"NUMERIC", "TEXT", "MIXED"})
+    private String mix;
+
+    @Param({"0.0", "0.1"})
+    private double specialRatio;
+
+    private CsvService csvService;
+
+    private Object[][] rows;
+
+    @Setup
+    public void setUp() {
+        csvService = BenchmarkData.csvService(System.getProperty("java.io.tmpdir"), "none");
+        rows = BenchmarkData.convertedRows(SyntheticResultSet.TypeMix.valueOf(mix), COLUMNS, specialRatio).values;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void formatCsvValue(Blackhole blackhole) {
+        for (Object[] row : rows) {
+            for (Object value : row) {
+                blackhole.consume(csvService.formatCsvValue(value));
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ResultSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Gravação de um arquivo de resultado pelo {@code CsvRowSink}: linhas no layout do
+ * consolidado (cluster, database e source_file à frente), com ou sem compressão. É o
+ * processamento por linha do resultado consolidado, que no download só concatena os
+ * arquivos. Tempo por arquivo completo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CsvWriteBenchmark {
+
+    @Param({"4", "16", "64"})
+    private int columns;
+
+    @Param({"NUMERIC", "TEXT", "MIXED"})
+    private String mix;
+
+    @Param({"100000"})
+    private int rows;
+
+    @Param({"none", "gzip", "zstd"})
+    private String compression;
+
+    private Path storagePath;
+
+    private CsvService csvService;
+
+    private ResultSchema schema;
+
+    private Object[][] values;
+
+    @Setup
+    public void setUp() throws IOException {
+        storagePath = Files.createTempDirectory("csv-write-benchmark");
+        csvService = BenchmarkData.csvService(storagePath.toString(), compression);
+        BenchmarkData.Rows converted = BenchmarkData.convertedRows(
+                SyntheticResultSet.TypeMix.valueOf(mix), columns, 0.1);
+        schema = converted.schema;
+        values = converted.values;
+    }
+
+    @Benchmark
+    public String writeCsv() throws IOException {
+        // Mesmo nome a cada invocação: o arquivo publicado substitui o anterior
+        CsvService.CsvRowSink sink = csvService.openRowSink("benchmark", "cluster", "database");
+        sink.start(schema);
+        for (int i = 0; i < rows; i++) {
+            sink.accept(values[i & (BenchmarkData.DISTINCT_ROWS - 1)]);
+        }
+        sink.finish();
+        return sink.getFilePath();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(storagePath)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
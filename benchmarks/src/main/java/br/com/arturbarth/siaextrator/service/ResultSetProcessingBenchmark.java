@@ -0,0 +1,89 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.RdsExecutionResult;
+import br.com.arturbarth.siaextrator.dto.ResultSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leitura das linhas pelo {@link RdsExecutorService} ({@code processResultSet} e
+ * {@code getColumnValue}) com um ResultSet sintético, sem banco e sem gravação: mede a
+ * conversão dos valores e o custo por linha do executor. Tempo por ResultSet completo;
+ * com {@code -prof gc} a alocação por ResultSet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ResultSetProcessingBenchmark {
+
+    @Param({"4", "16", "64"})
+    private int columns;
+
+    @Param({"NUMERIC", "TEXT", "MIXED"})
+    private String mix;
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private RdsExecutorService executor;
+
+    private SyntheticResultSet resultSet;
+
+    private ExtractionMetrics.ClusterMeters meters;
+
+    private BlackholeSink sink;
+
+    @Setup
+    public void setUp() {
+        executor = new RdsExecutorService();
+        resultSet = new SyntheticResultSet(SyntheticResultSet.TypeMix.valueOf(mix), columns, rows, 0.05, 0.1, 42);
+        meters = BenchmarkData.clusterMeters();
+        sink = new BlackholeSink();
+    }
+
+    @Benchmark
+    public RdsExecutionResult processResultSet(Blackhole blackhole) throws Exception {
+        resultSet.reset();
+        sink.blackhole = blackhole;
+        return executor.processResultSet(resultSet.resultSet(), sink, null, Long.MAX_VALUE, meters);
+    }
+
+    // Consome os valores de cada linha sem gravá-los
+    private static final class BlackholeSink implements RowSink {
+        private Blackhole blackhole;
+
+        @Override
+        public void start(ResultSchema schema) {
+        }
+
+        @Override
+        public void accept(Object[] values) {
+            for (Object value : values) {
+                blackhole.consume(value);
+            }
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void abort() {
+        }
+    }
+}
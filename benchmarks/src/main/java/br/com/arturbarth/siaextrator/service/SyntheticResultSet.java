@@ -0,0 +1,256 @@
+package br.com.arturbarth.siaextrator.service;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * ResultSet em memória para medir o processamento das linhas sem banco.
+ *
+ * As linhas vêm de um conjunto fixo gerado com semente fixa e percorrido em ciclo até
+ * {@code rowCount}; {@link #reset()} volta ao início. Os objetos são reaproveitados entre
+ * as linhas, então a alocação medida é a do executor e do sink, não a do driver.
+ *
+ * O {@link ResultSet} entregue ao executor é um {@link Proxy}: atende {@code next},
+ * {@code wasNull}, {@code getMetaData} e os getters por índice usados na conversão, e
+ * lança {@link SQLFeatureNotSupportedException} para o restante da interface.
+ */
+final class SyntheticResultSet {
+
+    /**
+     * Tipos das colunas, repetidos em ciclo até a largura pedida.
+     */
+    enum TypeMix {
+        NUMERIC(Types.INTEGER, Types.BIGINT, Types.NUMERIC, Types.DOUBLE),
+        TEXT(Types.VARCHAR),
+        MIXED(Types.BIGINT, Types.VARCHAR, Types.TIMESTAMP, Types.NUMERIC, Types.BIT, Types.DATE, Types.DOUBLE,
+                Types.VARCHAR, Types.BINARY);
+
+        private final int[] types;
+
+        TypeMix(int... types) {
+            this.types = types;
+        }
+
+        int typeOf(int columnIndex) {
+            return types[columnIndex % types.length];
+        }
+    }
+
+    // Potência de dois: o índice da linha no ciclo sai de uma máscara
+    private static final int DISTINCT_ROWS = 1024;
+
+    private static final LocalDateTime BASE_TIMESTAMP = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final int[] columnTypes;
+    private final Object[][] rows;
+    private final int rowCount;
+    private final ResultSetMetaData metaData;
+    private final ResultSet resultSet;
+    private int cursor = -1;
+    private Object[] current;
+    private boolean lastWasNull;
+
+    /**
+     * @param nullRatio fração dos valores nulos, em todos os tipos
+     * @param specialRatio fração dos textos com vírgula, aspas ou quebra de linha (exigem escape no CSV)
+     */
+    SyntheticResultSet(TypeMix mix, int columnCount, int rowCount, double nullRatio, double specialRatio, long seed) {
+        this.columnTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnTypes[i] = mix.typeOf(i);
+        }
+        this.rowCount = rowCount;
+        this.metaData = proxy(ResultSetMetaData.class, this::describe);
+        this.resultSet = proxy(ResultSet.class, this::invoke);
+
+        Random random = new Random(seed);
+        this.rows = new Object[DISTINCT_ROWS][columnCount];
+        for (Object[] row : rows) {
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = random.nextDouble() < nullRatio ? null : randomValue(columnTypes[i], random, specialRatio);
+            }
+        }
+    }
+
+    ResultSet resultSet() {
+        return resultSet;
+    }
+
+    // Valores da linha no ciclo, na ordem das colunas
+    Object[] rowValues(int row) {
+        return rows[row & (DISTINCT_ROWS - 1)];
+    }
+
+    void reset() {
+        cursor = -1;
+        current = null;
+    }
+
+    private static Object randomValue(int type, Random random, double specialRatio) {
+        switch (type) {
+            case Types.INTEGER:
+                return random.nextInt(1_000_000);
+            case Types.BIGINT:
+                return random.nextLong() >>> 20;
+            case Types.NUMERIC:
+                return BigDecimal.valueOf(random.nextLong(100_000_000_000L), 2);
+            case Types.DOUBLE:
+                return random.nextDouble() * 1_000_000;
+            case Types.BIT:
+                return random.nextBoolean();
+            case Types.TIMESTAMP:
+                return Timestamp.valueOf(BASE_TIMESTAMP.plusSeconds(random.nextInt(365 * 24 * 3600)));
+            case Types.DATE:
+                return Date.valueOf(LocalDate.of(2024, 1, 1).plusDays(random.nextInt(3650)));
+            case Types.BINARY:
+                byte[] bytes = new byte[8 + random.nextInt(56)];
+                random.nextBytes(bytes);
+                return bytes;
+            default:
+                return randomText(random, specialRatio);
+        }
+    }
+
+    private static String randomText(Random random, double specialRatio) {
+        int length = 4 + random.nextInt(37);
+        StringBuilder text = new StringBuilder(length + 1);
+        for (int i = 0; i < length; i++) {
+            text.append(random.nextInt(8) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+        }
+        if (random.nextDouble() < specialRatio) {
+            char special = ",\"\n".charAt(random.nextInt(3));
+            text.insert(random.nextInt(length), special);
+        }
+        return text.toString();
+    }
+
+    private Object invoke(Object proxy, Method method, Object[] args) throws SQLFeatureNotSupportedException {
+        String name = method.getName();
+        switch (name) {
+            case "next":
+                return next();
+            case "wasNull":
+                return lastWasNull;
+            case "getMetaData":
+                return metaData;
+            case "close":
+                return null;
+            case "isClosed":
+                return false;
+            default:
+                break;
+        }
+        if (args != null && args.length == 1 && args[0] instanceof Integer columnIndex) {
+            return getter(name, columnIndex);
+        }
+        return objectMethod(proxy, method, args);
+    }
+
+    // Getters por índice, com os padrões do JDBC para valores nulos em tipos primitivos
+    private Object getter(String name, int columnIndex) throws SQLFeatureNotSupportedException {
+        switch (name) {
+            case "getObject":
+            case "getBigDecimal":
+            case "getTimestamp":
+            case "getDate":
+            case "getTime":
+            case "getBytes":
+                return value(columnIndex);
+            case "getString": {
+                Object value = value(columnIndex);
+                return value != null ? value.toString() : null;
+            }
+            case "getInt": {
+                Object value = value(columnIndex);
+                return value != null ? ((Number) value).intValue() : 0;
+            }
+            case "getLong": {
+                Object value = value(columnIndex);
+                return value != null ? ((Number) value).longValue() : 0L;
+            }
+            case "getFloat": {
+                Object value = value(columnIndex);
+                return value != null ? ((Number) value).floatValue() : 0f;
+            }
+            case "getDouble": {
+                Object value = value(columnIndex);
+                return value != null ? ((Number) value).doubleValue() : 0d;
+            }
+            case "getBoolean": {
+                Object value = value(columnIndex);
+                return value != null && (Boolean) value;
+            }
+            default:
+                throw unsupported(name);
+        }
+    }
+
+    private boolean next() {
+        if (cursor + 1 >= rowCount) {
+            current = null;
+            return false;
+        }
+        cursor++;
+        current = rowValues(cursor);
+        return true;
+    }
+
+    private Object value(int columnIndex) {
+        Object value = current[columnIndex - 1];
+        lastWasNull = value == null;
+        return value;
+    }
+
+    // Metadados: nomes col_1..col_n, tipos do mix e precisão/escala do NUMERIC(15,2)
+    private Object describe(Object proxy, Method method, Object[] args) throws SQLFeatureNotSupportedException {
+        switch (method.getName()) {
+            case "getColumnCount":
+                return columnTypes.length;
+            case "getColumnName":
+            case "getColumnLabel":
+                return "col_" + args[0];
+            case "getColumnType":
+                return columnTypes[(Integer) args[0] - 1];
+            case "getPrecision":
+                return columnTypes[(Integer) args[0] - 1] == Types.NUMERIC ? 15 : 0;
+            case "getScale":
+                return columnTypes[(Integer) args[0] - 1] == Types.NUMERIC ? 2 : 0;
+            default:
+                return objectMethod(proxy, method, args);
+        }
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args) throws SQLFeatureNotSupportedException {
+        switch (method.getName()) {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "SyntheticResultSet";
+            case "isWrapperFor":
+                return false;
+            default:
+                throw unsupported(method.getName());
+        }
+    }
+
+    private static SQLFeatureNotSupportedException unsupported(String methodName) {
+        return new SQLFeatureNotSupportedException("Não suportado pelo ResultSet sintético: " + methodName);
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(SyntheticResultSet.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
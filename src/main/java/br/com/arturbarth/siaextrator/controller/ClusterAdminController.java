@@ -2,6 +2,7 @@ package br.com.arturbarth.siaextrator.controller;
 
 import br.com.arturbarth.siaextrator.dto.ClusterRequestDTO;
 import br.com.arturbarth.siaextrator.dto.ClusterResponseDTO;
+import br.com.arturbarth.siaextrator.dto.ConnectionPoolStatsDTO;
 import br.com.arturbarth.siaextrator.service.ClusterService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -93,7 +94,7 @@ public class ClusterAdminController {
     }
     
     /**
-     * Descobrir bancos de dados do cluster
+     * Descobrir bancos de dados do cluster; a resposta inclui o relatório do que mudou no catálogo
      * POST /api/v1/clusters/{id}/discover
      */
     @PostMapping("/{id}/discover")
@@ -120,4 +121,15 @@ public class ClusterAdminController {
         
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * Estatísticas dos pools de conexão do cluster
+     * GET /api/v1/clusters/{id}/pool-stats
+     */
+    @GetMapping("/{id}/pool-stats")
+    public ResponseEntity<ConnectionPoolStatsDTO> getPoolStats(@PathVariable Long id) {
+        logger.info("Recebida requisição de estatísticas de pool do cluster ID: {}", id);
+        ConnectionPoolStatsDTO stats = clusterService.getPoolStats(id);
+        return ResponseEntity.ok(stats);
+    }
 }
\ No newline at end of file
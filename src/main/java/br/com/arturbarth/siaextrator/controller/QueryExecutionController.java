@@ -1,20 +1,36 @@
 package br.com.arturbarth.siaextrator.controller;
 
+import br.com.arturbarth.siaextrator.dto.DispatcherStatsDTO;
+import br.com.arturbarth.siaextrator.dto.ExecutionPlan;
+import br.com.arturbarth.siaextrator.dto.KeysetPageDTO;
 import br.com.arturbarth.siaextrator.dto.QueryExecutionRequestDTO;
 import br.com.arturbarth.siaextrator.dto.QueryExecutionResponseDTO;
-import br.com.arturbarth.siaextrator.service.CsvService;
+import br.com.arturbarth.siaextrator.dto.QueryExecutionResultDTO;
+import br.com.arturbarth.siaextrator.dto.QueryExecutionSummaryDTO;
+import br.com.arturbarth.siaextrator.dto.QueryPreviewDTO;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionStatus;
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
+import br.com.arturbarth.siaextrator.service.CompressionCodec;
+import br.com.arturbarth.siaextrator.service.ExecutionProgressTracker;
 import br.com.arturbarth.siaextrator.service.QueryOrchestratorService;
+import br.com.arturbarth.siaextrator.service.ResultDownloadService;
+import br.com.arturbarth.siaextrator.service.ResultManifest;
+import br.com.arturbarth.siaextrator.service.TargetDispatcher;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 @RestController
@@ -28,7 +44,13 @@ public class QueryExecutionController {
     private QueryOrchestratorService queryOrchestratorService;
     
     @Autowired
-    private CsvService csvService;
+    private ResultDownloadService resultDownloadService;
+    
+    @Autowired
+    private TargetDispatcher targetDispatcher;
+    
+    @Autowired
+    private ExecutionProgressTracker executionProgressTracker;
     
     /**
      * Submeter nova execução de query
@@ -43,6 +65,57 @@ public class QueryExecutionController {
         return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
     }
     
+    /**
+     * Montar o plano de execução sem executar (dry run): clusters, bancos alvo e limites vigentes
+     * POST /api/v1/query-executions/plan
+     */
+    @PostMapping("/plan")
+    public ResponseEntity<ExecutionPlan> planQuery(@Valid @RequestBody QueryExecutionRequestDTO requestDTO) {
+        logger.info("Recebida requisição de plano de execução do usuário: {}", requestDTO.getUserId());
+        
+        ExecutionPlan plan = queryOrchestratorService.planQuery(requestDTO);
+        
+        return ResponseEntity.ok(plan);
+    }
+    
+    /**
+     * Prévia síncrona: as primeiras linhas (ou uma amostra percentual) de cada banco alvo, para validar a query
+     * POST /api/v1/query-executions/preview?rows=10&samplePercent=1
+     */
+    @PostMapping("/preview")
+    public ResponseEntity<QueryPreviewDTO> previewQuery(@Valid @RequestBody QueryExecutionRequestDTO requestDTO,
+                                                        @RequestParam(required = false) Integer rows,
+                                                        @RequestParam(required = false) Double samplePercent) {
+        logger.info("Recebida requisição de prévia do usuário: {}", requestDTO.getUserId());
+        
+        QueryPreviewDTO preview = queryOrchestratorService.previewQuery(requestDTO, rows, samplePercent);
+        
+        return ResponseEntity.ok(preview);
+    }
+    
+    /**
+     * Listar execuções do usuário, da mais recente para a mais antiga, paginadas por cursor (sem SQL e sem resultados)
+     * GET /api/v1/query-executions?userId=...&status=COMPLETED&cursor=...&limit=50
+     */
+    @GetMapping
+    public ResponseEntity<KeysetPageDTO<QueryExecutionSummaryDTO>> listExecutions(@RequestParam String userId,
+                                                                                 @RequestParam(required = false) QueryExecutionStatus status,
+                                                                                 @RequestParam(required = false) String cursor,
+                                                                                 @RequestParam(required = false) Integer limit) {
+        logger.info("Listando execuções do usuário: {}", userId);
+        
+        return ResponseEntity.ok(queryOrchestratorService.listUserExecutions(userId, status, cursor, limit));
+    }
+    
+    /**
+     * Métricas de execução dos bancos neste nó (modo de threads, concorrência e vazão)
+     * GET /api/v1/query-executions/dispatcher-stats
+     */
+    @GetMapping("/dispatcher-stats")
+    public ResponseEntity<DispatcherStatsDTO> getDispatcherStats() {
+        return ResponseEntity.ok(targetDispatcher.getStats());
+    }
+    
     /**
      * Consultar status de execução
      * GET /api/v1/query-executions/{executionId}
@@ -57,7 +130,44 @@ public class QueryExecutionController {
     }
     
     /**
-     * Listar execuções do usuário
+     * Consultar status de execução sem o SQL e sem os resultados por banco
+     * GET /api/v1/query-executions/{executionId}/summary
+     */
+    @GetMapping("/{executionId}/summary")
+    public ResponseEntity<QueryExecutionSummaryDTO> getExecutionSummary(@PathVariable String executionId) {
+        logger.debug("Consultando resumo da execução: {}", executionId);
+        
+        return ResponseEntity.ok(queryOrchestratorService.getExecutionSummary(executionId));
+    }
+    
+    /**
+     * Listar os resultados por banco da execução, paginados por cursor
+     * GET /api/v1/query-executions/{executionId}/results?status=FAILED&cursor=...&limit=50
+     */
+    @GetMapping("/{executionId}/results")
+    public ResponseEntity<KeysetPageDTO<QueryExecutionResultDTO>> listExecutionResults(@PathVariable String executionId,
+                                                                                      @RequestParam(required = false) QueryExecutionStatus status,
+                                                                                      @RequestParam(required = false) String cursor,
+                                                                                      @RequestParam(required = false) Integer limit) {
+        logger.debug("Listando resultados da execução: {}", executionId);
+        
+        return ResponseEntity.ok(queryOrchestratorService.listExecutionResults(executionId, status, cursor, limit));
+    }
+    
+    /**
+     * Acompanhar o progresso em tempo real (Server-Sent Events): um evento "progress" com o estado atual
+     * e outro a cada banco concluído, com linhas/s e ETA; o stream é encerrado quando a execução termina
+     * GET /api/v1/query-executions/{executionId}/progress
+     */
+    @GetMapping(value = "/{executionId}/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamProgress(@PathVariable String executionId) {
+        logger.debug("Assinatura de progresso da execução: {}", executionId);
+        
+        return executionProgressTracker.subscribe(executionId);
+    }
+    
+    /**
+     * Listar todas as execuções do usuário, completas e sem paginação (prefira GET /api/v1/query-executions?userId=)
      * GET /api/v1/query-executions/user/{userId}
      */
     @GetMapping("/user/{userId}")
@@ -70,37 +180,78 @@ public class QueryExecutionController {
     }
     
     /**
-     * Download do arquivo CSV consolidado
+     * Cancelar execução em andamento: interrompe as queries ativas e descarta os bancos ainda não iniciados
+     * POST /api/v1/query-executions/{executionId}/cancel
+     */
+    @PostMapping("/{executionId}/cancel")
+    public ResponseEntity<QueryExecutionResponseDTO> cancelExecution(@PathVariable String executionId) {
+        logger.info("Cancelando execução: {}", executionId);
+        
+        boolean cancelled = queryOrchestratorService.cancelExecution(executionId);
+        QueryExecutionResponseDTO response = queryOrchestratorService.getExecutionStatus(executionId);
+        
+        // Execução já finalizada: devolve o status atual com 409
+        return cancelled ? ResponseEntity.ok(response) : ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+    
+    /**
+     * Reexecutar apenas os bancos com falha, reaproveitando os arquivos dos bancos concluídos
+     * POST /api/v1/query-executions/{executionId}/retry
+     */
+    @PostMapping("/{executionId}/retry")
+    public ResponseEntity<QueryExecutionResponseDTO> retryFailedTargets(@PathVariable String executionId) {
+        logger.info("Reexecutando bancos com falha da execução: {}", executionId);
+        
+        boolean retried = queryOrchestratorService.retryFailedTargets(executionId);
+        QueryExecutionResponseDTO response = queryOrchestratorService.getExecutionStatus(executionId);
+        
+        // Execução em andamento ou sem bancos com falha: devolve o status atual com 409
+        return retried ? ResponseEntity.status(HttpStatus.ACCEPTED).body(response)
+                : ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+    
+    /**
+     * Cancelar execução (equivalente ao POST .../cancel)
+     * DELETE /api/v1/query-executions/{executionId}
+     */
+    @DeleteMapping("/{executionId}")
+    public ResponseEntity<QueryExecutionResponseDTO> deleteExecution(@PathVariable String executionId) {
+        return cancelExecution(executionId);
+    }
+    
+    /**
+     * Download do resultado consolidado: CSV único (suporta Range para retomada e download em partes)
+     * ou ZIP com os arquivos Parquet de cada banco
      * GET /api/v1/query-executions/{executionId}/download
      */
     @GetMapping("/{executionId}/download")
-    public ResponseEntity<ByteArrayResource> downloadResults(@PathVariable String executionId) {
+    public void downloadResults(@PathVariable String executionId,
+                                HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
         logger.info("Download de resultados solicitado para execução: {}", executionId);
         
-        try {
-            QueryExecutionResponseDTO execution = queryOrchestratorService.getExecutionStatus(executionId);
-            
-            if (execution.getS3ResultPath() == null) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            byte[] csvData = csvService.downloadCsvFile(execution.getS3ResultPath());
-            ByteArrayResource resource = new ByteArrayResource(csvData);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_DISPOSITION,
-                    "attachment; filename=" + executionId + "_results.csv");
-            headers.add(HttpHeaders.CONTENT_TYPE, "text/csv");
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(csvData.length)
-                    .contentType(MediaType.parseMediaType("application/octet-stream"))
-                    .body(resource);
-            
-        } catch (Exception e) {
-            logger.error("Erro no download de resultados para execução {}: {}", executionId, e.getMessage());
-            return ResponseEntity.internalServerError().build();
+        QueryExecutionSummaryDTO execution = queryOrchestratorService.getExecutionSummary(executionId);
+        
+        if (execution.getS3ResultPath() == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        
+        Path resultPath = Paths.get(execution.getS3ResultPath());
+        if (ResultManifest.isManifest(resultPath)) {
+            resultDownloadService.streamConsolidated(resultPath, executionId + "_results", request, response);
+            return;
+        }
+        
+        // Consolidados gravados antes do manifesto
+        ResultFormat format = ResultFormat.fromFileName(CompressionCodec.stripExtension(resultPath.getFileName().toString()));
+        
+        resultDownloadService.streamFile(
+                resultPath,
+                executionId + "_results" + format.getFileExtension(),
+                format.getContentType(),
+                request,
+                response
+        );
     }
 }
\ No newline at end of file
@@ -16,6 +16,7 @@ public class ClusterResponseDTO {
     private List<DatabaseInstanceDTO> databases;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private DiscoveryReportDTO discoveryReport; // Preenchido apenas na resposta de uma descoberta
     
     // Construtores
     public ClusterResponseDTO() {}
@@ -53,4 +54,7 @@ public class ClusterResponseDTO {
     
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    
+    public DiscoveryReportDTO getDiscoveryReport() { return discoveryReport; }
+    public void setDiscoveryReport(DiscoveryReportDTO discoveryReport) { this.discoveryReport = discoveryReport; }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package br.com.arturbarth.siaextrator.dto;
+
+import java.util.List;
+
+public class ConnectionPoolStatsDTO {
+    
+    private Long clusterId;
+    private String clusterAlias;
+    private Integer poolCount;
+    private Integer activeConnections;
+    private Integer idleConnections;
+    private Integer threadsAwaitingConnection;
+    private Long acquireCount = 0L;
+    private Double avgAcquireTimeMs = 0.0;
+    private Double maxAcquireTimeMs = 0.0;
+    private List<DatabasePoolStatsDTO> databases;
+    
+    // Construtores
+    public ConnectionPoolStatsDTO() {}
+    
+    // Getters e Setters
+    public Long getClusterId() { return clusterId; }
+    public void setClusterId(Long clusterId) { this.clusterId = clusterId; }
+    
+    public String getClusterAlias() { return clusterAlias; }
+    public void setClusterAlias(String clusterAlias) { this.clusterAlias = clusterAlias; }
+    
+    public Integer getPoolCount() { return poolCount; }
+    public void setPoolCount(Integer poolCount) { this.poolCount = poolCount; }
+    
+    public Integer getActiveConnections() { return activeConnections; }
+    public void setActiveConnections(Integer activeConnections) { this.activeConnections = activeConnections; }
+    
+    public Integer getIdleConnections() { return idleConnections; }
+    public void setIdleConnections(Integer idleConnections) { this.idleConnections = idleConnections; }
+    
+    public Integer getThreadsAwaitingConnection() { return threadsAwaitingConnection; }
+    public void setThreadsAwaitingConnection(Integer threadsAwaitingConnection) { this.threadsAwaitingConnection = threadsAwaitingConnection; }
+    
+    public Long getAcquireCount() { return acquireCount; }
+    public void setAcquireCount(Long acquireCount) { this.acquireCount = acquireCount; }
+    
+    public Double getAvgAcquireTimeMs() { return avgAcquireTimeMs; }
+    public void setAvgAcquireTimeMs(Double avgAcquireTimeMs) { this.avgAcquireTimeMs = avgAcquireTimeMs; }
+    
+    public Double getMaxAcquireTimeMs() { return maxAcquireTimeMs; }
+    public void setMaxAcquireTimeMs(Double maxAcquireTimeMs) { this.maxAcquireTimeMs = maxAcquireTimeMs; }
+    
+    public List<DatabasePoolStatsDTO> getDatabases() { return databases; }
+    public void setDatabases(List<DatabasePoolStatsDTO> databases) { this.databases = databases; }
+}
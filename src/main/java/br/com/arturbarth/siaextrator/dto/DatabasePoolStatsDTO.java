@@ -0,0 +1,25 @@
+package br.com.arturbarth.siaextrator.dto;
+
+public class DatabasePoolStatsDTO {
+    
+    private String databaseName;
+    private Integer activeConnections;
+    private Integer idleConnections;
+    private Integer threadsAwaitingConnection;
+    
+    // Construtores
+    public DatabasePoolStatsDTO() {}
+    
+    // Getters e Setters
+    public String getDatabaseName() { return databaseName; }
+    public void setDatabaseName(String databaseName) { this.databaseName = databaseName; }
+    
+    public Integer getActiveConnections() { return activeConnections; }
+    public void setActiveConnections(Integer activeConnections) { this.activeConnections = activeConnections; }
+    
+    public Integer getIdleConnections() { return idleConnections; }
+    public void setIdleConnections(Integer idleConnections) { this.idleConnections = idleConnections; }
+    
+    public Integer getThreadsAwaitingConnection() { return threadsAwaitingConnection; }
+    public void setThreadsAwaitingConnection(Integer threadsAwaitingConnection) { this.threadsAwaitingConnection = threadsAwaitingConnection; }
+}
@@ -0,0 +1,40 @@
+package br.com.arturbarth.siaextrator.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DiscoveryReportDTO {
+    
+    private Integer discovered = 0;
+    private List<String> added = new ArrayList<>();
+    private List<String> vanished = new ArrayList<>();
+    private Boolean vanishedRemoved = false; // true: removidos do catálogo; false: marcados inacessíveis
+    private Integer updated = 0;
+    private Integer unchanged = 0;
+    
+    // Construtores
+    public DiscoveryReportDTO() {}
+    
+    public boolean hasChanges() {
+        return !added.isEmpty() || !vanished.isEmpty() || updated > 0;
+    }
+    
+    // Getters e Setters
+    public Integer getDiscovered() { return discovered; }
+    public void setDiscovered(Integer discovered) { this.discovered = discovered; }
+    
+    public List<String> getAdded() { return added; }
+    public void setAdded(List<String> added) { this.added = added; }
+    
+    public List<String> getVanished() { return vanished; }
+    public void setVanished(List<String> vanished) { this.vanished = vanished; }
+    
+    public Boolean getVanishedRemoved() { return vanishedRemoved; }
+    public void setVanishedRemoved(Boolean vanishedRemoved) { this.vanishedRemoved = vanishedRemoved; }
+    
+    public Integer getUpdated() { return updated; }
+    public void setUpdated(Integer updated) { this.updated = updated; }
+    
+    public Integer getUnchanged() { return unchanged; }
+    public void setUnchanged(Integer unchanged) { this.unchanged = unchanged; }
+}
@@ -0,0 +1,49 @@
+package br.com.arturbarth.siaextrator.dto;
+
+public class DispatcherStatsDTO {
+    
+    private String threadMode;
+    private Integer maxConcurrency;
+    private Integer maxConcurrencyPerCluster;
+    private Integer activeTasks;
+    private Integer peakActiveTasks;
+    private Long completedTasks = 0L;
+    private Long failedTasks = 0L;
+    private Double avgTaskTimeMs = 0.0;
+    private Double tasksPerSecond = 0.0;
+    private Long uptimeSeconds;
+    
+    // Construtores
+    public DispatcherStatsDTO() {}
+    
+    // Getters e Setters
+    public String getThreadMode() { return threadMode; }
+    public void setThreadMode(String threadMode) { this.threadMode = threadMode; }
+    
+    public Integer getMaxConcurrency() { return maxConcurrency; }
+    public void setMaxConcurrency(Integer maxConcurrency) { this.maxConcurrency = maxConcurrency; }
+    
+    public Integer getMaxConcurrencyPerCluster() { return maxConcurrencyPerCluster; }
+    public void setMaxConcurrencyPerCluster(Integer maxConcurrencyPerCluster) { this.maxConcurrencyPerCluster = maxConcurrencyPerCluster; }
+    
+    public Integer getActiveTasks() { return activeTasks; }
+    public void setActiveTasks(Integer activeTasks) { this.activeTasks = activeTasks; }
+    
+    public Integer getPeakActiveTasks() { return peakActiveTasks; }
+    public void setPeakActiveTasks(Integer peakActiveTasks) { this.peakActiveTasks = peakActiveTasks; }
+    
+    public Long getCompletedTasks() { return completedTasks; }
+    public void setCompletedTasks(Long completedTasks) { this.completedTasks = completedTasks; }
+    
+    public Long getFailedTasks() { return failedTasks; }
+    public void setFailedTasks(Long failedTasks) { this.failedTasks = failedTasks; }
+    
+    public Double getAvgTaskTimeMs() { return avgTaskTimeMs; }
+    public void setAvgTaskTimeMs(Double avgTaskTimeMs) { this.avgTaskTimeMs = avgTaskTimeMs; }
+    
+    public Double getTasksPerSecond() { return tasksPerSecond; }
+    public void setTasksPerSecond(Double tasksPerSecond) { this.tasksPerSecond = tasksPerSecond; }
+    
+    public Long getUptimeSeconds() { return uptimeSeconds; }
+    public void setUptimeSeconds(Long uptimeSeconds) { this.uptimeSeconds = uptimeSeconds; }
+}
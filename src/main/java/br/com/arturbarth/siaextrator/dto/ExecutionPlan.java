@@ -0,0 +1,128 @@
+package br.com.arturbarth.siaextrator.dto;
+
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plano de execução de uma query, resolvido uma única vez na submissão.
+ *
+ * Guarda os clusters, os bancos alvo já filtrados, os limites de concorrência e de
+ * linhas vigentes e o formato de saída. É gravado como JSON nos metadados da execução
+ * e pode ser consultado antes de executar (dry run).
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ExecutionPlan {
+
+    private List<Long> clusterIds = new ArrayList<>();
+    private List<String> databaseFilter; // null executa em todos os bancos
+    private String description;
+    private int sqlLength;
+    private LocalDateTime submittedAt;
+    private ResultFormat outputFormat = ResultFormat.CSV;
+
+    // Bancos resolvidos a partir do catálogo de descoberta
+    private List<Target> targets = new ArrayList<>();
+
+    // Clusters inativos na submissão: os bancos são redescobertos no início da execução
+    private List<Long> rediscoverClusterIds = new ArrayList<>();
+
+    // Limites vigentes
+    private int maxConcurrency;
+    private int maxConcurrencyPerCluster;
+    private long maxRowsPerDatabase;
+    private Long rowBudget; // limite total de linhas da execução, null sem limite
+    private int queryTimeoutSeconds;
+
+    private transient Set<String> databaseFilterSet;
+
+    // Constructors
+    public ExecutionPlan() {}
+
+    /**
+     * Indica se o banco passa no filtro do plano, sem percorrer a lista a cada banco.
+     */
+    public boolean includesDatabase(String databaseName) {
+        if (databaseFilter == null || databaseFilter.isEmpty()) {
+            return true;
+        }
+        if (databaseFilterSet == null) {
+            databaseFilterSet = new HashSet<>(databaseFilter);
+        }
+        return databaseFilterSet.contains(databaseName);
+    }
+
+    // Getters and Setters
+    public List<Long> getClusterIds() { return clusterIds; }
+    public void setClusterIds(List<Long> clusterIds) { this.clusterIds = clusterIds; }
+
+    public List<String> getDatabaseFilter() { return databaseFilter; }
+    public void setDatabaseFilter(List<String> databaseFilter) {
+        this.databaseFilter = databaseFilter;
+        this.databaseFilterSet = null;
+    }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public int getSqlLength() { return sqlLength; }
+    public void setSqlLength(int sqlLength) { this.sqlLength = sqlLength; }
+
+    public LocalDateTime getSubmittedAt() { return submittedAt; }
+    public void setSubmittedAt(LocalDateTime submittedAt) { this.submittedAt = submittedAt; }
+
+    public ResultFormat getOutputFormat() { return outputFormat; }
+    public void setOutputFormat(ResultFormat outputFormat) { this.outputFormat = outputFormat; }
+
+    public List<Target> getTargets() { return targets; }
+    public void setTargets(List<Target> targets) { this.targets = targets; }
+
+    public List<Long> getRediscoverClusterIds() { return rediscoverClusterIds; }
+    public void setRediscoverClusterIds(List<Long> rediscoverClusterIds) { this.rediscoverClusterIds = rediscoverClusterIds; }
+
+    public int getMaxConcurrency() { return maxConcurrency; }
+    public void setMaxConcurrency(int maxConcurrency) { this.maxConcurrency = maxConcurrency; }
+
+    public int getMaxConcurrencyPerCluster() { return maxConcurrencyPerCluster; }
+    public void setMaxConcurrencyPerCluster(int maxConcurrencyPerCluster) { this.maxConcurrencyPerCluster = maxConcurrencyPerCluster; }
+
+    public long getMaxRowsPerDatabase() { return maxRowsPerDatabase; }
+    public void setMaxRowsPerDatabase(long maxRowsPerDatabase) { this.maxRowsPerDatabase = maxRowsPerDatabase; }
+
+    public Long getRowBudget() { return rowBudget; }
+    public void setRowBudget(Long rowBudget) { this.rowBudget = rowBudget; }
+
+    public int getQueryTimeoutSeconds() { return queryTimeoutSeconds; }
+    public void setQueryTimeoutSeconds(int queryTimeoutSeconds) { this.queryTimeoutSeconds = queryTimeoutSeconds; }
+
+    /**
+     * Banco alvo do plano.
+     */
+    public static class Target {
+        private Long clusterId;
+        private String clusterAlias;
+        private String databaseName;
+
+        public Target() {}
+
+        public Target(Long clusterId, String clusterAlias, String databaseName) {
+            this.clusterId = clusterId;
+            this.clusterAlias = clusterAlias;
+            this.databaseName = databaseName;
+        }
+
+        public Long getClusterId() { return clusterId; }
+        public void setClusterId(Long clusterId) { this.clusterId = clusterId; }
+
+        public String getClusterAlias() { return clusterAlias; }
+        public void setClusterAlias(String clusterAlias) { this.clusterAlias = clusterAlias; }
+
+        public String getDatabaseName() { return databaseName; }
+        public void setDatabaseName(String databaseName) { this.databaseName = databaseName; }
+    }
+}
@@ -0,0 +1,60 @@
+package br.com.arturbarth.siaextrator.dto;
+
+/**
+ * Resumo do progresso de uma execução enviado pelo stream SSE a cada evento.
+ */
+public class ExecutionProgressDTO {
+
+    private String executionId;
+    private String status;
+    private Integer totalDatabases;
+    private Integer completedDatabases;
+    private Integer failedDatabases;
+    private Integer cancelledDatabases;
+    private Integer remainingDatabases;
+    private Long totalRows;
+    private Long elapsedMs;
+    private Double rowsPerSecond;
+    private Long etaMs; // null enquanto nenhum banco terminou
+    private ExecutionProgressEventDTO lastEvent;
+
+    // Construtores
+    public ExecutionProgressDTO() {}
+
+    // Getters e Setters
+    public String getExecutionId() { return executionId; }
+    public void setExecutionId(String executionId) { this.executionId = executionId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Integer getTotalDatabases() { return totalDatabases; }
+    public void setTotalDatabases(Integer totalDatabases) { this.totalDatabases = totalDatabases; }
+
+    public Integer getCompletedDatabases() { return completedDatabases; }
+    public void setCompletedDatabases(Integer completedDatabases) { this.completedDatabases = completedDatabases; }
+
+    public Integer getFailedDatabases() { return failedDatabases; }
+    public void setFailedDatabases(Integer failedDatabases) { this.failedDatabases = failedDatabases; }
+
+    public Integer getCancelledDatabases() { return cancelledDatabases; }
+    public void setCancelledDatabases(Integer cancelledDatabases) { this.cancelledDatabases = cancelledDatabases; }
+
+    public Integer getRemainingDatabases() { return remainingDatabases; }
+    public void setRemainingDatabases(Integer remainingDatabases) { this.remainingDatabases = remainingDatabases; }
+
+    public Long getTotalRows() { return totalRows; }
+    public void setTotalRows(Long totalRows) { this.totalRows = totalRows; }
+
+    public Long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(Long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+    public Double getRowsPerSecond() { return rowsPerSecond; }
+    public void setRowsPerSecond(Double rowsPerSecond) { this.rowsPerSecond = rowsPerSecond; }
+
+    public Long getEtaMs() { return etaMs; }
+    public void setEtaMs(Long etaMs) { this.etaMs = etaMs; }
+
+    public ExecutionProgressEventDTO getLastEvent() { return lastEvent; }
+    public void setLastEvent(ExecutionProgressEventDTO lastEvent) { this.lastEvent = lastEvent; }
+}
@@ -0,0 +1,69 @@
+package br.com.arturbarth.siaextrator.dto;
+
+/**
+ * Evento de progresso de uma execução, publicado pelo nó que o produziu e recebido por
+ * todos os nós. Vai como JSON no payload do NOTIFY, que é limitado a 8000 bytes: por
+ * isso não carrega mensagens de erro.
+ */
+public class ExecutionProgressEventDTO {
+
+    public static final String STARTED = "STARTED";   // bancos enfileirados; traz totalDatabases
+    public static final String DATABASE = "DATABASE"; // banco concluído, com falha, cancelado ou de volta à fila
+    public static final String STATUS = "STATUS";     // mudança de status da execução (fim, falha, cancelamento)
+
+    private String executionId;
+    private String type;
+    private String status;
+    private Long targetId;
+    private String clusterAlias;
+    private String databaseName;
+    private Long rowsAffected;
+    private Long executionTimeMs;
+    private Integer totalDatabases;
+    private Long totalRows;
+    private long timestamp;
+
+    // Construtores
+    public ExecutionProgressEventDTO() {}
+
+    public ExecutionProgressEventDTO(String executionId, String type, String status) {
+        this.executionId = executionId;
+        this.type = type;
+        this.status = status;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    // Getters e Setters
+    public String getExecutionId() { return executionId; }
+    public void setExecutionId(String executionId) { this.executionId = executionId; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Long getTargetId() { return targetId; }
+    public void setTargetId(Long targetId) { this.targetId = targetId; }
+
+    public String getClusterAlias() { return clusterAlias; }
+    public void setClusterAlias(String clusterAlias) { this.clusterAlias = clusterAlias; }
+
+    public String getDatabaseName() { return databaseName; }
+    public void setDatabaseName(String databaseName) { this.databaseName = databaseName; }
+
+    public Long getRowsAffected() { return rowsAffected; }
+    public void setRowsAffected(Long rowsAffected) { this.rowsAffected = rowsAffected; }
+
+    public Long getExecutionTimeMs() { return executionTimeMs; }
+    public void setExecutionTimeMs(Long executionTimeMs) { this.executionTimeMs = executionTimeMs; }
+
+    public Integer getTotalDatabases() { return totalDatabases; }
+    public void setTotalDatabases(Integer totalDatabases) { this.totalDatabases = totalDatabases; }
+
+    public Long getTotalRows() { return totalRows; }
+    public void setTotalRows(Long totalRows) { this.totalRows = totalRows; }
+
+    public long getTimestamp() { return timestamp; }
+    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+}
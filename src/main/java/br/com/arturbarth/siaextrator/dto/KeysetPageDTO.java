@@ -0,0 +1,33 @@
+package br.com.arturbarth.siaextrator.dto;
+
+import java.util.List;
+
+/**
+ * Página de uma listagem por keyset. Para a próxima página, repita a requisição com
+ * {@code cursor=nextCursor}; {@code nextCursor} é null na última página.
+ */
+public class KeysetPageDTO<T> {
+
+    private List<T> items;
+    private int limit;
+    private String nextCursor;
+
+    // Construtores
+    public KeysetPageDTO() {}
+
+    public KeysetPageDTO(List<T> items, int limit, String nextCursor) {
+        this.items = items;
+        this.limit = limit;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters e Setters
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+}
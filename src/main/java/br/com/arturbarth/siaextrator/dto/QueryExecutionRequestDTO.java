@@ -1,7 +1,9 @@
 package br.com.arturbarth.siaextrator.dto;
 
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Positive;
 
 import java.util.List;
 
@@ -22,6 +24,13 @@ public class QueryExecutionRequestDTO {
     
     private String description;
     
+    private ResultFormat outputFormat = ResultFormat.CSV; // CSV (padrão) ou PARQUET
+    
+    private Boolean bypassCache = false; // Ignora resultados em cache e executa novamente
+    
+    @Positive(message = "Limite de linhas deve ser positivo")
+    private Long maxRows; // Opcional - limite total de linhas somando todos os bancos
+    
     // Constructors
     public QueryExecutionRequestDTO() {}
     
@@ -43,4 +52,13 @@ public class QueryExecutionRequestDTO {
     
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
+    
+    public ResultFormat getOutputFormat() { return outputFormat; }
+    public void setOutputFormat(ResultFormat outputFormat) { this.outputFormat = outputFormat; }
+    
+    public Boolean getBypassCache() { return bypassCache; }
+    public void setBypassCache(Boolean bypassCache) { this.bypassCache = bypassCache; }
+    
+    public Long getMaxRows() { return maxRows; }
+    public void setMaxRows(Long maxRows) { this.maxRows = maxRows; }
 }
@@ -1,6 +1,7 @@
 package br.com.arturbarth.siaextrator.dto;
 
 import br.com.arturbarth.siaextrator.entity.QueryExecutionStatus;
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -18,12 +19,14 @@ public class QueryExecutionResponseDTO {
     private Integer failedClusters;
     private Long totalRows;
     private Long executionTimeMs;
+    private ResultFormat outputFormat;
     private String s3ResultPath;
     private String errorMessage;
     private String metadata;
     private LocalDateTime createdAt;
     private LocalDateTime startedAt;
     private LocalDateTime completedAt;
+    private String cachedFrom;
     private List<QueryExecutionResultDTO> results;
     
     // Constructors
@@ -63,6 +66,9 @@ public class QueryExecutionResponseDTO {
     public Long getExecutionTimeMs() { return executionTimeMs; }
     public void setExecutionTimeMs(Long executionTimeMs) { this.executionTimeMs = executionTimeMs; }
     
+    public ResultFormat getOutputFormat() { return outputFormat; }
+    public void setOutputFormat(ResultFormat outputFormat) { this.outputFormat = outputFormat; }
+    
     public String getS3ResultPath() { return s3ResultPath; }
     public void setS3ResultPath(String s3ResultPath) { this.s3ResultPath = s3ResultPath; }
     
@@ -81,6 +87,9 @@ public class QueryExecutionResponseDTO {
     public LocalDateTime getCompletedAt() { return completedAt; }
     public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
     
+    public String getCachedFrom() { return cachedFrom; }
+    public void setCachedFrom(String cachedFrom) { this.cachedFrom = cachedFrom; }
+    
     public List<QueryExecutionResultDTO> getResults() { return results; }
     public void setResults(List<QueryExecutionResultDTO> results) { this.results = results; }
 }
\ No newline at end of file
@@ -15,10 +15,32 @@ public class QueryExecutionResultDTO {
     private String errorMessage;
     private String resultFilePath;
     private LocalDateTime executedAt;
+    private Integer attempts;
+    private LocalDateTime nextAttemptAt;
+    private Long estimatedTimeMs;
     
     // Constructors
     public QueryExecutionResultDTO() {}
     
+    // Usado pela consulta JPQL paginada dos resultados (SELECT new ...)
+    public QueryExecutionResultDTO(Long id, String clusterAlias, String databaseName, QueryExecutionStatus status,
+                                   Long rowsAffected, Long executionTimeMs, String errorMessage, String resultFilePath,
+                                   LocalDateTime executedAt, Integer attempts, LocalDateTime nextAttemptAt,
+                                   Long estimatedTimeMs) {
+        this.id = id;
+        this.clusterAlias = clusterAlias;
+        this.databaseName = databaseName;
+        this.status = status;
+        this.rowsAffected = rowsAffected;
+        this.executionTimeMs = executionTimeMs;
+        this.errorMessage = errorMessage;
+        this.resultFilePath = resultFilePath;
+        this.executedAt = executedAt;
+        this.attempts = attempts;
+        this.nextAttemptAt = nextAttemptAt;
+        this.estimatedTimeMs = estimatedTimeMs;
+    }
+    
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -46,4 +68,13 @@ public class QueryExecutionResultDTO {
     
     public LocalDateTime getExecutedAt() { return executedAt; }
     public void setExecutedAt(LocalDateTime executedAt) { this.executedAt = executedAt; }
+    
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+    
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    
+    public Long getEstimatedTimeMs() { return estimatedTimeMs; }
+    public void setEstimatedTimeMs(Long estimatedTimeMs) { this.estimatedTimeMs = estimatedTimeMs; }
 }
@@ -0,0 +1,101 @@
+package br.com.arturbarth.siaextrator.dto;
+
+import br.com.arturbarth.siaextrator.entity.QueryExecutionStatus;
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projeção leve de uma execução para listagens e consulta de status: sem o SQL, os
+ * metadados, a mensagem de erro e os resultados por banco.
+ */
+public class QueryExecutionSummaryDTO {
+
+    private Long id;
+    private String executionId;
+    private String userId;
+    private QueryExecutionStatus status;
+    private Integer totalClusters;
+    private Integer completedClusters;
+    private Integer failedClusters;
+    private Long totalRows;
+    private Long executionTimeMs;
+    private ResultFormat outputFormat;
+    private String s3ResultPath;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+    private String cachedFrom;
+
+    // Construtores
+    public QueryExecutionSummaryDTO() {}
+
+    // Usado pelas consultas JPQL com projeção (SELECT new ...)
+    public QueryExecutionSummaryDTO(Long id, String executionId, String userId, QueryExecutionStatus status,
+                                    Integer totalClusters, Integer completedClusters, Integer failedClusters,
+                                    Long totalRows, Long executionTimeMs, ResultFormat outputFormat, String s3ResultPath,
+                                    LocalDateTime createdAt, LocalDateTime startedAt, LocalDateTime completedAt,
+                                    String cachedFrom) {
+        this.id = id;
+        this.executionId = executionId;
+        this.userId = userId;
+        this.status = status;
+        this.totalClusters = totalClusters;
+        this.completedClusters = completedClusters;
+        this.failedClusters = failedClusters;
+        this.totalRows = totalRows;
+        this.executionTimeMs = executionTimeMs;
+        this.outputFormat = outputFormat;
+        this.s3ResultPath = s3ResultPath;
+        this.createdAt = createdAt;
+        this.startedAt = startedAt;
+        this.completedAt = completedAt;
+        this.cachedFrom = cachedFrom;
+    }
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getExecutionId() { return executionId; }
+    public void setExecutionId(String executionId) { this.executionId = executionId; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public QueryExecutionStatus getStatus() { return status; }
+    public void setStatus(QueryExecutionStatus status) { this.status = status; }
+
+    public Integer getTotalClusters() { return totalClusters; }
+    public void setTotalClusters(Integer totalClusters) { this.totalClusters = totalClusters; }
+
+    public Integer getCompletedClusters() { return completedClusters; }
+    public void setCompletedClusters(Integer completedClusters) { this.completedClusters = completedClusters; }
+
+    public Integer getFailedClusters() { return failedClusters; }
+    public void setFailedClusters(Integer failedClusters) { this.failedClusters = failedClusters; }
+
+    public Long getTotalRows() { return totalRows; }
+    public void setTotalRows(Long totalRows) { this.totalRows = totalRows; }
+
+    public Long getExecutionTimeMs() { return executionTimeMs; }
+    public void setExecutionTimeMs(Long executionTimeMs) { this.executionTimeMs = executionTimeMs; }
+
+    public ResultFormat getOutputFormat() { return outputFormat; }
+    public void setOutputFormat(ResultFormat outputFormat) { this.outputFormat = outputFormat; }
+
+    public String getS3ResultPath() { return s3ResultPath; }
+    public void setS3ResultPath(String s3ResultPath) { this.s3ResultPath = s3ResultPath; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+
+    public String getCachedFrom() { return cachedFrom; }
+    public void setCachedFrom(String cachedFrom) { this.cachedFrom = cachedFrom; }
+}
@@ -0,0 +1,77 @@
+package br.com.arturbarth.siaextrator.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prévia de uma query: as primeiras linhas (ou uma amostra) de cada banco alvo, obtidas
+ * de forma síncrona e sem gravar resultado, para validar a consulta antes da extração.
+ */
+public class QueryPreviewDTO {
+
+    private int rowsPerDatabase;
+    private Double samplePercent;
+    private int totalDatabases;
+    private int databasesSkipped; // fora do limite de bancos da prévia ou não iniciados no prazo
+    private long executionTimeMs;
+    private List<DatabasePreview> databases = new ArrayList<>();
+
+    // Constructors
+    public QueryPreviewDTO() {}
+
+    // Getters and Setters
+    public int getRowsPerDatabase() { return rowsPerDatabase; }
+    public void setRowsPerDatabase(int rowsPerDatabase) { this.rowsPerDatabase = rowsPerDatabase; }
+
+    public Double getSamplePercent() { return samplePercent; }
+    public void setSamplePercent(Double samplePercent) { this.samplePercent = samplePercent; }
+
+    public int getTotalDatabases() { return totalDatabases; }
+    public void setTotalDatabases(int totalDatabases) { this.totalDatabases = totalDatabases; }
+
+    public int getDatabasesSkipped() { return databasesSkipped; }
+    public void setDatabasesSkipped(int databasesSkipped) { this.databasesSkipped = databasesSkipped; }
+
+    public long getExecutionTimeMs() { return executionTimeMs; }
+    public void setExecutionTimeMs(long executionTimeMs) { this.executionTimeMs = executionTimeMs; }
+
+    public List<DatabasePreview> getDatabases() { return databases; }
+    public void setDatabases(List<DatabasePreview> databases) { this.databases = databases; }
+
+    /**
+     * Linhas de um banco, na ordem das colunas.
+     */
+    public static class DatabasePreview {
+        private String clusterAlias;
+        private String databaseName;
+        private List<String> columns;
+        private List<List<Object>> rows = new ArrayList<>();
+        private long executionTimeMs;
+        private String errorMessage;
+
+        public DatabasePreview() {}
+
+        public DatabasePreview(String clusterAlias, String databaseName) {
+            this.clusterAlias = clusterAlias;
+            this.databaseName = databaseName;
+        }
+
+        public String getClusterAlias() { return clusterAlias; }
+        public void setClusterAlias(String clusterAlias) { this.clusterAlias = clusterAlias; }
+
+        public String getDatabaseName() { return databaseName; }
+        public void setDatabaseName(String databaseName) { this.databaseName = databaseName; }
+
+        public List<String> getColumns() { return columns; }
+        public void setColumns(List<String> columns) { this.columns = columns; }
+
+        public List<List<Object>> getRows() { return rows; }
+        public void setRows(List<List<Object>> rows) { this.rows = rows; }
+
+        public long getExecutionTimeMs() { return executionTimeMs; }
+        public void setExecutionTimeMs(long executionTimeMs) { this.executionTimeMs = executionTimeMs; }
+
+        public String getErrorMessage() { return errorMessage; }
+        public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+    }
+}
@@ -1,21 +1,27 @@
 package br.com.arturbarth.siaextrator.dto;
 
 import java.util.List;
-import java.util.Map;
 
 public class RdsExecutionResult {
     
-    private List<Map<String, Object>> data;
-    private List<String> columnNames;
+    private ResultSchema schema;
+    private List<RowBatch> batches;
     private long rowCount;
     private long executionTimeMs;
     private String errorMessage;
     private boolean successful;
     
     // Construtor principal
-    public RdsExecutionResult(List<Map<String, Object>> data, List<String> columnNames, long rowCount) {
-        this.data = data;
-        this.columnNames = columnNames;
+    public RdsExecutionResult(ResultSchema schema, List<RowBatch> batches, long rowCount) {
+        this.schema = schema;
+        this.batches = batches;
+        this.rowCount = rowCount;
+        this.successful = true;
+    }
+    
+    // Construtor para execução em streaming, sem dados em memória
+    public RdsExecutionResult(ResultSchema schema, long rowCount) {
+        this.schema = schema;
         this.rowCount = rowCount;
         this.successful = true;
     }
@@ -34,20 +40,24 @@ public class RdsExecutionResult {
     }
     
     // Getters and Setters
-    public List<Map<String, Object>> getData() {
-        return data;
+    public ResultSchema getSchema() {
+        return schema;
     }
     
-    public void setData(List<Map<String, Object>> data) {
-        this.data = data;
+    public void setSchema(ResultSchema schema) {
+        this.schema = schema;
     }
     
-    public List<String> getColumnNames() {
-        return columnNames;
+    public List<RowBatch> getBatches() {
+        return batches;
+    }
+    
+    public void setBatches(List<RowBatch> batches) {
+        this.batches = batches;
     }
     
-    public void setColumnNames(List<String> columnNames) {
-        this.columnNames = columnNames;
+    public List<String> getColumnNames() {
+        return schema != null ? schema.getColumnNames() : null;
     }
     
     public long getRowCount() {
@@ -84,11 +94,11 @@ public class RdsExecutionResult {
     
     // Métodos utilitários
     public boolean hasData() {
-        return data != null && !data.isEmpty();
+        return batches != null && !batches.isEmpty();
     }
     
     public int getColumnCount() {
-        return columnNames != null ? columnNames.size() : 0;
+        return schema != null ? schema.getColumnCount() : 0;
     }
     
     public boolean isEmpty() {
@@ -0,0 +1,64 @@
+package br.com.arturbarth.siaextrator.dto;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Esquema das colunas de um resultado, compartilhado por todas as linhas.
+ * A ordem das colunas é a mesma do ResultSet e define a ordem dos valores em cada linha.
+ */
+public class ResultSchema {
+    
+    private final List<String> columnNames;
+    private final int[] columnTypes;
+    private final int[] precisions;
+    private final int[] scales;
+    
+    public ResultSchema(List<String> columnNames, int[] columnTypes) {
+        this(columnNames, columnTypes, new int[columnTypes.length], new int[columnTypes.length]);
+    }
+    
+    public ResultSchema(List<String> columnNames, int[] columnTypes, int[] precisions, int[] scales) {
+        if (columnNames.size() != columnTypes.length
+                || precisions.length != columnTypes.length
+                || scales.length != columnTypes.length) {
+            throw new IllegalArgumentException("Quantidade de nomes e tipos de colunas não confere");
+        }
+        this.columnNames = Collections.unmodifiableList(columnNames);
+        this.columnTypes = Arrays.copyOf(columnTypes, columnTypes.length);
+        this.precisions = Arrays.copyOf(precisions, precisions.length);
+        this.scales = Arrays.copyOf(scales, scales.length);
+    }
+    
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+    
+    public int getColumnCount() {
+        return columnTypes.length;
+    }
+    
+    public String getColumnName(int columnIndex) {
+        return columnNames.get(columnIndex);
+    }
+    
+    // Tipo JDBC (java.sql.Types) da coluna
+    public int getColumnType(int columnIndex) {
+        return columnTypes[columnIndex];
+    }
+    
+    // Precisão informada pelo driver (0 quando desconhecida)
+    public int getPrecision(int columnIndex) {
+        return precisions[columnIndex];
+    }
+    
+    public int getScale(int columnIndex) {
+        return scales[columnIndex];
+    }
+    
+    @Override
+    public String toString() {
+        return "ResultSchema" + columnNames;
+    }
+}
@@ -0,0 +1,72 @@
+package br.com.arturbarth.siaextrator.dto;
+
+/**
+ * Lote de linhas armazenado em um único array, linha após linha, na ordem das colunas
+ * do {@link ResultSchema}. Evita alocar um objeto por linha.
+ */
+public class RowBatch {
+    
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    private final ResultSchema schema;
+    private final Object[] values;
+    private final int capacity;
+    private int rowCount;
+    
+    public RowBatch(ResultSchema schema) {
+        this(schema, DEFAULT_CAPACITY);
+    }
+    
+    public RowBatch(ResultSchema schema, int capacity) {
+        this.schema = schema;
+        this.capacity = capacity;
+        this.values = new Object[capacity * schema.getColumnCount()];
+    }
+    
+    /**
+     * Copia a linha para o lote.
+     * @return false se o lote já estiver cheio
+     */
+    public boolean add(Object[] row) {
+        if (isFull()) {
+            return false;
+        }
+        int columnCount = schema.getColumnCount();
+        System.arraycopy(row, 0, values, rowCount * columnCount, columnCount);
+        rowCount++;
+        return true;
+    }
+    
+    public Object get(int rowIndex, int columnIndex) {
+        if (rowIndex >= rowCount) {
+            throw new IndexOutOfBoundsException("Linha " + rowIndex + " fora do lote de " + rowCount + " linhas");
+        }
+        return values[rowIndex * schema.getColumnCount() + columnIndex];
+    }
+    
+    // Posição da primeira coluna da linha no array de valores
+    public int offsetOf(int rowIndex) {
+        return rowIndex * schema.getColumnCount();
+    }
+    
+    // Array interno, somente leitura; válido até a posição rowCount * columnCount
+    public Object[] getValues() {
+        return values;
+    }
+    
+    public ResultSchema getSchema() {
+        return schema;
+    }
+    
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    public boolean isFull() {
+        return rowCount == capacity;
+    }
+    
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+}
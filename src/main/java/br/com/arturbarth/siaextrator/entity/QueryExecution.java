@@ -10,7 +10,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "query_executions")
+@Table(name = "query_executions", indexes = {
+        @Index(name = "idx_query_executions_queue", columnList = "status, created_at"),
+        @Index(name = "idx_query_executions_cache", columnList = "cache_key, status, completed_at"),
+        @Index(name = "idx_query_executions_fingerprint", columnList = "sql_fingerprint, completed_at")
+})
 public class QueryExecution {
     
     @Id
@@ -50,6 +54,10 @@ public class QueryExecution {
     @Column(name = "execution_time_ms")
     private Long executionTimeMs;
     
+    @Enumerated(EnumType.STRING)
+    @Column(name = "output_format")
+    private ResultFormat outputFormat = ResultFormat.CSV;
+    
     @Column(name = "s3_result_path")
     private String s3ResultPath;
     
@@ -76,6 +84,34 @@ public class QueryExecution {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
     
+    // Lease da fila de execução: nó que reivindicou a execução e até quando
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+    
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+    
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+    
+    // Cache de resultados: chave da consulta e, em um acerto, a execução que gerou o resultado
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+    
+    @Column(name = "cached_from")
+    private String cachedFrom;
+    
+    // Hash do SQL normalizado, para encontrar execuções anteriores da mesma consulta
+    @Column(name = "sql_fingerprint", length = 64)
+    private String sqlFingerprint;
+    
+    // Limite total de linhas, repartido entre os bancos; rows_reserved é a parte já concedida
+    @Column(name = "row_limit")
+    private Long rowLimit;
+    
+    @Column(name = "rows_reserved")
+    private Long rowsReserved = 0L;
+    
     // Constructors
     public QueryExecution() {}
     
@@ -119,6 +155,9 @@ public class QueryExecution {
     public Long getExecutionTimeMs() { return executionTimeMs; }
     public void setExecutionTimeMs(Long executionTimeMs) { this.executionTimeMs = executionTimeMs; }
     
+    public ResultFormat getOutputFormat() { return outputFormat; }
+    public void setOutputFormat(ResultFormat outputFormat) { this.outputFormat = outputFormat; }
+    
     public String getS3ResultPath() { return s3ResultPath; }
     public void setS3ResultPath(String s3ResultPath) { this.s3ResultPath = s3ResultPath; }
     
@@ -143,6 +182,30 @@ public class QueryExecution {
     public LocalDateTime getCompletedAt() { return completedAt; }
     public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
     
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+    
+    public LocalDateTime getLeaseExpiresAt() { return leaseExpiresAt; }
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) { this.leaseExpiresAt = leaseExpiresAt; }
+    
+    public LocalDateTime getHeartbeatAt() { return heartbeatAt; }
+    public void setHeartbeatAt(LocalDateTime heartbeatAt) { this.heartbeatAt = heartbeatAt; }
+    
+    public String getCacheKey() { return cacheKey; }
+    public void setCacheKey(String cacheKey) { this.cacheKey = cacheKey; }
+    
+    public String getSqlFingerprint() { return sqlFingerprint; }
+    public void setSqlFingerprint(String sqlFingerprint) { this.sqlFingerprint = sqlFingerprint; }
+    
+    public Long getRowLimit() { return rowLimit; }
+    public void setRowLimit(Long rowLimit) { this.rowLimit = rowLimit; }
+    
+    public Long getRowsReserved() { return rowsReserved; }
+    public void setRowsReserved(Long rowsReserved) { this.rowsReserved = rowsReserved; }
+    
+    public String getCachedFrom() { return cachedFrom; }
+    public void setCachedFrom(String cachedFrom) { this.cachedFrom = cachedFrom; }
+    
     // Helper methods
     public void markAsStarted() {
         this.status = QueryExecutionStatus.RUNNING;
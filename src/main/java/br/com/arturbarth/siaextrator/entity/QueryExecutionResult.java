@@ -6,7 +6,10 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "query_execution_results")
+@Table(name = "query_execution_results", indexes = {
+        @Index(name = "idx_query_execution_results_execution_status", columnList = "query_execution_id, status"),
+        @Index(name = "idx_query_execution_results_status", columnList = "status")
+})
 public class QueryExecutionResult {
     
     @Id
@@ -40,6 +43,31 @@ public class QueryExecutionResult {
     @Column(name = "result_file_path")
     private String resultFilePath;
     
+    // Fim do cabeçalho no arquivo de resultado, usado para montar o consolidado
+    @Column(name = "data_offset")
+    private Long dataOffset;
+    
+    // Tentativas de execução do banco e, em uma falha transitória, quando tentar de novo
+    @Column(name = "attempts")
+    private Integer attempts = 0;
+    
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+    
+    // Posição na ordem de reivindicação e custo estimado que a definiu (maiores primeiro)
+    @Column(name = "schedule_order")
+    private Integer scheduleOrder;
+    
+    @Column(name = "estimated_time_ms")
+    private Long estimatedTimeMs;
+    
+    // Lease do nó que reivindicou o banco para execução
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+    
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+    
     @CreationTimestamp
     @Column(name = "executed_at", updatable = false)
     private LocalDateTime executedAt;
@@ -82,6 +110,27 @@ public class QueryExecutionResult {
     public String getResultFilePath() { return resultFilePath; }
     public void setResultFilePath(String resultFilePath) { this.resultFilePath = resultFilePath; }
     
+    public Long getDataOffset() { return dataOffset; }
+    public void setDataOffset(Long dataOffset) { this.dataOffset = dataOffset; }
+    
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+    
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    
+    public Integer getScheduleOrder() { return scheduleOrder; }
+    public void setScheduleOrder(Integer scheduleOrder) { this.scheduleOrder = scheduleOrder; }
+    
+    public Long getEstimatedTimeMs() { return estimatedTimeMs; }
+    public void setEstimatedTimeMs(Long estimatedTimeMs) { this.estimatedTimeMs = estimatedTimeMs; }
+    
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+    
+    public LocalDateTime getLeaseExpiresAt() { return leaseExpiresAt; }
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) { this.leaseExpiresAt = leaseExpiresAt; }
+    
     public LocalDateTime getExecutedAt() { return executedAt; }
     public void setExecutedAt(LocalDateTime executedAt) { this.executedAt = executedAt; }
 }
\ No newline at end of file
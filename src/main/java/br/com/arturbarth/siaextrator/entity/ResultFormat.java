@@ -0,0 +1,33 @@
+package br.com.arturbarth.siaextrator.entity;
+
+public enum ResultFormat {
+    CSV("CSV", ".csv", "text/csv"),
+    PARQUET("Parquet", ".parquet", "application/vnd.apache.parquet");
+
+    private final String description;
+    private final String fileExtension;
+    private final String contentType;
+
+    ResultFormat(String description, String fileExtension, String contentType) {
+        this.description = description;
+        this.fileExtension = fileExtension;
+        this.contentType = contentType;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    // Identifica o formato pelo nome do arquivo, ignorando a extensão de compressão do CSV
+    public static ResultFormat fromFileName(String fileName) {
+        return fileName.endsWith(PARQUET.fileExtension) ? PARQUET : CSV;
+    }
+}
@@ -0,0 +1,7 @@
+package br.com.arturbarth.siaextrator.exceptions;
+
+public class ExecutionNotFoundException extends RuntimeException {
+    public ExecutionNotFoundException(String message) {
+        super(message);
+    }
+}
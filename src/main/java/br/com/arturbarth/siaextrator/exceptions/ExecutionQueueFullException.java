@@ -0,0 +1,7 @@
+package br.com.arturbarth.siaextrator.exceptions;
+
+public class ExecutionQueueFullException extends RuntimeException {
+    public ExecutionQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,6 @@
 package br.com.arturbarth.siaextrator.exceptions;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -31,6 +32,34 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
     
+    @ExceptionHandler(ExecutionNotFoundException.class)
+    public ResponseEntity<Map<String, Object>> handleExecutionNotFoundException(ExecutionNotFoundException ex) {
+        logger.error("Execução não encontrada: {}", ex.getMessage());
+        
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("timestamp", LocalDateTime.now());
+        errorResponse.put("status", HttpStatus.NOT_FOUND.value());
+        errorResponse.put("error", "Not Found");
+        errorResponse.put("message", ex.getMessage());
+        
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+    }
+    
+    @ExceptionHandler(ExecutionQueueFullException.class)
+    public ResponseEntity<Map<String, Object>> handleExecutionQueueFullException(ExecutionQueueFullException ex) {
+        logger.warn("Fila de execução cheia: {}", ex.getMessage());
+        
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("timestamp", LocalDateTime.now());
+        errorResponse.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+        errorResponse.put("error", "Too Many Requests");
+        errorResponse.put("message", ex.getMessage());
+        
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(errorResponse);
+    }
+    
     @ExceptionHandler(ClusterAlreadyExistsException.class)
     public ResponseEntity<Map<String, Object>> handleClusterAlreadyExistsException(ClusterAlreadyExistsException ex) {
         logger.error("Cluster já existe: {}", ex.getMessage());
@@ -29,12 +29,14 @@ public class QueryExecutionMapper {
         dto.setFailedClusters(entity.getFailedClusters());
         dto.setTotalRows(entity.getTotalRows());
         dto.setExecutionTimeMs(entity.getExecutionTimeMs());
+        dto.setOutputFormat(entity.getOutputFormat());
         dto.setS3ResultPath(entity.getS3ResultPath());
         dto.setErrorMessage(entity.getErrorMessage());
         dto.setMetadata(entity.getMetadata());
         dto.setCreatedAt(entity.getCreatedAt());
         dto.setStartedAt(entity.getStartedAt());
         dto.setCompletedAt(entity.getCompletedAt());
+        dto.setCachedFrom(entity.getCachedFrom());
         
         if (entity.getResults() != null) {
             List<QueryExecutionResultDTO> resultDTOs = entity.getResults().stream()
@@ -71,6 +73,9 @@ public class QueryExecutionMapper {
         dto.setErrorMessage(entity.getErrorMessage());
         dto.setResultFilePath(entity.getResultFilePath());
         dto.setExecutedAt(entity.getExecutedAt());
+        dto.setAttempts(entity.getAttempts());
+        dto.setNextAttemptAt(entity.getNextAttemptAt());
+        dto.setEstimatedTimeMs(entity.getEstimatedTimeMs());
         
         return dto;
     }
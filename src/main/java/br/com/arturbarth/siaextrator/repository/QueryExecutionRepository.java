@@ -1,12 +1,15 @@
 package br.com.arturbarth.siaextrator.repository;
 
+import br.com.arturbarth.siaextrator.dto.QueryExecutionSummaryDTO;
 import br.com.arturbarth.siaextrator.entity.QueryExecution;
 import br.com.arturbarth.siaextrator.entity.QueryExecutionStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,11 +22,41 @@ public interface QueryExecutionRepository extends JpaRepository<QueryExecution,
     
     List<QueryExecution> findByStatus(QueryExecutionStatus status);
     
+    long countByStatus(QueryExecutionStatus status);
+    
+    @Query("SELECT qe.executionId FROM QueryExecution qe WHERE qe.status IN :statuses")
+    List<String> findExecutionIdsByStatusIn(Collection<QueryExecutionStatus> statuses);
+    
+    boolean existsByExecutionIdAndStatusIn(String executionId, Collection<QueryExecutionStatus> statuses);
+    
     List<QueryExecution> findByUserIdAndStatus(String userId, QueryExecutionStatus status);
     
     @Query("SELECT qe FROM QueryExecution qe WHERE qe.createdAt >= :startDate ORDER BY qe.createdAt DESC")
     List<QueryExecution> findRecentExecutions(LocalDateTime startDate);
     
+    // Execução concluída sem falhas mais recente com a mesma chave de cache
+    Optional<QueryExecution> findFirstByCacheKeyAndStatusAndFailedClustersAndCompletedAtGreaterThanEqualOrderByCompletedAtDesc(
+            String cacheKey, QueryExecutionStatus status, Integer failedClusters, LocalDateTime freshSince);
+    
     @Query("SELECT qe FROM QueryExecution qe LEFT JOIN FETCH qe.results WHERE qe.executionId = :executionId")
     Optional<QueryExecution> findByExecutionIdWithResults(String executionId);
+    
+    @Query("SELECT " + SUMMARY_PROJECTION + " FROM QueryExecution qe WHERE qe.executionId = :executionId")
+    Optional<QueryExecutionSummaryDTO> findSummaryByExecutionId(String executionId);
+    
+    // Listagem por keyset (created_at, id) decrescente: a página seguinte começa depois do último item
+    @Query("SELECT " + SUMMARY_PROJECTION + " FROM QueryExecution qe WHERE qe.userId = :userId " +
+            "AND qe.createdAt <= :createdAt AND (qe.createdAt < :createdAt OR qe.id < :id) " +
+            "ORDER BY qe.createdAt DESC, qe.id DESC")
+    List<QueryExecutionSummaryDTO> findUserPage(String userId, LocalDateTime createdAt, Long id, Limit limit);
+    
+    @Query("SELECT " + SUMMARY_PROJECTION + " FROM QueryExecution qe WHERE qe.userId = :userId AND qe.status = :status " +
+            "AND qe.createdAt <= :createdAt AND (qe.createdAt < :createdAt OR qe.id < :id) " +
+            "ORDER BY qe.createdAt DESC, qe.id DESC")
+    List<QueryExecutionSummaryDTO> findUserPageByStatus(String userId, QueryExecutionStatus status,
+                                                        LocalDateTime createdAt, Long id, Limit limit);
+    
+    String SUMMARY_PROJECTION = "new br.com.arturbarth.siaextrator.dto.QueryExecutionSummaryDTO(" +
+            "qe.id, qe.executionId, qe.userId, qe.status, qe.totalClusters, qe.completedClusters, qe.failedClusters, " +
+            "qe.totalRows, qe.executionTimeMs, qe.outputFormat, qe.s3ResultPath, qe.createdAt, qe.startedAt, qe.completedAt, qe.cachedFrom)";
 }
\ No newline at end of file
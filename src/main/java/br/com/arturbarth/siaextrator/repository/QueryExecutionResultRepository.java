@@ -1,8 +1,11 @@
 package br.com.arturbarth.siaextrator.repository;
 
+import br.com.arturbarth.siaextrator.dto.QueryExecutionResultDTO;
 import br.com.arturbarth.siaextrator.entity.QueryExecutionResult;
 import br.com.arturbarth.siaextrator.entity.QueryExecutionStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,4 +20,18 @@ public interface QueryExecutionResultRepository extends JpaRepository<QueryExecu
     List<QueryExecutionResult> findByStatus(QueryExecutionStatus status);
     
     List<QueryExecutionResult> findByQueryExecutionIdAndStatus(Long queryExecutionId, QueryExecutionStatus status);
+    
+    // Resultados por banco paginados por keyset no id
+    @Query("SELECT " + RESULT_PROJECTION + " FROM QueryExecutionResult r JOIN r.cluster c " +
+            "WHERE r.queryExecution.id = :queryExecutionId AND r.id > :afterId ORDER BY r.id")
+    List<QueryExecutionResultDTO> findResultPage(Long queryExecutionId, Long afterId, Limit limit);
+    
+    @Query("SELECT " + RESULT_PROJECTION + " FROM QueryExecutionResult r JOIN r.cluster c " +
+            "WHERE r.queryExecution.id = :queryExecutionId AND r.status = :status AND r.id > :afterId ORDER BY r.id")
+    List<QueryExecutionResultDTO> findResultPageByStatus(Long queryExecutionId, QueryExecutionStatus status,
+                                                         Long afterId, Limit limit);
+    
+    String RESULT_PROJECTION = "new br.com.arturbarth.siaextrator.dto.QueryExecutionResultDTO(" +
+            "r.id, c.alias, r.databaseName, r.status, r.rowsAffected, r.executionTimeMs, r.errorMessage, " +
+            "r.resultFilePath, r.executedAt, r.attempts, r.nextAttemptAt, r.estimatedTimeMs)";
 }
\ No newline at end of file
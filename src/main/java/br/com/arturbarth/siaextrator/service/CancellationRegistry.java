@@ -0,0 +1,155 @@
+package br.com.arturbarth.siaextrator.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * Registro das execuções em andamento neste nó, com os statements JDBC ativos e as
+ * tarefas de cada uma.
+ *
+ * O cancelamento marca a execução, chama {@link Statement#cancel()} em todos os
+ * statements ativos (o driver do PostgreSQL envia um cancel request ao backend,
+ * equivalente ao pg_cancel_backend) e cancela as tarefas ainda não iniciadas. O fetch
+ * interrompido falha na hora, liberando a conexão e removendo o arquivo parcial.
+ */
+@Component
+public class CancellationRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(CancellationRegistry.class);
+
+    private final Map<String, ExecutionHandle> executions = new ConcurrentHashMap<>();
+
+    /**
+     * Registra um uso da execução neste nó. A ExecutionQueue e o TargetWorker compartilham
+     * o mesmo handle; ele só sai do registro quando todos chamam {@link #unregister(String)}.
+     */
+    public ExecutionHandle register(String executionId) {
+        return executions.compute(executionId, (id, handle) -> {
+            ExecutionHandle registered = handle != null ? handle : new ExecutionHandle(id);
+            registered.references++;
+            return registered;
+        });
+    }
+
+    public void unregister(String executionId) {
+        executions.computeIfPresent(executionId, (id, handle) -> --handle.references == 0 ? null : handle);
+    }
+
+    /**
+     * Cancela a execução se ela estiver rodando neste nó.
+     *
+     * @return true se a execução estava registrada localmente
+     */
+    public boolean cancel(String executionId) {
+        ExecutionHandle handle = executions.get(executionId);
+        if (handle == null) {
+            return false;
+        }
+
+        handle.cancel();
+        return true;
+    }
+
+    public static class ExecutionHandle {
+        private final String executionId;
+        private final ExecutionHandle parent;
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+        private final Set<Future<?>> futures = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+        private volatile boolean abandoned;
+        // Alterado apenas dentro do compute do mapa, que serializa register e unregister
+        private int references;
+
+        private ExecutionHandle(String executionId) {
+            this(executionId, null);
+        }
+
+        private ExecutionHandle(String executionId, ExecutionHandle parent) {
+            this.executionId = executionId;
+            this.parent = parent;
+        }
+
+        /**
+         * Handle de um banco da execução: cancelado junto com a execução ou sozinho, por
+         * {@link #abandon()}, sem afetar os demais bancos.
+         */
+        public ExecutionHandle forTarget(String target) {
+            return new ExecutionHandle(executionId + "/" + target, this);
+        }
+
+        /**
+         * Passa a acompanhar o statement. Se a execução já foi cancelada, o statement é
+         * cancelado imediatamente, cobrindo o intervalo entre o cancelamento e o execute.
+         */
+        public void track(Statement statement) {
+            statements.add(statement);
+            if (parent != null) {
+                parent.track(statement);
+            }
+            if (cancelled) {
+                cancelStatement(statement);
+            }
+        }
+
+        public void untrack(Statement statement) {
+            statements.remove(statement);
+            if (parent != null) {
+                parent.untrack(statement);
+            }
+        }
+
+        public void track(Future<?> future) {
+            futures.add(future);
+            if (cancelled) {
+                future.cancel(false);
+            }
+        }
+
+        public void untrack(Future<?> future) {
+            futures.remove(future);
+        }
+
+        public boolean isCancelled() {
+            return cancelled || (parent != null && parent.isCancelled());
+        }
+
+        /**
+         * Interrompe o trabalho deste handle porque ele passou a pertencer a outro nó (lease
+         * perdido): o resultado local deve ser descartado, não gravado como cancelado.
+         */
+        public void abandon() {
+            abandoned = true;
+            cancel();
+        }
+
+        public boolean isAbandoned() {
+            return abandoned;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            logger.info("Cancelando execução {}: {} statements ativos, {} tarefas",
+                    executionId, statements.size(), futures.size());
+
+            // Tarefas ainda na fila não chegam a abrir conexão
+            futures.forEach(future -> future.cancel(false));
+            statements.forEach(this::cancelStatement);
+        }
+
+        private void cancelStatement(Statement statement) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                logger.warn("Erro ao cancelar statement da execução {}: {}", executionId, e.getMessage());
+            }
+        }
+    }
+}
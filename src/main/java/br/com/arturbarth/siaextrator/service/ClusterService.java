@@ -2,21 +2,31 @@ package br.com.arturbarth.siaextrator.service;
 
 import br.com.arturbarth.siaextrator.dto.ClusterRequestDTO;
 import br.com.arturbarth.siaextrator.dto.ClusterResponseDTO;
+import br.com.arturbarth.siaextrator.dto.ConnectionPoolStatsDTO;
+import br.com.arturbarth.siaextrator.dto.DiscoveryReportDTO;
 import br.com.arturbarth.siaextrator.entity.Cluster;
-import br.com.arturbarth.siaextrator.entity.DatabaseInstance;
 import br.com.arturbarth.siaextrator.exceptions.ClusterAlreadyExistsException;
 import br.com.arturbarth.siaextrator.exceptions.ClusterNotFoundException;
 import br.com.arturbarth.siaextrator.mapper.ClusterMapper;
 import br.com.arturbarth.siaextrator.repository.ClusterRepository;
 import br.com.arturbarth.siaextrator.repository.DatabaseInstanceRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,6 +35,9 @@ public class ClusterService {
     
     private static final Logger logger = LoggerFactory.getLogger(ClusterService.class);
     
+    private static final String MARK_INACTIVE_SQL =
+            "UPDATE clusters SET connection_active = false, updated_at = ? WHERE id = ?";
+    
     @Autowired
     private ClusterRepository clusterRepository;
     
@@ -37,6 +50,33 @@ public class ClusterService {
     @Autowired
     private ClusterMapper clusterMapper;
     
+    @Autowired
+    private ConnectionPoolRegistry connectionPoolRegistry;
+    
+    @Autowired
+    private ClusterTopologyCache clusterTopologyCache;
+    
+    @Autowired
+    private DatabaseCatalogSync databaseCatalogSync;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    private TransactionTemplate requiresNewTemplate;
+    
+    @PostConstruct
+    public void init() {
+        // A falha da descoberta desfaz a transação do chamador; o cluster inativo é gravado à parte
+        requiresNewTemplate = new TransactionTemplate(transactionManager);
+        requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    
     public ClusterResponseDTO createCluster(ClusterRequestDTO clusterRequestDTO) {
         logger.info("Criando novo cluster com alias: {}", clusterRequestDTO.getAlias());
         
@@ -47,6 +87,7 @@ public class ClusterService {
         
         Cluster cluster = clusterMapper.toEntity(clusterRequestDTO);
         cluster = clusterRepository.save(cluster);
+        clusterTopologyCache.invalidate();
         
         // Descobrir bancos de dados automaticamente após salvar
         try {
@@ -90,8 +131,16 @@ public class ClusterService {
             throw new ClusterAlreadyExistsException("Cluster com alias '" + clusterRequestDTO.getAlias() + "' já existe");
         }
         
+        boolean connectionChanged = connectionSettingsChanged(existingCluster, clusterRequestDTO);
+        
         clusterMapper.updateEntityFromDTO(clusterRequestDTO, existingCluster);
         existingCluster = clusterRepository.save(existingCluster);
+        clusterTopologyCache.invalidate();
+        
+        // Recriar os pools de conexão se host, porta ou credenciais mudaram
+        if (connectionChanged) {
+            connectionPoolRegistry.evictCluster(id);
+        }
         
         logger.info("Cluster atualizado com sucesso: {}", existingCluster.getAlias());
         return clusterMapper.toResponseDTO(existingCluster);
@@ -105,6 +154,8 @@ public class ClusterService {
         }
         
         clusterRepository.deleteById(id);
+        clusterTopologyCache.invalidate();
+        connectionPoolRegistry.evictCluster(id);
         logger.info("Cluster deletado com sucesso: ID {}", id);
     }
     
@@ -114,33 +165,35 @@ public class ClusterService {
         Cluster cluster = clusterRepository.findById(clusterId)
                 .orElseThrow(() -> new ClusterNotFoundException("Cluster não encontrado com ID: " + clusterId));
         
+        DiscoveryReportDTO report;
         try {
-            List<String> discoveredDatabases = databaseDiscoveryService.discoverDatabases(cluster);
+            List<DatabaseDiscoveryService.DiscoveredDatabase> discoveredDatabases =
+                    databaseDiscoveryService.discoverDatabases(cluster);
             
-            // Limpar bancos existentes
-            cluster.clearDatabases();
+            // Sincronizar por diferença: só bancos novos são inseridos e os demais mantêm id e dados
+            report = databaseCatalogSync.sync(clusterId, discoveredDatabases);
             
-            // Adicionar novos bancos descobertos
-            for (String databaseName : discoveredDatabases) {
-                DatabaseInstance databaseInstance = new DatabaseInstance(databaseName, cluster);
-                cluster.addDatabase(databaseInstance);
-            }
+            // Catálogo gravado via JDBC: recarregar o cluster e seus bancos no contexto de persistência
+            entityManager.refresh(cluster);
             
             cluster.setConnectionActive(true);
             cluster.setLastDiscovery(LocalDateTime.now());
             
             cluster = clusterRepository.save(cluster);
+            clusterTopologyCache.invalidate();
             logger.info("Descoberta concluída para cluster {}: {} bancos encontrados",
                     cluster.getAlias(), discoveredDatabases.size());
             
         } catch (Exception e) {
             logger.error("Erro na descoberta de bancos para cluster {}: {}", cluster.getAlias(), e.getMessage());
-            cluster.setConnectionActive(false);
-            clusterRepository.save(cluster);
+            markInactive(clusterId);
+            clusterTopologyCache.invalidate();
             throw new RuntimeException("Falha na descoberta de bancos: " + e.getMessage(), e);
         }
         
-        return clusterMapper.toResponseDTO(clusterRepository.findByIdWithDatabases(clusterId).orElse(cluster));
+        ClusterResponseDTO response = clusterMapper.toResponseDTO(clusterRepository.findByIdWithDatabases(clusterId).orElse(cluster));
+        response.setDiscoveryReport(report);
+        return response;
     }
     
     public boolean testConnection(Long clusterId) {
@@ -149,4 +202,27 @@ public class ClusterService {
         
         return databaseDiscoveryService.testConnection(cluster);
     }
+    
+    public ConnectionPoolStatsDTO getPoolStats(Long clusterId) {
+        Cluster cluster = clusterRepository.findById(clusterId)
+                .orElseThrow(() -> new ClusterNotFoundException("Cluster não encontrado com ID: " + clusterId));
+        
+        return connectionPoolRegistry.getClusterStats(cluster);
+    }
+    
+    private void markInactive(Long clusterId) {
+        try {
+            requiresNewTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.update(MARK_INACTIVE_SQL, Timestamp.valueOf(LocalDateTime.now()), clusterId));
+        } catch (Exception e) {
+            logger.warn("Não foi possível marcar o cluster ID {} como inativo: {}", clusterId, e.getMessage());
+        }
+    }
+    
+    private boolean connectionSettingsChanged(Cluster cluster, ClusterRequestDTO dto) {
+        return !Objects.equals(cluster.getHost(), dto.getHost()) ||
+                !Objects.equals(cluster.getPort(), dto.getPort()) ||
+                !Objects.equals(cluster.getUsername(), dto.getUsername()) ||
+                !Objects.equals(cluster.getPassword(), dto.getPassword());
+    }
 }
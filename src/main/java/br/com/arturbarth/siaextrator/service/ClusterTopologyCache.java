@@ -0,0 +1,139 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.entity.Cluster;
+import br.com.arturbarth.siaextrator.entity.DatabaseInstance;
+import br.com.arturbarth.siaextrator.repository.ClusterRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache em memória da topologia: clusters e seus bancos descobertos.
+ *
+ * Validação, planejamento e execução consultam clusters e bancos a cada execução; com o
+ * cache, esse caminho não faz nenhuma consulta ao banco de metadados. A topologia inteira
+ * é carregada em uma única consulta e substituída de uma vez. O {@link ClusterService}
+ * invalida o cache ao criar, atualizar, remover ou redescobrir um cluster; alterações
+ * feitas por outro nó são vistas ao expirar o TTL.
+ *
+ * As entidades em cache estão desanexadas e são compartilhadas entre threads: devem ser
+ * tratadas como somente leitura.
+ */
+@Component
+public class ClusterTopologyCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterTopologyCache.class);
+
+    @Value("${app.topology.cache.ttl.seconds:60}")
+    private long ttlSeconds;
+
+    @Autowired
+    private ClusterRepository clusterRepository;
+
+    private volatile Snapshot snapshot;
+
+    public Cluster getCluster(Long clusterId) {
+        Topology topology = current().clusters.get(clusterId);
+        return topology != null ? topology.cluster : null;
+    }
+
+    /**
+     * Clusters com os ids informados, na mesma ordem; ids inexistentes são ignorados.
+     */
+    public List<Cluster> getClusters(Collection<Long> clusterIds) {
+        Snapshot current = current();
+        List<Cluster> clusters = new ArrayList<>(clusterIds.size());
+        for (Long clusterId : clusterIds) {
+            Topology topology = current.clusters.get(clusterId);
+            if (topology != null) {
+                clusters.add(topology.cluster);
+            }
+        }
+        return clusters;
+    }
+
+    public List<DatabaseInstance> getDatabases(Long clusterId) {
+        Topology topology = current().clusters.get(clusterId);
+        return topology != null ? topology.databases : Collections.emptyList();
+    }
+
+    /**
+     * Descarta a topologia em cache. Dentro de uma transação, descarta de novo após o
+     * commit, para que uma leitura concorrente não guarde o estado anterior.
+     */
+    public void invalidate() {
+        snapshot = null;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    snapshot = null;
+                }
+            });
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && !current.isExpired()) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || current.isExpired()) {
+                current = load();
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    private Snapshot load() {
+        long start = System.nanoTime();
+        Map<Long, Topology> clusters = new HashMap<>();
+        for (Cluster cluster : clusterRepository.findAllWithDatabases()) {
+            clusters.put(cluster.getId(), new Topology(cluster, List.copyOf(cluster.getDatabases())));
+        }
+
+        logger.debug("Topologia carregada: {} clusters em {}ms",
+                clusters.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return new Snapshot(clusters, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds));
+    }
+
+    private static final class Snapshot {
+        private final Map<Long, Topology> clusters;
+        private final long expiresAtNanos;
+
+        private Snapshot(Map<Long, Topology> clusters, long expiresAtNanos) {
+            this.clusters = clusters;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos > 0;
+        }
+    }
+
+    private static final class Topology {
+        private final Cluster cluster;
+        private final List<DatabaseInstance> databases;
+
+        private Topology(Cluster cluster, List<DatabaseInstance> databases) {
+            this.cluster = cluster;
+            this.databases = databases;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package br.com.arturbarth.siaextrator.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Codecs de compressão aplicados aos arquivos de resultado.
+ *
+ * A extensão do arquivo identifica o codec usado na gravação, e o nome do codec é o
+ * mesmo valor usado no cabeçalho HTTP Content-Encoding.
+ */
+public enum CompressionCodec {
+    NONE("", null),
+    GZIP(".gz", "gzip"),
+    ZSTD(".zst", "zstd");
+    
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    
+    private static final int DEFAULT_ZSTD_LEVEL = 3;
+    
+    private final String fileExtension;
+    private final String contentEncoding;
+    
+    CompressionCodec(String fileExtension, String contentEncoding) {
+        this.fileExtension = fileExtension;
+        this.contentEncoding = contentEncoding;
+    }
+    
+    public String getFileExtension() {
+        return fileExtension;
+    }
+    
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+    
+    /**
+     * Envolve o stream com o compressor do codec. Nível negativo usa o padrão do codec.
+     */
+    public OutputStream wrapOutput(OutputStream out, int level) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new LeveledGzipOutputStream(out, level);
+            case ZSTD:
+                return new ZstdOutputStream(out, level < 0 ? DEFAULT_ZSTD_LEVEL : level);
+            default:
+                return out;
+        }
+    }
+    
+    public InputStream wrapInput(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, STREAM_BUFFER_SIZE);
+            case ZSTD:
+                return new ZstdInputStream(in);
+            default:
+                return in;
+        }
+    }
+    
+    public static CompressionCodec fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return NONE;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Codec de compressão não suportado: " + name);
+        }
+    }
+    
+    // Identifica o codec pela extensão final do arquivo
+    public static CompressionCodec fromFileName(String fileName) {
+        for (CompressionCodec codec : values()) {
+            if (codec != NONE && fileName.endsWith(codec.fileExtension)) {
+                return codec;
+            }
+        }
+        return NONE;
+    }
+    
+    // Remove a extensão do codec, se houver (ex.: "a.csv.gz" -> "a.csv")
+    public static String stripExtension(String fileName) {
+        CompressionCodec codec = fromFileName(fileName);
+        return fileName.substring(0, fileName.length() - codec.fileExtension.length());
+    }
+    
+    // Verifica se o cliente aceita o codec pelo cabeçalho Accept-Encoding
+    public boolean isAcceptedBy(String acceptEncoding) {
+        if (contentEncoding == null || acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (!tokens[0].trim().equalsIgnoreCase(contentEncoding)) {
+                continue;
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim().replace(" ", "");
+                if (param.equals("q=0") || param.matches("q=0\\.0*")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    // GZIPOutputStream com nível de compressão configurável
+    private static class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, STREAM_BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ConnectionPoolStatsDTO;
+import br.com.arturbarth.siaextrator.dto.DatabasePoolStatsDTO;
+import br.com.arturbarth.siaextrator.entity.Cluster;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de pools de conexão JDBC para os clusters gerenciados, com um pool limitado
+ * para cada par (cluster, banco).
+ *
+ * Os pools são criados sob demanda e não abrem conexões antecipadamente. Conexões
+ * ociosas são descartadas após o idle timeout e renovadas ao atingir o tempo máximo de
+ * vida. Quando host, porta ou credenciais do cluster mudam, os pools antigos são
+ * aposentados e fechados assim que não houver mais conexões em uso. Pools sem uso há
+ * mais de {@code database.pool.retire.idle.seconds} também são aposentados, para que
+ * cada banco já consultado não mantenha um pool (com MXBean e tarefa de manutenção)
+ * registrado para sempre.
+ */
+@Component
+public class ConnectionPoolRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPoolRegistry.class);
+
+    @Value("${query.execution.timeout.seconds:300}")
+    private int queryTimeoutSeconds;
+
+    @Value("${database.connection.timeout:30}")
+    private int connectionTimeoutSeconds;
+
+    @Value("${database.pool.max.size:4}")
+    private int maxPoolSize;
+
+    @Value("${database.pool.idle.timeout.seconds:120}")
+    private long idleTimeoutSeconds;
+
+    @Value("${database.pool.max.lifetime.seconds:1800}")
+    private long maxLifetimeSeconds;
+
+    // 0 mantém os pools até o cluster ser alterado ou removido
+    @Value("${database.pool.retire.idle.seconds:900}")
+    private long retireIdleSeconds;
+
+    @Autowired
+    private ExtractionMetrics extractionMetrics;
+
+    private final Map<PoolKey, PoolEntry> pools = new ConcurrentHashMap<>();
+
+    private final Map<Long, AcquireStats> acquireStats = new ConcurrentHashMap<>();
+
+    private final List<PoolEntry> retiredPools = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService housekeeper;
+
+    @PostConstruct
+    public void init() {
+        // Executor compartilhado pela manutenção de todos os pools, evitando uma thread por pool
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2, runnable -> {
+            Thread thread = new Thread(runnable, "rds-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        housekeeper = executor;
+        housekeeper.scheduleWithFixedDelay(this::closeDrainedPools, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Obtém uma conexão do pool do banco informado, criando o pool se necessário.
+     * A conexão é somente leitura, sem autocommit, e deve ser fechada pelo chamador
+     * para retornar ao pool.
+     */
+    public Connection getConnection(Cluster cluster, String databaseName) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = acquire(cluster, databaseName);
+        if (connection == null) {
+            // Pool aposentado por ociosidade entre a busca e o uso: o próximo poolFor cria outro
+            connection = acquire(cluster, databaseName);
+        }
+        if (connection == null) {
+            throw new SQLException("Pool de conexões do banco " + databaseName + " encerrado");
+        }
+        long elapsed = System.nanoTime() - start;
+        acquireStats.computeIfAbsent(cluster.getId(), id -> new AcquireStats()).record(elapsed);
+        extractionMetrics.forCluster(cluster.getAlias()).recordConnectionAcquire(elapsed);
+
+        return connection;
+    }
+
+    // Null se o pool foi fechado antes de entregar a conexão
+    private Connection acquire(Cluster cluster, String databaseName) throws SQLException {
+        PoolEntry entry = poolFor(cluster, databaseName);
+        entry.lastUsedNanos = System.nanoTime();
+        try {
+            return entry.dataSource.getConnection();
+        } catch (SQLException e) {
+            if (!entry.dataSource.isClosed()) {
+                throw e;
+            }
+            pools.remove(new PoolKey(cluster.getId(), databaseName), entry);
+            return null;
+        }
+    }
+
+    /**
+     * Aposenta todos os pools do cluster. Deve ser chamado quando o cluster é
+     * atualizado ou removido.
+     */
+    public void evictCluster(Long clusterId) {
+        Iterator<Map.Entry<PoolKey, PoolEntry>> iterator = pools.entrySet().iterator();
+        int evicted = 0;
+        while (iterator.hasNext()) {
+            Map.Entry<PoolKey, PoolEntry> entry = iterator.next();
+            if (entry.getKey().clusterId.equals(clusterId)) {
+                iterator.remove();
+                retire(entry.getValue());
+                evicted++;
+            }
+        }
+        acquireStats.remove(clusterId);
+
+        if (evicted > 0) {
+            logger.info("{} pools de conexão aposentados para o cluster ID {}", evicted, clusterId);
+        }
+    }
+
+    public ConnectionPoolStatsDTO getClusterStats(Cluster cluster) {
+        ConnectionPoolStatsDTO stats = new ConnectionPoolStatsDTO();
+        stats.setClusterId(cluster.getId());
+        stats.setClusterAlias(cluster.getAlias());
+
+        List<DatabasePoolStatsDTO> databases = new ArrayList<>();
+        int active = 0;
+        int idle = 0;
+        int waiting = 0;
+
+        for (Map.Entry<PoolKey, PoolEntry> entry : pools.entrySet()) {
+            if (!entry.getKey().clusterId.equals(cluster.getId())) {
+                continue;
+            }
+
+            HikariPoolMXBean pool = entry.getValue().dataSource.getHikariPoolMXBean();
+            if (pool == null) {
+                continue;
+            }
+
+            DatabasePoolStatsDTO databaseStats = new DatabasePoolStatsDTO();
+            databaseStats.setDatabaseName(entry.getKey().databaseName);
+            databaseStats.setActiveConnections(pool.getActiveConnections());
+            databaseStats.setIdleConnections(pool.getIdleConnections());
+            databaseStats.setThreadsAwaitingConnection(pool.getThreadsAwaitingConnection());
+            databases.add(databaseStats);
+
+            active += pool.getActiveConnections();
+            idle += pool.getIdleConnections();
+            waiting += pool.getThreadsAwaitingConnection();
+        }
+
+        stats.setPoolCount(databases.size());
+        stats.setActiveConnections(active);
+        stats.setIdleConnections(idle);
+        stats.setThreadsAwaitingConnection(waiting);
+        stats.setDatabases(databases);
+
+        AcquireStats acquire = acquireStats.get(cluster.getId());
+        if (acquire != null) {
+            long count = acquire.count.sum();
+            stats.setAcquireCount(count);
+            stats.setAvgAcquireTimeMs(count > 0 ? acquire.totalNanos.sum() / count / 1_000_000.0 : 0.0);
+            stats.setMaxAcquireTimeMs(acquire.maxNanos.get() / 1_000_000.0);
+        }
+
+        return stats;
+    }
+
+    private PoolEntry poolFor(Cluster cluster, String databaseName) {
+        PoolKey key = new PoolKey(cluster.getId(), databaseName);
+        String fingerprint = fingerprint(cluster);
+
+        PoolEntry current = pools.get(key);
+        if (current != null && current.fingerprint.equals(fingerprint)) {
+            return current;
+        }
+
+        PoolEntry entry = pools.compute(key, (poolKey, existing) -> {
+            if (existing != null && existing.fingerprint.equals(fingerprint)) {
+                return existing;
+            }
+            if (existing != null) {
+                // Configuração do cluster mudou sem passar pelo evictCluster (ex.: outra instância)
+                logger.info("Configuração do cluster {} alterada, recriando pool do banco {}",
+                        cluster.getAlias(), databaseName);
+                retire(existing);
+            }
+            return new PoolEntry(createDataSource(cluster, databaseName), fingerprint);
+        });
+
+        return entry;
+    }
+
+    private HikariDataSource createDataSource(Cluster cluster, String databaseName) {
+        logger.debug("Criando pool de conexões para cluster {} - banco {}", cluster.getAlias(), databaseName);
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("rds-" + cluster.getAlias() + "-" + databaseName);
+        config.setJdbcUrl(buildJdbcUrl(cluster, databaseName));
+        config.setUsername(cluster.getUsername());
+        config.setPassword(cluster.getPassword());
+        config.setReadOnly(true);
+        config.setAutoCommit(false);
+        config.setTransactionIsolation("TRANSACTION_READ_COMMITTED");
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setMinimumIdle(0);
+        config.setIdleTimeout(TimeUnit.SECONDS.toMillis(idleTimeoutSeconds));
+        config.setMaxLifetime(TimeUnit.SECONDS.toMillis(maxLifetimeSeconds));
+        config.setConnectionTimeout(TimeUnit.SECONDS.toMillis(connectionTimeoutSeconds));
+        // Não conectar na criação do pool; falhas aparecem no primeiro getConnection
+        config.setInitializationFailTimeout(-1);
+        config.setScheduledExecutor(housekeeper);
+
+        return new HikariDataSource(config);
+    }
+
+    private String buildJdbcUrl(Cluster cluster, String databaseName) {
+        return String.format("jdbc:postgresql://%s:%d/%s?connectTimeout=%d&socketTimeout=%d&loginTimeout=%d",
+                cluster.getHost(),
+                cluster.getPort(),
+                databaseName,
+                connectionTimeoutSeconds,
+                queryTimeoutSeconds,
+                connectionTimeoutSeconds);
+    }
+
+    private String fingerprint(Cluster cluster) {
+        return String.join("|", cluster.getHost(), String.valueOf(cluster.getPort()),
+                cluster.getUsername(), cluster.getPassword());
+    }
+
+    private void retire(PoolEntry entry) {
+        HikariPoolMXBean pool = entry.dataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            pool.softEvictConnections();
+        }
+        retiredPools.add(entry);
+    }
+
+    private void closeDrainedPools() {
+        retireIdlePools();
+
+        for (PoolEntry entry : retiredPools) {
+            HikariPoolMXBean pool = entry.dataSource.getHikariPoolMXBean();
+            if (pool == null || pool.getActiveConnections() == 0) {
+                entry.dataSource.close();
+                retiredPools.remove(entry);
+                logger.debug("Pool aposentado fechado: {}", entry.dataSource.getPoolName());
+            }
+        }
+    }
+
+    // Pools sem conexões em uso nem espera e sem acesso desde o limite configurado
+    private void retireIdlePools() {
+        if (retireIdleSeconds <= 0) {
+            return;
+        }
+
+        long idleSince = System.nanoTime() - TimeUnit.SECONDS.toNanos(retireIdleSeconds);
+        int retired = 0;
+        for (Map.Entry<PoolKey, PoolEntry> entry : pools.entrySet()) {
+            PoolEntry pool = entry.getValue();
+            if (pool.lastUsedNanos - idleSince > 0 || pool.inUse()) {
+                continue;
+            }
+            if (pools.remove(entry.getKey(), pool)) {
+                retire(pool);
+                retired++;
+            }
+        }
+
+        if (retired > 0) {
+            logger.debug("{} pools sem uso há mais de {}s aposentados, {} ativos", retired, retireIdleSeconds, pools.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Encerrando pools de conexão ({} ativos, {} aposentados)", pools.size(), retiredPools.size());
+        pools.values().forEach(entry -> entry.dataSource.close());
+        retiredPools.forEach(entry -> entry.dataSource.close());
+        pools.clear();
+        retiredPools.clear();
+        housekeeper.shutdownNow();
+    }
+
+    private static final class PoolKey {
+        private final Long clusterId;
+        private final String databaseName;
+
+        private PoolKey(Long clusterId, String databaseName) {
+            this.clusterId = clusterId;
+            this.databaseName = databaseName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PoolKey other)) return false;
+            return Objects.equals(clusterId, other.clusterId) && Objects.equals(databaseName, other.databaseName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(clusterId, databaseName);
+        }
+    }
+
+    private static final class PoolEntry {
+        private final HikariDataSource dataSource;
+        private final String fingerprint;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private PoolEntry(HikariDataSource dataSource, String fingerprint) {
+            this.dataSource = dataSource;
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean inUse() {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return pool != null && (pool.getActiveConnections() > 0 || pool.getThreadsAwaitingConnection() > 0);
+        }
+    }
+
+    private static final class AcquireStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+}
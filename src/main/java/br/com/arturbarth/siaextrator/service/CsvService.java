@@ -1,18 +1,23 @@
 package br.com.arturbarth.siaextrator.service;
 
+import br.com.arturbarth.siaextrator.dto.ResultSchema;
+import br.com.arturbarth.siaextrator.dto.RowBatch;
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -21,6 +26,8 @@ public class CsvService {
     
     private static final Logger logger = LoggerFactory.getLogger(CsvService.class);
     
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    
     @Value("${app.csv.storage.path:/tmp/query-results}")
     private String csvStoragePath;
     
@@ -33,184 +40,47 @@ public class CsvService {
     @Value("${app.csv.include.header:true}")
     private boolean includeHeader;
     
+    @Value("${app.csv.compression:none}")
+    private String compression;
+    
+    @Value("${app.csv.compression.level:-1}")
+    private int compressionLevel;
+    
+    @Autowired
+    private ExtractionMetrics extractionMetrics;
+    
     public String saveResultToCsv(String executionId, String clusterAlias,
-                                  String databaseName, List<Map<String, Object>> data) {
-        
-        logger.info("Salvando resultado em CSV para execução {} - cluster {} - banco {}",
-                executionId, clusterAlias, databaseName);
+                                  String databaseName, ResultSchema schema, List<RowBatch> batches) {
         
-        if (data == null || data.isEmpty()) {
+        if (batches == null || batches.isEmpty()) {
             logger.info("Nenhum dado para salvar no CSV");
             return null;
         }
         
-        // Criar estrutura de diretórios
-        String directoryPath = String.format("%s/%s", csvStoragePath, executionId);
-        createDirectoryIfNotExists(directoryPath);
-        
-        // Nome do arquivo
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String fileName = String.format("%s_%s_%s.csv",
-                sanitizeFileName(clusterAlias),
-                sanitizeFileName(databaseName),
-                timestamp);
-        String filePath = String.format("%s/%s", directoryPath, fileName);
-        
-        try (PrintWriter writer = new PrintWriter(
-                new OutputStreamWriter(new FileOutputStream(filePath), csvEncoding))) {
-            
-            // Escrever cabeçalho
-            if (includeHeader && !data.isEmpty()) {
-                Map<String, Object> firstRow = data.get(0);
-                String header = String.join(csvDelimiter, firstRow.keySet());
-                writer.println(header);
-            }
-            
-            // Escrever dados
-            long writtenRows = 0;
-            for (Map<String, Object> row : data) {
-                String csvRow = row.values().stream()
-                        .map(this::formatCsvValue)
-                        .collect(Collectors.joining(csvDelimiter));
-                writer.println(csvRow);
-                writtenRows++;
-                
-                // Log de progresso a cada 10k linhas
-                if (writtenRows % 10000 == 0) {
-                    logger.debug("Escritas {} linhas no CSV...", writtenRows);
-                }
+        // Cabeçalho e valores seguem a mesma ordem de colunas do esquema
+        CsvRowSink sink = openRowSink(executionId, clusterAlias, databaseName);
+        try {
+            sink.start(schema);
+            for (RowBatch batch : batches) {
+                sink.acceptBatch(batch);
             }
-            
-            logger.info("CSV salvo com sucesso: {} ({} linhas)", fileName, writtenRows);
-            return filePath;
+            sink.finish();
+            return sink.getFilePath();
             
         } catch (IOException e) {
+            sink.abort();
             logger.error("Erro ao salvar CSV: {}", e.getMessage(), e);
             throw new RuntimeException("Falha ao salvar resultado em CSV: " + e.getMessage(), e);
         }
     }
     
-    public String consolidateResults(String executionId) {
-        logger.info("Consolidando resultados CSV para execução: {}", executionId);
-        
-        String executionDirectory = String.format("%s/%s", csvStoragePath, executionId);
-        String consolidatedFileName = String.format("%s_consolidated.csv", executionId);
-        String consolidatedFilePath = String.format("%s/%s", executionDirectory, consolidatedFileName);
-        
-        try {
-            // Listar todos os arquivos CSV da execução
-            Path executionPath = Paths.get(executionDirectory);
-            if (!Files.exists(executionPath)) {
-                logger.warn("Diretório de execução não encontrado: {}", executionDirectory);
-                return null;
-            }
-            
-            List<Path> csvFiles;
-            try (Stream<Path> paths = Files.list(executionPath)) {
-                csvFiles = paths
-                        .filter(path -> path.toString().endsWith(".csv"))
-                        .filter(path -> !path.toString().contains("consolidated"))
-                        .sorted()
-                        .collect(Collectors.toList());
-            }
-            
-            if (csvFiles.isEmpty()) {
-                logger.warn("Nenhum arquivo CSV encontrado para consolidar");
-                return null;
-            }
-            
-            logger.info("Consolidando {} arquivos CSV", csvFiles.size());
-            
-            // Consolidar arquivos
-            try (PrintWriter consolidatedWriter = new PrintWriter(
-                    new OutputStreamWriter(new FileOutputStream(consolidatedFilePath), csvEncoding))) {
-                
-                boolean headerWritten = false;
-                long totalLines = 0;
-                
-                for (Path csvFile : csvFiles) {
-                    logger.debug("Processando arquivo: {}", csvFile.getFileName());
-                    
-                    try (BufferedReader reader = Files.newBufferedReader(csvFile)) {
-                        String line;
-                        boolean isFirstLine = true;
-                        long fileLines = 0;
-                        
-                        while ((line = reader.readLine()) != null) {
-                            if (isFirstLine && includeHeader) {
-                                // Escrever cabeçalho apenas uma vez
-                                if (!headerWritten) {
-                                    // Adicionar colunas de metadados
-                                    consolidatedWriter.println("cluster" + csvDelimiter +
-                                            "database" + csvDelimiter +
-                                            "source_file" + csvDelimiter +
-                                            line);
-                                    headerWritten = true;
-                                }
-                                isFirstLine = false;
-                            } else {
-                                // Extrair cluster e database do nome do arquivo
-                                String fileName = csvFile.getFileName().toString();
-                                String[] fileParts = extractClusterAndDatabaseFromFileName(fileName);
-                                String cluster = fileParts[0];
-                                String database = fileParts[1];
-                                
-                                // Escrever linha com metadados
-                                consolidatedWriter.println(cluster + csvDelimiter +
-                                        database + csvDelimiter +
-                                        fileName + csvDelimiter +
-                                        line);
-                                totalLines++;
-                                fileLines++;
-                                
-                                if (!isFirstLine) {
-                                    isFirstLine = false;
-                                }
-                            }
-                        }
-                        
-                        logger.debug("Arquivo {} processado: {} linhas",
-                                csvFile.getFileName(), fileLines);
-                    }
-                }
-                
-                logger.info("Arquivo consolidado criado: {} ({} linhas totais)",
-                        consolidatedFileName, totalLines);
-                return consolidatedFilePath;
-                
-            }
-            
-        } catch (IOException e) {
-            logger.error("Erro ao consolidar resultados CSV: {}", e.getMessage(), e);
-            throw new RuntimeException("Falha ao consolidar resultados CSV: " + e.getMessage(), e);
-        }
-    }
-    
-    public byte[] downloadCsvFile(String filePath) {
-        logger.debug("Fazendo download do arquivo CSV: {}", filePath);
-        
-        try {
-            Path path = Paths.get(filePath);
-            if (!Files.exists(path)) {
-                throw new RuntimeException("Arquivo não encontrado: " + filePath);
-            }
-            
-            // Verificar tamanho do arquivo
-            long fileSize = Files.size(path);
-            logger.debug("Tamanho do arquivo: {} bytes", fileSize);
-            
-            // Limite de 100MB para download
-            if (fileSize > 100 * 1024 * 1024) {
-                throw new RuntimeException("Arquivo muito grande para download: " +
-                        formatBytes(fileSize) + " (limite: 100MB)");
-            }
-            
-            return Files.readAllBytes(path);
-            
-        } catch (IOException e) {
-            logger.error("Erro ao fazer download do arquivo CSV: {}", e.getMessage(), e);
-            throw new RuntimeException("Falha no download do arquivo CSV: " + e.getMessage(), e);
-        }
+    /**
+     * Abre um sink que grava as linhas diretamente no CSV à medida que chegam do banco.
+     * O arquivo só é criado na primeira linha, mantendo o comportamento de não gerar
+     * CSV para resultados vazios.
+     */
+    public CsvRowSink openRowSink(String executionId, String clusterAlias, String databaseName) {
+        return new CsvRowSink(executionId, clusterAlias, databaseName);
     }
     
     public CsvFileInfo getCsvFileInfo(String filePath) {
@@ -227,7 +97,7 @@ public class CsvService {
             info.setLastModified(Files.getLastModifiedTime(path).toInstant().toEpochMilli());
             
             // Contar linhas
-            try (BufferedReader reader = Files.newBufferedReader(path)) {
+            try (BufferedReader reader = openReader(path)) {
                 long lineCount = reader.lines().count();
                 info.setLineCount(lineCount);
                 
@@ -309,7 +179,7 @@ public class CsvService {
         try (Stream<Path> paths = Files.list(executionPath)) {
             return paths
                     .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().endsWith(".csv"))
+                    .filter(this::isResultFile)
                     .map(path -> path.toString())
                     .sorted()
                     .collect(Collectors.toList());
@@ -319,6 +189,58 @@ public class CsvService {
         }
     }
     
+    /**
+     * Monta o caminho do arquivo de resultado de um banco no diretório da execução,
+     * criando o diretório se necessário. Compartilhado por todos os formatos de saída.
+     */
+    public String buildResultFilePath(String executionId, String clusterAlias, String databaseName, String extension) {
+        // Criar estrutura de diretórios
+        String directoryPath = getExecutionDirectory(executionId);
+        createDirectoryIfNotExists(directoryPath);
+        
+        // Nome determinístico: uma nova tentativa do mesmo banco substitui o arquivo
+        String fileName = String.format("%s_%s%s",
+                sanitizeFileName(clusterAlias),
+                sanitizeFileName(databaseName),
+                extension);
+        return String.format("%s/%s", directoryPath, fileName);
+    }
+    
+    // Arquivo temporário exclusivo desta tentativa, ao lado do arquivo final
+    public Path partFileFor(String filePath) {
+        return Paths.get(filePath + ".part-" + UUID.randomUUID().toString().substring(0, 8));
+    }
+    
+    /**
+     * Publica o arquivo concluído no nome final, substituindo o de uma tentativa anterior.
+     */
+    public void publishResultFile(Path partFile, String filePath) throws IOException {
+        try {
+            Files.move(partFile, Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partFile, Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    public String getExecutionDirectory(String executionId) {
+        return String.format("%s/%s", csvStoragePath, executionId);
+    }
+    
+    public CompressionCodec getCompressionCodec() {
+        return CompressionCodec.fromName(compression);
+    }
+    
+    // Reader que descomprime conforme a extensão do arquivo
+    private BufferedReader openReader(Path path) throws IOException {
+        CompressionCodec codec = CompressionCodec.fromFileName(path.getFileName().toString());
+        InputStream in = codec.wrapInput(Files.newInputStream(path));
+        return new BufferedReader(new InputStreamReader(in, csvEncoding), WRITE_BUFFER_SIZE);
+    }
+    
+    private boolean isResultFile(Path path) {
+        return CompressionCodec.stripExtension(path.getFileName().toString()).endsWith(".csv");
+    }
+    
     private void createDirectoryIfNotExists(String directoryPath) {
         try {
             Path path = Paths.get(directoryPath);
@@ -362,12 +284,16 @@ public class CsvService {
         }
     }
     
-    private String formatCsvValue(Object value) {
+    // Visível no pacote para os benchmarks do módulo benchmarks
+    String formatCsvValue(Object value) {
         if (value == null) {
             return "";
         }
         
-        String stringValue = value.toString();
+        // Binários seguem em Base64; os demais tipos usam a representação textual
+        String stringValue = value instanceof byte[] bytes
+                ? java.util.Base64.getEncoder().encodeToString(bytes)
+                : value.toString();
         
         // Escapar aspas duplas
         stringValue = stringValue.replace("\"", "\"\"");
@@ -392,18 +318,6 @@ public class CsvService {
         return fileName.replaceAll("[^a-zA-Z0-9_\\-]", "_");
     }
     
-    private String[] extractClusterAndDatabaseFromFileName(String fileName) {
-        // Formato esperado: cluster_database_timestamp.csv
-        String nameWithoutExtension = fileName.replace(".csv", "");
-        String[] parts = nameWithoutExtension.split("_");
-        
-        if (parts.length >= 2) {
-            return new String[]{parts[0], parts[1]};
-        } else {
-            return new String[]{"unknown", "unknown"};
-        }
-    }
-    
     private String formatBytes(long bytes) {
         if (bytes < 1024) return bytes + " B";
         if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
@@ -411,6 +325,195 @@ public class CsvService {
         return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
     }
     
+    /**
+     * Sink que grava linhas em CSV sem mantê-las em memória.
+     *
+     * O arquivo já sai no layout do consolidado (colunas cluster, database e source_file
+     * à frente) e o cabeçalho é gravado em um frame de compressão próprio. A posição
+     * do fim do cabeçalho ({@link #getDataOffset()}) é gravada com o resultado do banco, e
+     * o download consolidado apenas concatena os arquivos, pulando o cabeçalho a partir
+     * do segundo.
+     */
+    public class CsvRowSink implements ResultWriter {
+        private final String executionId;
+        private final String clusterAlias;
+        private final String databaseName;
+        private ResultSchema schema;
+        private BufferedWriter writer;
+        private CountingOutputStream out;
+        private String filePath;
+        private Path partFile;
+        private String rowPrefix;
+        private long dataOffset;
+        private long rowCount;
+        
+        private CsvRowSink(String executionId, String clusterAlias, String databaseName) {
+            this.executionId = executionId;
+            this.clusterAlias = clusterAlias;
+            this.databaseName = databaseName;
+        }
+        
+        @Override
+        public void start(ResultSchema schema) {
+            this.schema = schema;
+        }
+        
+        @Override
+        public void accept(Object[] values) throws IOException {
+            writeRow(values, 0);
+        }
+        
+        @Override
+        public void acceptBatch(RowBatch batch) throws IOException {
+            // Lê os valores direto do array do lote, sem cópia por linha
+            for (int i = 0; i < batch.getRowCount(); i++) {
+                writeRow(batch.getValues(), batch.offsetOf(i));
+            }
+        }
+        
+        private void writeRow(Object[] values, int offset) throws IOException {
+            if (writer == null) {
+                open();
+            }
+            
+            writer.write(rowPrefix);
+            int columnCount = schema.getColumnCount();
+            for (int i = 0; i < columnCount; i++) {
+                writer.write(csvDelimiter);
+                writer.write(formatCsvValue(values[offset + i]));
+            }
+            writer.newLine();
+            rowCount++;
+            
+            // Log de progresso a cada 10k linhas
+            if (rowCount % 10000 == 0) {
+                logger.debug("Escritas {} linhas no CSV...", rowCount);
+            }
+        }
+        
+        @Override
+        public void finish() throws IOException {
+            if (writer == null) {
+                logger.info("Nenhum dado para salvar no CSV");
+                return;
+            }
+            
+            writer.close();
+            publishResultFile(partFile, filePath);
+            extractionMetrics.recordWrite(ResultFormat.CSV, rowCount, out.getCount());
+            logger.info("CSV salvo com sucesso: {} ({} linhas)", Paths.get(filePath).getFileName(), rowCount);
+        }
+        
+        @Override
+        public void abort() {
+            if (writer == null) {
+                return;
+            }
+            
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.debug("Erro ao fechar CSV parcial {}: {}", filePath, e.getMessage());
+            }
+            
+            try {
+                Files.deleteIfExists(partFile);
+                logger.debug("CSV parcial removido: {}", partFile);
+            } catch (IOException e) {
+                logger.warn("Erro ao remover CSV parcial {}: {}", partFile, e.getMessage());
+            }
+            filePath = null;
+        }
+        
+        private void open() throws IOException {
+            logger.info("Salvando resultado em CSV para execução {} - cluster {} - banco {}",
+                    executionId, clusterAlias, databaseName);
+            
+            filePath = buildResultFilePath(executionId, clusterAlias, databaseName,
+                    ResultFormat.CSV.getFileExtension() + getCompressionCodec().getFileExtension());
+            String fileName = Paths.get(filePath).getFileName().toString();
+            rowPrefix = formatCsvValue(clusterAlias) + csvDelimiter +
+                    formatCsvValue(databaseName) + csvDelimiter +
+                    formatCsvValue(fileName);
+            
+            CompressionCodec codec = getCompressionCodec();
+            partFile = partFileFor(filePath);
+            out = new CountingOutputStream(new FileOutputStream(partFile.toFile()));
+            try {
+                // Escrever cabeçalho, fechando o frame de compressão para marcar onde começam as linhas
+                if (includeHeader) {
+                    try (Writer header = new OutputStreamWriter(
+                            codec.wrapOutput(new NonClosingOutputStream(out), compressionLevel), csvEncoding)) {
+                        header.write("cluster" + csvDelimiter + "database" + csvDelimiter + "source_file");
+                        for (String columnName : schema.getColumnNames()) {
+                            header.write(csvDelimiter);
+                            header.write(columnName);
+                        }
+                        header.write(System.lineSeparator());
+                    }
+                }
+                dataOffset = out.getCount();
+                
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        codec.wrapOutput(out, compressionLevel), csvEncoding), WRITE_BUFFER_SIZE);
+            } catch (IOException | RuntimeException e) {
+                out.close();
+                throw e;
+            }
+        }
+        
+        @Override
+        public String getFilePath() { return filePath; }
+        
+        @Override
+        public long getRowCount() { return rowCount; }
+        
+        @Override
+        public long getDataOffset() { return dataOffset; }
+    }
+    
+    // Conta os bytes efetivamente gravados no arquivo (após a compressão)
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+        
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+        
+        long getCount() {
+            return count;
+        }
+    }
+    
+    // Permite fechar o compressor do cabeçalho sem fechar o arquivo
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+    
     // Classe para informações de arquivo CSV
     public static class CsvFileInfo {
         private String filePath;
@@ -0,0 +1,135 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.DiscoveryReportDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Sincroniza o catálogo {@code database_instances} de um cluster com o resultado da
+ * descoberta, por diferença de conjuntos.
+ *
+ * Só bancos novos são inseridos; tamanho, encoding e acessibilidade são atualizados em
+ * lote apenas onde mudaram; bancos que sumiram são marcados inacessíveis ou, com
+ * {@code app.discovery.remove.vanished=true}, removidos. Os registros existentes mantêm
+ * o id. Deve ser chamado dentro da transação da descoberta.
+ */
+@Component
+public class DatabaseCatalogSync {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseCatalogSync.class);
+
+    private static final String SELECT_SQL =
+            "SELECT id, database_name, database_size, database_encoding, is_accessible " +
+            "FROM database_instances WHERE cluster_id = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO database_instances (cluster_id, database_name, database_size, database_encoding, " +
+            "is_accessible, discovered_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SQL =
+            "UPDATE database_instances SET database_size = ?, database_encoding = ?, is_accessible = ? WHERE id = ?";
+
+    private static final String DEACTIVATE_SQL =
+            "UPDATE database_instances SET is_accessible = false WHERE id = ?";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM database_instances WHERE id = ?";
+
+    @Value("${app.discovery.remove.vanished:false}")
+    private boolean removeVanished;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public DiscoveryReportDTO sync(long clusterId, List<DatabaseDiscoveryService.DiscoveredDatabase> discovered) {
+        Map<String, CatalogRow> existing = new HashMap<>();
+        jdbcTemplate.query(SELECT_SQL, rs -> {
+            long size = rs.getLong("database_size");
+            CatalogRow row = new CatalogRow(
+                    rs.getLong("id"),
+                    rs.wasNull() ? null : size,
+                    rs.getString("database_encoding"),
+                    rs.getBoolean("is_accessible"));
+            existing.put(rs.getString("database_name"), row);
+        }, clusterId);
+
+        DiscoveryReportDTO report = new DiscoveryReportDTO();
+        report.setDiscovered(discovered.size());
+        report.setVanishedRemoved(removeVanished);
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        int unchanged = 0;
+
+        for (DatabaseDiscoveryService.DiscoveredDatabase database : discovered) {
+            CatalogRow row = existing.remove(database.getName());
+            if (row == null) {
+                inserts.add(new Object[]{clusterId, database.getName(), database.getSizeBytes(),
+                        database.getEncoding(), database.isAccessible(), now});
+                report.getAdded().add(database.getName());
+            } else if (!Objects.equals(row.sizeBytes, database.getSizeBytes())
+                    || !Objects.equals(row.encoding, database.getEncoding())
+                    || row.accessible != database.isAccessible()) {
+                updates.add(new Object[]{database.getSizeBytes(), database.getEncoding(), database.isAccessible(), row.id});
+            } else {
+                unchanged++;
+            }
+        }
+
+        // O que sobrou no mapa não foi mais encontrado no cluster
+        List<Object[]> vanished = new ArrayList<>();
+        for (Map.Entry<String, CatalogRow> entry : existing.entrySet()) {
+            if (removeVanished || entry.getValue().accessible) {
+                vanished.add(new Object[]{entry.getValue().id});
+                report.getVanished().add(entry.getKey());
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+        if (!vanished.isEmpty()) {
+            jdbcTemplate.batchUpdate(removeVanished ? DELETE_SQL : DEACTIVATE_SQL, vanished);
+        }
+
+        report.setUpdated(updates.size());
+        report.setUnchanged(unchanged);
+
+        if (report.hasChanges()) {
+            logger.info("Catálogo do cluster ID {} sincronizado: {} novos, {} atualizados, {} {}",
+                    clusterId, inserts.size(), updates.size(), vanished.size(),
+                    removeVanished ? "removidos" : "inacessíveis");
+        }
+        return report;
+    }
+
+    private static final class CatalogRow {
+        private final long id;
+        private final Long sizeBytes;
+        private final String encoding;
+        private final boolean accessible;
+
+        private CatalogRow(long id, Long sizeBytes, String encoding, boolean accessible) {
+            this.id = id;
+            this.sizeBytes = sizeBytes;
+            this.encoding = encoding;
+            this.accessible = accessible;
+        }
+    }
+}
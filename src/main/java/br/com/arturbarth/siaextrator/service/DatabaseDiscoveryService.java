@@ -1,6 +1,7 @@
 package br.com.arturbarth.siaextrator.service;
 
 import br.com.arturbarth.siaextrator.entity.Cluster;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,22 +15,42 @@ public class DatabaseDiscoveryService {
     
     private static final Logger logger = LoggerFactory.getLogger(DatabaseDiscoveryService.class);
     
-    public List<String> discoverDatabases(Cluster cluster) {
-        List<String> databases = new ArrayList<>();
-        String jdbcUrl = buildJdbcUrl(cluster);
+    private static final String DEFAULT_DATABASE = "postgres";
+    
+    @Autowired
+    private ConnectionPoolRegistry connectionPoolRegistry;
+    
+    // Tamanho só é consultado onde o usuário pode conectar; pg_database_size falha nos demais
+    private static final String DISCOVERY_QUERY = """
+            SELECT datname,
+                   CASE WHEN has_database_privilege(datname, 'CONNECT') THEN pg_database_size(datname) END AS size_bytes,
+                   pg_encoding_to_char(encoding) AS encoding,
+                   has_database_privilege(datname, 'CONNECT') AS can_connect
+            FROM pg_database
+            WHERE datistemplate = false
+              AND datallowconn = true
+              AND datname LIKE 'banco%'
+            ORDER BY datname
+            """;
+    
+    public List<DiscoveredDatabase> discoverDatabases(Cluster cluster) {
+        List<DiscoveredDatabase> databases = new ArrayList<>();
         
-        logger.info("Descobrindo bancos no cluster: {} ({})", cluster.getAlias(), jdbcUrl);
+        logger.info("Descobrindo bancos no cluster: {} ({}:{})", cluster.getAlias(), cluster.getHost(), cluster.getPort());
         
-        try (Connection connection = DriverManager.getConnection(jdbcUrl, cluster.getUsername(), cluster.getPassword())) {
-            String query = "SELECT datname FROM pg_database WHERE datistemplate = false AND datallowconn = true and datname like 'banco%'";
-            
-            try (PreparedStatement statement = connection.prepareStatement(query);
+        try (Connection connection = connectionPoolRegistry.getConnection(cluster, DEFAULT_DATABASE)) {
+            try (PreparedStatement statement = connection.prepareStatement(DISCOVERY_QUERY);
                  ResultSet resultSet = statement.executeQuery()) {
                 
                 while (resultSet.next()) {
-                    String databaseName = resultSet.getString("datname");
-                    databases.add(databaseName);
-                    logger.debug("Banco encontrado: {}", databaseName);
+                    long sizeBytes = resultSet.getLong("size_bytes");
+                    DiscoveredDatabase database = new DiscoveredDatabase(
+                            resultSet.getString("datname"),
+                            resultSet.wasNull() ? null : sizeBytes,
+                            resultSet.getString("encoding"),
+                            resultSet.getBoolean("can_connect"));
+                    databases.add(database);
+                    logger.debug("Banco encontrado: {} ({} bytes)", database.getName(), database.getSizeBytes());
                 }
             }
             
@@ -43,11 +64,9 @@ public class DatabaseDiscoveryService {
     }
     
     public boolean testConnection(Cluster cluster) {
-        String jdbcUrl = buildJdbcUrl(cluster);
+        logger.info("Testando conexão com cluster: {} ({}:{})", cluster.getAlias(), cluster.getHost(), cluster.getPort());
         
-        logger.info("Testando conexão com cluster: {} ({})", cluster.getAlias(), jdbcUrl);
-        
-        try (Connection connection = DriverManager.getConnection(jdbcUrl, cluster.getUsername(), cluster.getPassword())) {
+        try (Connection connection = connectionPoolRegistry.getConnection(cluster, DEFAULT_DATABASE)) {
             return connection.isValid(5); // 5 segundos de timeout
         } catch (SQLException e) {
             logger.warn("Falha no teste de conexão para cluster {}: {}", cluster.getAlias(), e.getMessage());
@@ -55,7 +74,22 @@ public class DatabaseDiscoveryService {
         }
     }
     
-    private String buildJdbcUrl(Cluster cluster) {
-        return String.format("jdbc:postgresql://%s:%d/postgres", cluster.getHost(), cluster.getPort());
+    public static class DiscoveredDatabase {
+        private final String name;
+        private final Long sizeBytes;
+        private final String encoding;
+        private final boolean accessible;
+        
+        public DiscoveredDatabase(String name, Long sizeBytes, String encoding, boolean accessible) {
+            this.name = name;
+            this.sizeBytes = sizeBytes;
+            this.encoding = encoding;
+            this.accessible = accessible;
+        }
+        
+        public String getName() { return name; }
+        public Long getSizeBytes() { return sizeBytes; }
+        public String getEncoding() { return encoding; }
+        public boolean isAccessible() { return accessible; }
     }
 }
@@ -0,0 +1,135 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.entity.Cluster;
+import br.com.arturbarth.siaextrator.repository.ClusterRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Descoberta de bancos em segundo plano para todos os clusters.
+ *
+ * A cada ciclo, os clusters cuja última descoberta é mais antiga que o intervalo são
+ * agendados com um atraso aleatório (jitter) e descobertos em paralelo, no máximo
+ * {@code app.discovery.parallelism} ao mesmo tempo. Com vários nós, o cluster
+ * descoberto por um deles não é descoberto de novo pelos demais no mesmo intervalo.
+ * O planejamento e a execução usam o catálogo já descoberto e nunca esperam por
+ * uma descoberta; no máximo pedem uma antecipada com {@link #requestDiscovery(Long)}.
+ */
+@Component
+public class DiscoveryScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiscoveryScheduler.class);
+
+    @Value("${app.discovery.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.discovery.interval.minutes:30}")
+    private long intervalMinutes;
+
+    @Value("${app.discovery.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.discovery.jitter.seconds:30}")
+    private long jitterSeconds;
+
+    @Autowired
+    private ClusterRepository clusterRepository;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    // Clusters agendados ou em descoberta, para não sobrepor ciclos
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            logger.info("Descoberta em segundo plano desabilitada");
+            return;
+        }
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        scheduler = new ScheduledThreadPoolExecutor(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "discovery-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.scheduleWithFixedDelay(this::scheduleCycle,
+                jitter(), TimeUnit.MINUTES.toMillis(intervalMinutes), TimeUnit.MILLISECONDS);
+
+        logger.info("Descoberta em segundo plano iniciada: a cada {} min, {} clusters em paralelo",
+                intervalMinutes, parallelism);
+    }
+
+    /**
+     * Agenda a descoberta do cluster o quanto antes, sem esperar por ela.
+     */
+    public void requestDiscovery(Long clusterId) {
+        if (scheduler != null && inFlight.add(clusterId)) {
+            scheduler.execute(() -> discover(clusterId));
+        }
+    }
+
+    private void scheduleCycle() {
+        try {
+            LocalDateTime staleBefore = LocalDateTime.now().minusMinutes(intervalMinutes);
+            int scheduled = 0;
+            for (Cluster cluster : clusterRepository.findAll()) {
+                boolean recent = cluster.getLastDiscovery() != null && cluster.getLastDiscovery().isAfter(staleBefore)
+                        && Boolean.TRUE.equals(cluster.getConnectionActive());
+                if (recent || !inFlight.add(cluster.getId())) {
+                    continue;
+                }
+
+                Long clusterId = cluster.getId();
+                scheduler.schedule(() -> discover(clusterId), jitter(), TimeUnit.MILLISECONDS);
+                scheduled++;
+            }
+
+            if (scheduled > 0) {
+                logger.info("Ciclo de descoberta: {} clusters agendados", scheduled);
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao agendar ciclo de descoberta: {}", e.getMessage());
+        }
+    }
+
+    private void discover(Long clusterId) {
+        try {
+            clusterService.discoverDatabases(clusterId);
+        } catch (Exception e) {
+            // O cluster fica inativo e é tentado de novo no próximo ciclo
+            logger.warn("Descoberta em segundo plano falhou para cluster ID {}: {}", clusterId, e.getMessage());
+        } finally {
+            inFlight.remove(clusterId);
+        }
+    }
+
+    private long jitter() {
+        return jitterSeconds > 0 ? ThreadLocalRandom.current().nextLong(TimeUnit.SECONDS.toMillis(jitterSeconds)) : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
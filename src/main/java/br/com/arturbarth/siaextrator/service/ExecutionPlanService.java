@@ -0,0 +1,140 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ExecutionPlan;
+import br.com.arturbarth.siaextrator.dto.QueryExecutionRequestDTO;
+import br.com.arturbarth.siaextrator.entity.Cluster;
+import br.com.arturbarth.siaextrator.entity.DatabaseInstance;
+import br.com.arturbarth.siaextrator.entity.QueryExecution;
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Monta e serializa os planos de execução.
+ *
+ * O plano é resolvido na submissão e gravado como JSON nos metadados da execução. O nó
+ * que reivindica a execução o lê de volta uma única vez, ao enfileirar os bancos alvo.
+ */
+@Service
+public class ExecutionPlanService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionPlanService.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ClusterTopologyCache clusterTopologyCache;
+
+    @Autowired
+    private TargetDispatcher targetDispatcher;
+
+    @Autowired
+    private RdsExecutorService rdsExecutorService;
+
+    /**
+     * Resolve os bancos alvo de cada cluster a partir do catálogo de descoberta. Clusters
+     * inativos não têm bancos resolvidos aqui; ficam marcados para redescoberta na execução.
+     */
+    public ExecutionPlan buildPlan(QueryExecutionRequestDTO requestDTO, List<Cluster> clusters) {
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.setClusterIds(new ArrayList<>(requestDTO.getClusterIds()));
+        if (requestDTO.getDatabaseNames() != null && !requestDTO.getDatabaseNames().isEmpty()) {
+            plan.setDatabaseFilter(new ArrayList<>(requestDTO.getDatabaseNames()));
+        }
+        plan.setDescription(requestDTO.getDescription());
+        plan.setSqlLength(requestDTO.getSqlQuery().length());
+        plan.setSubmittedAt(LocalDateTime.now());
+        plan.setOutputFormat(requestDTO.getOutputFormat() != null ? requestDTO.getOutputFormat() : ResultFormat.CSV);
+        plan.setMaxConcurrency(targetDispatcher.getMaxConcurrency());
+        plan.setMaxConcurrencyPerCluster(targetDispatcher.getMaxConcurrencyPerCluster());
+        plan.setMaxRowsPerDatabase(rdsExecutorService.getMaxRows());
+        plan.setRowBudget(requestDTO.getMaxRows());
+        plan.setQueryTimeoutSeconds(rdsExecutorService.getQueryTimeoutSeconds());
+
+        for (Cluster cluster : clusters) {
+            if (!Boolean.TRUE.equals(cluster.getConnectionActive())) {
+                plan.getRediscoverClusterIds().add(cluster.getId());
+                continue;
+            }
+            plan.getTargets().addAll(resolveTargets(plan, cluster));
+        }
+
+        logger.debug("Plano montado: {} bancos alvo, {} clusters para redescoberta",
+                plan.getTargets().size(), plan.getRediscoverClusterIds().size());
+        return plan;
+    }
+
+    /**
+     * Bancos acessíveis do cluster que passam no filtro do plano.
+     */
+    public List<ExecutionPlan.Target> resolveTargets(ExecutionPlan plan, Cluster cluster) {
+        List<ExecutionPlan.Target> targets = new ArrayList<>();
+
+        for (DatabaseInstance database : clusterTopologyCache.getDatabases(cluster.getId())) {
+            if (!Boolean.TRUE.equals(database.getIsAccessible()) || !plan.includesDatabase(database.getDatabaseName())) {
+                continue;
+            }
+            targets.add(new ExecutionPlan.Target(cluster.getId(), cluster.getAlias(), database.getDatabaseName()));
+        }
+
+        return targets;
+    }
+
+    /**
+     * Bancos de um cluster que continua inativo na execução: os do catálogo, acessíveis ou
+     * não, restritos ao filtro do plano. Só com o catálogo vazio os nomes do filtro são usados
+     * diretamente. Eles são gravados como falha para aparecerem no resultado e poderem ser
+     * reexecutados após a redescoberta.
+     */
+    public List<ExecutionPlan.Target> unavailableTargets(ExecutionPlan plan, Cluster cluster) {
+        List<ExecutionPlan.Target> targets = new ArrayList<>();
+        List<DatabaseInstance> databases = clusterTopologyCache.getDatabases(cluster.getId());
+
+        if (databases.isEmpty() && plan.getDatabaseFilter() != null) {
+            for (String databaseName : plan.getDatabaseFilter()) {
+                targets.add(new ExecutionPlan.Target(cluster.getId(), cluster.getAlias(), databaseName));
+            }
+            return targets;
+        }
+
+        for (DatabaseInstance database : databases) {
+            if (plan.includesDatabase(database.getDatabaseName())) {
+                targets.add(new ExecutionPlan.Target(cluster.getId(), cluster.getAlias(), database.getDatabaseName()));
+            }
+        }
+        return targets;
+    }
+
+    public String serialize(ExecutionPlan plan) {
+        try {
+            return objectMapper.writeValueAsString(plan);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Falha ao serializar plano de execução: " + e.getMessage(), e);
+        }
+    }
+
+    public ExecutionPlan deserialize(String metadata) {
+        if (metadata == null || metadata.isBlank()) {
+            throw new RuntimeException("Metadados não encontrados na execução");
+        }
+
+        try {
+            return objectMapper.readValue(metadata, ExecutionPlan.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Erro ao processar metadados da execução: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    public ExecutionPlan planFor(QueryExecution queryExecution) {
+        return deserialize(queryExecution.getMetadata());
+    }
+}
@@ -0,0 +1,564 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ExecutionProgressDTO;
+import br.com.arturbarth.siaextrator.dto.ExecutionProgressEventDTO;
+import br.com.arturbarth.siaextrator.exceptions.ExecutionNotFoundException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progresso das execuções em tempo real, para o stream SSE.
+ *
+ * Quem grava o progresso (início, resultado de cada banco, finalização, cancelamento)
+ * publica um evento com {@code pg_notify} na mesma transação da escrita, de modo que o
+ * evento só é entregue se a escrita for confirmada, qualquer que seja o nó que executou
+ * o banco. Cada nó mantém uma conexão em {@code LISTEN}, aberta fora do pool de
+ * metadados para não ocupar uma de suas conexões, e, para as execuções
+ * com assinantes, acumula o progresso em memória e envia o resumo (bancos, linhas,
+ * linhas/s e ETA) a cada evento. O banco de metadados é lido apenas uma vez por
+ * assinatura, para o estado inicial, e não a cada atualização.
+ *
+ * A thread do LISTEN só enfileira os envios: cada assinante tem uma fila limitada,
+ * esvaziada em uma virtual thread própria, de modo que um cliente lento não atrasa os
+ * demais. O assinante cuja fila enche é desconectado.
+ */
+@Component
+public class ExecutionProgressTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionProgressTracker.class);
+
+    private static final String CHANNEL = "execution_progress";
+
+    // O payload do NOTIFY é limitado a 8000 bytes
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+
+    private static final String NOTIFY_SQL =
+            "SELECT pg_notify(?, payload) FROM unnest(CAST(? AS text[])) AS payload";
+
+    private static final String EXECUTION_SQL =
+            "SELECT id, status, started_at FROM query_executions WHERE execution_id = ?";
+
+    private static final String TARGETS_SQL =
+            "SELECT id, status, rows_affected FROM query_execution_results WHERE query_execution_id = ?";
+
+    @Value("${query.execution.progress.sse.timeout.minutes:60}")
+    private long sseTimeoutMinutes;
+
+    @Value("${query.execution.progress.sse.heartbeat.seconds:15}")
+    private long heartbeatSeconds;
+
+    // Envios pendentes por assinante antes de desconectá-lo
+    @Value("${query.execution.progress.sse.queue.size:256}")
+    private int sendQueueSize;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Só as execuções com assinantes neste nó
+    private final Map<String, TrackedExecution> tracked = new ConcurrentHashMap<>();
+
+    private final ExecutorService senders =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("progress-sse-", 1).factory());
+
+    private volatile boolean running;
+
+    private Thread listenerThread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        listenerThread = new Thread(this::listen, "progress-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    public void publish(ExecutionProgressEventDTO event) {
+        publishAll(List.of(event));
+    }
+
+    /**
+     * Publica os eventos na transação corrente; são entregues aos nós após o commit.
+     */
+    public void publishAll(List<ExecutionProgressEventDTO> events) {
+        List<String> payloads = new ArrayList<>(events.size());
+        for (ExecutionProgressEventDTO event : events) {
+            try {
+                String payload = objectMapper.writeValueAsString(event);
+                if (payload.getBytes(StandardCharsets.UTF_8).length <= MAX_PAYLOAD_BYTES) {
+                    payloads.add(payload);
+                }
+            } catch (JsonProcessingException e) {
+                logger.warn("Erro ao serializar evento de progresso: {}", e.getMessage());
+            }
+        }
+        if (payloads.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(NOTIFY_SQL)) {
+                statement.setString(1, CHANNEL);
+                statement.setArray(2, connection.createArrayOf("text", payloads.toArray()));
+                statement.execute();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Assina o progresso da execução. O primeiro envio é o estado atual; se a execução
+     * já terminou, o stream é encerrado em seguida.
+     */
+    public SseEmitter subscribe(String executionId) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(sseTimeoutMinutes));
+        TrackedExecution execution = tracked.compute(executionId, (id, existing) ->
+                existing != null ? existing : new TrackedExecution(id));
+        Subscriber subscriber = new Subscriber(execution, emitter);
+        execution.subscribers.add(subscriber);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> unsubscribe(subscriber));
+
+        ExecutionProgressDTO summary;
+        boolean finished;
+        try {
+            synchronized (execution) {
+                if (!execution.loaded) {
+                    loadSnapshot(execution);
+                }
+                summary = execution.summary(null);
+                finished = execution.isFinished();
+            }
+        } catch (RuntimeException e) {
+            unsubscribe(subscriber);
+            throw e;
+        }
+
+        subscriber.send(progressEvent(summary));
+        if (finished) {
+            finish(execution);
+        }
+        return emitter;
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.closed = true;
+        tracked.computeIfPresent(subscriber.execution.executionId, (id, current) -> {
+            current.subscribers.remove(subscriber);
+            return current.subscribers.isEmpty() ? null : current;
+        });
+    }
+
+    // Chamado com o lock da execução
+    private void loadSnapshot(TrackedExecution execution) {
+        List<Object[]> rows = jdbcTemplate.query(EXECUTION_SQL,
+                (rs, rowNum) -> new Object[]{rs.getLong("id"), rs.getString("status"), rs.getTimestamp("started_at")},
+                execution.executionId);
+        if (rows.isEmpty()) {
+            throw new ExecutionNotFoundException("Execução não encontrada: " + execution.executionId);
+        }
+
+        long queryExecutionId = (Long) rows.get(0)[0];
+        if (execution.status == null) {
+            execution.status = (String) rows.get(0)[1];
+        }
+        Timestamp startedAt = (Timestamp) rows.get(0)[2];
+        if (execution.startedAtMillis == null && startedAt != null) {
+            execution.startedAtMillis = startedAt.getTime();
+        }
+
+        jdbcTemplate.query(TARGETS_SQL, rs -> {
+            execution.applyTarget(rs.getLong("id"), rs.getString("status"), rs.getLong("rows_affected"), true);
+        }, queryExecutionId);
+        if (execution.totalDatabases == null && !execution.targets.isEmpty()) {
+            execution.totalDatabases = execution.targets.size();
+        }
+        execution.loaded = true;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = openListenConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                logger.info("Escutando eventos de progresso das execuções");
+
+                // Eventos perdidos enquanto não havia conexão
+                reloadTracked();
+                receive(connection.unwrap(PGConnection.class));
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Conexão de eventos de progresso perdida, reconectando: {}", e.getMessage());
+                try {
+                    TimeUnit.SECONDS.sleep(5);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Conexão própria, fora do pool: fica presa ao LISTEN enquanto a aplicação roda
+    private Connection openListenConnection() throws Exception {
+        Properties properties = new Properties();
+        String username = dataSourceProperties.determineUsername();
+        String password = dataSourceProperties.determinePassword();
+        if (username != null) {
+            properties.setProperty("user", username);
+        }
+        if (password != null) {
+            properties.setProperty("password", password);
+        }
+        properties.setProperty("ApplicationName", "siaextrator-progress-listener");
+        properties.setProperty("tcpKeepAlive", "true");
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+    }
+
+    private void receive(PGConnection connection) throws Exception {
+        long heartbeatNanos = TimeUnit.SECONDS.toNanos(heartbeatSeconds);
+        long nextHeartbeat = System.nanoTime() + heartbeatNanos;
+
+        while (running) {
+            PGNotification[] notifications = connection.getNotifications(1000);
+            if (notifications != null) {
+                for (PGNotification notification : notifications) {
+                    handle(notification.getParameter());
+                }
+            }
+
+            if (System.nanoTime() - nextHeartbeat >= 0) {
+                heartbeat();
+                nextHeartbeat = System.nanoTime() + heartbeatNanos;
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        if (tracked.isEmpty()) {
+            return;
+        }
+
+        ExecutionProgressEventDTO event;
+        try {
+            event = objectMapper.readValue(payload, ExecutionProgressEventDTO.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("Evento de progresso inválido: {}", e.getMessage());
+            return;
+        }
+
+        TrackedExecution execution = tracked.get(event.getExecutionId());
+        if (execution == null) {
+            return;
+        }
+
+        ExecutionProgressDTO summary;
+        boolean finished;
+        synchronized (execution) {
+            execution.apply(event);
+            summary = execution.summary(event);
+            finished = execution.isFinished();
+        }
+
+        broadcast(execution, summary);
+        if (finished) {
+            finish(execution);
+        }
+    }
+
+    private void reloadTracked() {
+        for (TrackedExecution execution : tracked.values()) {
+            try {
+                ExecutionProgressDTO summary;
+                boolean finished;
+                synchronized (execution) {
+                    execution.reset();
+                    loadSnapshot(execution);
+                    summary = execution.summary(null);
+                    finished = execution.isFinished();
+                }
+                broadcast(execution, summary);
+                if (finished) {
+                    finish(execution);
+                }
+            } catch (Exception e) {
+                logger.warn("Erro ao recarregar progresso da execução {}: {}", execution.executionId, e.getMessage());
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (TrackedExecution execution : tracked.values()) {
+            for (Subscriber subscriber : execution.subscribers) {
+                // Com envios pendentes o cliente não está ocioso
+                if (subscriber.size.get() == 0) {
+                    subscriber.send(SseEmitter.event().comment("keepalive"));
+                }
+            }
+        }
+    }
+
+    private void broadcast(TrackedExecution execution, ExecutionProgressDTO summary) {
+        SseEmitter.SseEventBuilder event = progressEvent(summary);
+        for (Subscriber subscriber : execution.subscribers) {
+            subscriber.send(event);
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder progressEvent(ExecutionProgressDTO summary) {
+        return SseEmitter.event().name("progress").data(summary);
+    }
+
+    // Execução terminou: encerra os streams depois dos envios pendentes
+    private void finish(TrackedExecution execution) {
+        tracked.remove(execution.executionId, execution);
+        for (Subscriber subscriber : execution.subscribers) {
+            subscriber.complete();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+        for (TrackedExecution execution : tracked.values()) {
+            execution.subscribers.forEach(Subscriber::complete);
+        }
+        tracked.clear();
+        senders.shutdown();
+    }
+
+    /**
+     * Stream SSE de um cliente, com fila própria de envios. A fila é esvaziada em uma
+     * virtual thread por vez; o encerramento entra na fila para sair depois do último
+     * progresso.
+     */
+    private final class Subscriber {
+        private final TrackedExecution execution;
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean completing;
+        private volatile boolean closed;
+
+        private Subscriber(TrackedExecution execution, SseEmitter emitter) {
+            this.execution = execution;
+            this.emitter = emitter;
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) {
+            if (closed || completing) {
+                return;
+            }
+            if (size.incrementAndGet() > sendQueueSize) {
+                logger.warn("Cliente do progresso da execução {} não acompanha os envios, desconectando",
+                        execution.executionId);
+                unsubscribe(this);
+                pending.clear();
+                senders.execute(emitter::complete);
+                return;
+            }
+            pending.add(event);
+            schedule();
+        }
+
+        private void complete() {
+            completing = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // Encerrando a aplicação
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = pending.poll()) != null) {
+                    size.decrementAndGet();
+                    emitter.send(event);
+                }
+                if (completing && !closed) {
+                    closed = true;
+                    emitter.complete();
+                }
+            } catch (Exception e) {
+                // Cliente desconectado
+                unsubscribe(this);
+            } finally {
+                draining.set(false);
+                if (!closed && (!pending.isEmpty() || completing)) {
+                    schedule();
+                }
+            }
+        }
+    }
+
+    /**
+     * Estado em memória de uma execução assinada. Os contadores são mantidos a cada
+     * evento, sem percorrer os bancos.
+     */
+    private static final class TrackedExecution {
+        private final String executionId;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final Map<Long, TargetProgress> targets = new HashMap<>();
+        private boolean loaded;
+        private String status;
+        private Integer totalDatabases;
+        private Long startedAtMillis;
+        private int completed;
+        private int failed;
+        private int cancelled;
+        private long totalRows;
+
+        private TrackedExecution(String executionId) {
+            this.executionId = executionId;
+        }
+
+        private void apply(ExecutionProgressEventDTO event) {
+            switch (event.getType()) {
+                case ExecutionProgressEventDTO.STARTED -> {
+                    status = event.getStatus();
+                    totalDatabases = event.getTotalDatabases();
+                    startedAtMillis = event.getTimestamp();
+                }
+                case ExecutionProgressEventDTO.DATABASE -> applyTarget(event.getTargetId(), event.getStatus(),
+                        event.getRowsAffected() != null ? event.getRowsAffected() : 0, false);
+                case ExecutionProgressEventDTO.STATUS -> status = event.getStatus();
+                default -> { }
+            }
+        }
+
+        // O estado inicial não sobrescreve um evento mais recente do mesmo banco
+        private void applyTarget(long targetId, String targetStatus, long rows, boolean fromSnapshot) {
+            TargetProgress previous = targets.get(targetId);
+            if (previous != null) {
+                if (fromSnapshot) {
+                    return;
+                }
+                count(previous, -1);
+            }
+            TargetProgress current = new TargetProgress(targetStatus, rows);
+            targets.put(targetId, current);
+            count(current, 1);
+        }
+
+        private void count(TargetProgress target, int sign) {
+            switch (target.status) {
+                case "COMPLETED" -> {
+                    completed += sign;
+                    totalRows += sign * target.rows;
+                }
+                case "FAILED" -> failed += sign;
+                case "CANCELLED" -> cancelled += sign;
+                default -> { }
+            }
+        }
+
+        private boolean isFinished() {
+            return "COMPLETED".equals(status) || "FAILED".equals(status) || "CANCELLED".equals(status);
+        }
+
+        private void reset() {
+            targets.clear();
+            loaded = false;
+            status = null;
+            totalDatabases = null;
+            startedAtMillis = null;
+            completed = 0;
+            failed = 0;
+            cancelled = 0;
+            totalRows = 0;
+        }
+
+        private ExecutionProgressDTO summary(ExecutionProgressEventDTO lastEvent) {
+            int total = totalDatabases != null ? totalDatabases : targets.size();
+            int done = completed + failed + cancelled;
+            int remaining = Math.max(total - done, 0);
+            long elapsedMs = startedAtMillis != null ? Math.max(System.currentTimeMillis() - startedAtMillis, 0) : 0;
+
+            ExecutionProgressDTO summary = new ExecutionProgressDTO();
+            summary.setExecutionId(executionId);
+            summary.setStatus(status);
+            summary.setTotalDatabases(total);
+            summary.setCompletedDatabases(completed);
+            summary.setFailedDatabases(failed);
+            summary.setCancelledDatabases(cancelled);
+            summary.setRemainingDatabases(remaining);
+            summary.setTotalRows(totalRows);
+            summary.setElapsedMs(elapsedMs);
+            summary.setRowsPerSecond(elapsedMs > 0 ? totalRows * 1000.0 / elapsedMs : 0.0);
+            if (isFinished() || (total > 0 && remaining == 0)) {
+                summary.setEtaMs(0L);
+            } else if (done > 0) {
+                // Ritmo médio dos bancos já terminados aplicado aos restantes
+                summary.setEtaMs(elapsedMs * remaining / done);
+            }
+            summary.setLastEvent(lastEvent);
+            return summary;
+        }
+    }
+
+    private static final class TargetProgress {
+        private final String status;
+        private final long rows;
+
+        private TargetProgress(String status, long rows) {
+            this.status = status;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ExecutionProgressEventDTO;
+import br.com.arturbarth.siaextrator.entity.QueryExecution;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistência do progresso das execuções fora do caminho dos workers.
+ *
+ * Os workers apenas enfileiram o resultado de cada banco. Um flush periódico (ou ao
+ * atingir o tamanho de lote) grava os resultados em um único batch update, em uma
+ * transação curta, e em seguida recalcula os contadores de cada execução afetada,
+ * finalizando as que não têm mais bancos pendentes. Em vez de duas escritas síncronas
+ * por banco, o banco de metadados recebe poucas escritas por intervalo. Os eventos de
+ * progresso dos bancos gravados são publicados na mesma transação.
+ */
+@Component
+public class ExecutionProgressWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionProgressWriter.class);
+
+    // Só o dono do lease grava o resultado; um nó que perdeu o lease não sobrescreve a nova tentativa
+    private static final String UPDATE_RESULT_SQL =
+            "UPDATE query_execution_results SET status = ?, rows_affected = ?, execution_time_ms = ?, " +
+            "error_message = ?, result_file_path = ?, data_offset = ?, next_attempt_at = ?, executed_at = ?, " +
+            "lease_owner = NULL, lease_expires_at = NULL WHERE id = ? AND lease_owner = ?";
+
+    // Não sobrescreve um cancelamento gravado por outra requisição, exceto com o próprio status de cancelada
+    private static final String UPDATE_STATUS_SQL =
+            "UPDATE query_executions SET status = ?, error_message = ?, started_at = ?, completed_at = ?, " +
+            "execution_time_ms = ?, updated_at = ? " +
+            "WHERE execution_id = ? AND (status <> 'CANCELLED' OR ? = 'CANCELLED')";
+
+    @Value("${query.execution.progress.flush.interval.ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${query.execution.progress.batch.size:200}")
+    private int batchSize;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ExecutionTargetStore executionTargetStore;
+
+    @Autowired
+    private NodeIdentity nodeIdentity;
+
+    @Autowired
+    private ExecutionProgressTracker executionProgressTracker;
+
+    private final Queue<QueryExecutionResult> pendingResults = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final Set<Long> dirtyExecutions = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService scheduler;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+
+        logger.info("ExecutionProgressWriter iniciado: flush a cada {}ms ou {} resultados", flushIntervalMs, batchSize);
+    }
+
+    /**
+     * Enfileira o resultado final de um banco reivindicado por este nó.
+     */
+    public void recordResult(QueryExecutionResult result) {
+        result.setExecutedAt(LocalDateTime.now());
+        pendingResults.add(result);
+        dirtyExecutions.add(result.getQueryExecution().getId());
+
+        // Lote cheio: antecipa o flush sem bloquear o worker
+        if (pendingCount.incrementAndGet() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    /**
+     * Grava na hora uma transição de status feita fora do fluxo por banco (falha ao
+     * iniciar, cancelamento antes do início), que deve ficar visível imediatamente.
+     */
+    public void updateStatus(QueryExecution queryExecution) {
+        String status = queryExecution.getStatus().name();
+        int updated = jdbcTemplate.update(UPDATE_STATUS_SQL,
+                status,
+                queryExecution.getErrorMessage(),
+                toTimestamp(queryExecution.getStartedAt()),
+                toTimestamp(queryExecution.getCompletedAt()),
+                queryExecution.getExecutionTimeMs(),
+                Timestamp.valueOf(LocalDateTime.now()),
+                queryExecution.getExecutionId(),
+                status);
+        if (updated > 0) {
+            executionProgressTracker.publish(new ExecutionProgressEventDTO(
+                    queryExecution.getExecutionId(), ExecutionProgressEventDTO.STATUS, status));
+        }
+    }
+
+    public synchronized void flush() {
+        List<QueryExecutionResult> results = new ArrayList<>();
+        QueryExecutionResult result;
+        while ((result = pendingResults.poll()) != null) {
+            results.add(result);
+        }
+        pendingCount.addAndGet(-results.size());
+
+        List<Long> executionIds = new ArrayList<>(dirtyExecutions);
+        dirtyExecutions.removeAll(executionIds);
+
+        if (!results.isEmpty()) {
+            String nodeId = nodeIdentity.getNodeId();
+            List<Object[]> resultRows = new ArrayList<>(results.size());
+            for (QueryExecutionResult pending : results) {
+                resultRows.add(toUpdateParameters(pending, nodeId));
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    int[] updated = jdbcTemplate.batchUpdate(UPDATE_RESULT_SQL, resultRows);
+
+                    // Só os resultados efetivamente gravados (lease ainda deste nó) geram evento
+                    List<ExecutionProgressEventDTO> events = new ArrayList<>(results.size());
+                    for (int i = 0; i < updated.length; i++) {
+                        if (updated[i] != 0) {
+                            events.add(toProgressEvent(results.get(i)));
+                        }
+                    }
+                    executionProgressTracker.publishAll(events);
+                });
+            } catch (RuntimeException e) {
+                // Devolve para a fila e tenta novamente no próximo flush
+                pendingResults.addAll(results);
+                pendingCount.addAndGet(results.size());
+                dirtyExecutions.addAll(executionIds);
+                throw new RuntimeException("Falha ao gravar progresso das execuções: " + e.getMessage(), e);
+            }
+        }
+
+        // Contadores e finalização das execuções que tiveram bancos concluídos
+        for (Long executionId : executionIds) {
+            executionTargetStore.tryFinalize(executionId);
+        }
+
+        if (!results.isEmpty()) {
+            logger.debug("Progresso gravado: {} resultados, {} execuções", results.size(), executionIds.size());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Erro no flush do progresso das execuções: {}", e.getMessage());
+        }
+    }
+
+    private Object[] toUpdateParameters(QueryExecutionResult result, String nodeId) {
+        return new Object[]{
+                result.getStatus().name(),
+                result.getRowsAffected(),
+                result.getExecutionTimeMs(),
+                result.getErrorMessage(),
+                result.getResultFilePath(),
+                result.getDataOffset(),
+                toTimestamp(result.getNextAttemptAt()),
+                toTimestamp(result.getExecutedAt()),
+                result.getId(),
+                nodeId
+        };
+    }
+
+    private ExecutionProgressEventDTO toProgressEvent(QueryExecutionResult result) {
+        ExecutionProgressEventDTO event = new ExecutionProgressEventDTO(
+                result.getQueryExecution().getExecutionId(), ExecutionProgressEventDTO.DATABASE, result.getStatus().name());
+        event.setTargetId(result.getId());
+        event.setClusterAlias(result.getCluster().getAlias());
+        event.setDatabaseName(result.getDatabaseName());
+        event.setRowsAffected(result.getRowsAffected());
+        event.setExecutionTimeMs(result.getExecutionTimeMs());
+        return event;
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Encerrando ExecutionProgressWriter...");
+        scheduler.shutdown();
+        flushQuietly();
+    }
+}
@@ -0,0 +1,322 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.entity.QueryExecution;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionStatus;
+import br.com.arturbarth.siaextrator.exceptions.ExecutionQueueFullException;
+import br.com.arturbarth.siaextrator.repository.QueryExecutionRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fila de execução persistente, apoiada na própria tabela query_executions.
+ *
+ * Cada nó reivindica execuções pendentes com {@code SELECT ... FOR UPDATE SKIP LOCKED},
+ * gravando um lease (dono e validade) renovado por heartbeat enquanto a execução é
+ * iniciada. Iniciar significa resolver os bancos alvo e gravá-los como unidades de
+ * trabalho, executadas por qualquer nó via {@link TargetWorker}. Se o nó cai durante o
+ * início, o lease expira e outro nó (ou o mesmo, ao reiniciar) reivindica a execução de
+ * novo. A submissão é recusada quando há pendências demais na fila.
+ */
+@Component
+public class ExecutionQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionQueue.class);
+
+    // Pendentes sem lease válido, na ordem de chegada
+    private static final String CLAIM_SQL =
+            "UPDATE query_executions SET lease_owner = ?, lease_expires_at = ?, heartbeat_at = ? " +
+            "WHERE id = (SELECT id FROM query_executions " +
+            "WHERE status = 'PENDING' AND (lease_expires_at IS NULL OR lease_expires_at < ?) " +
+            "ORDER BY created_at LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+            "RETURNING execution_id";
+
+    private static final String HEARTBEAT_SQL =
+            "UPDATE query_executions SET heartbeat_at = ?, lease_expires_at = ? " +
+            "WHERE execution_id = ? AND lease_owner = ?";
+
+    private static final String RELEASE_SQL =
+            "UPDATE query_executions SET lease_owner = NULL, lease_expires_at = NULL " +
+            "WHERE execution_id = ? AND lease_owner = ?";
+
+    // Leases deixados pela instância anterior deste nó voltam para a fila sem esperar a expiração
+    private static final String RELEASE_NODE_SQL =
+            "UPDATE query_executions SET lease_expires_at = NULL " +
+            "WHERE lease_owner = ? AND status = 'PENDING'";
+
+    @Value("${query.execution.queue.workers:4}")
+    private int workers;
+
+    @Value("${query.execution.queue.max.pending:100}")
+    private int maxPending;
+
+    @Value("${query.execution.queue.poll.interval.ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${query.execution.queue.lease.seconds:60}")
+    private int leaseSeconds;
+
+    @Value("${query.execution.queue.shutdown.grace.seconds:30}")
+    private int shutdownGraceSeconds;
+
+    @Value("${query.execution.queue.finalize.interval.seconds:30}")
+    private int finalizeIntervalSeconds;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private QueryExecutionRepository queryExecutionRepository;
+
+    @Autowired
+    private QueryExecutorService queryExecutorService;
+
+    @Autowired
+    private CancellationRegistry cancellationRegistry;
+
+    @Autowired
+    private ExecutionTargetStore executionTargetStore;
+
+    @Autowired
+    private TargetWorker targetWorker;
+
+    @Autowired
+    private NodeIdentity nodeIdentity;
+
+    private final Set<String> runningExecutions = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean pollScheduled = new AtomicBoolean();
+
+    private String nodeId;
+
+    private Semaphore freeWorkers;
+
+    private ExecutorService workerPool;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Inicia a fila somente depois que a aplicação está pronta (schema atualizado pelo Hibernate).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        nodeId = nodeIdentity.getNodeId();
+        freeWorkers = new Semaphore(workers);
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "execution-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "execution-queue");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int released = jdbcTemplate.update(RELEASE_NODE_SQL, nodeId);
+        if (released > 0) {
+            logger.warn("{} execuções interrompidas na instância anterior do nó {} devolvidas à fila", released, nodeId);
+        }
+
+        long heartbeatIntervalMs = TimeUnit.SECONDS.toMillis(leaseSeconds) / 3;
+        scheduler.scheduleWithFixedDelay(this::pollQuietly, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::finalizeFinishedExecutions,
+                finalizeIntervalSeconds, finalizeIntervalSeconds, TimeUnit.SECONDS);
+
+        logger.info("ExecutionQueue iniciada no nó {}: {} workers, até {} pendentes, lease de {}s",
+                nodeId, workers, maxPending, leaseSeconds);
+    }
+
+    /**
+     * Controle de admissão: recusa novas submissões quando a fila já tem pendências demais.
+     */
+    public void checkAdmission() {
+        long pending = queryExecutionRepository.countByStatus(QueryExecutionStatus.PENDING);
+        if (pending >= maxPending) {
+            throw new ExecutionQueueFullException(
+                    "Fila de execução cheia (" + pending + " pendentes), tente novamente mais tarde");
+        }
+    }
+
+    /**
+     * Antecipa a próxima leitura da fila. Dentro de uma transação, espera o commit para
+     * que a execução recém-criada já esteja visível.
+     */
+    public void wakeUp() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedulePoll();
+                }
+            });
+        } else {
+            schedulePoll();
+        }
+    }
+
+    private void schedulePoll() {
+        if (scheduler != null && pollScheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                pollScheduled.set(false);
+                pollQuietly();
+            });
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            logger.error("Erro ao ler a fila de execução: {}", e.getMessage());
+        }
+    }
+
+    // Reivindica execuções enquanto houver worker livre
+    private void poll() {
+        while (freeWorkers.tryAcquire()) {
+            String executionId = claimNext();
+            if (executionId == null) {
+                freeWorkers.release();
+                return;
+            }
+
+            try {
+                dispatch(executionId);
+            } catch (RuntimeException e) {
+                freeWorkers.release();
+                release(executionId);
+                throw e;
+            }
+        }
+    }
+
+    private String claimNext() {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> claimed = jdbcTemplate.queryForList(CLAIM_SQL, String.class,
+                nodeId, Timestamp.valueOf(now.plusSeconds(leaseSeconds)), Timestamp.valueOf(now), Timestamp.valueOf(now));
+        return claimed.isEmpty() ? null : claimed.get(0);
+    }
+
+    private void dispatch(String executionId) {
+        QueryExecution queryExecution = queryExecutionRepository.findByExecutionId(executionId)
+                .orElseThrow(() -> new RuntimeException("Execução reivindicada não encontrada: " + executionId));
+
+        // Registrada antes de entrar no pool para que o cancelamento descarte a execução ainda não iniciada
+        CancellationRegistry.ExecutionHandle cancellation = cancellationRegistry.register(executionId);
+        runningExecutions.add(executionId);
+
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            if (queryExecutorService.startExecution(queryExecution)) {
+                targetWorker.wakeUp();
+            }
+        }, workerPool);
+
+        cancellation.track(future);
+        future.whenComplete((result, error) -> {
+            runningExecutions.remove(executionId);
+            cancellationRegistry.unregister(executionId);
+            release(executionId);
+            freeWorkers.release();
+            schedulePoll();
+        });
+
+        logger.info("Execução {} reivindicada pelo nó {}", executionId, nodeId);
+    }
+
+    // Renova o lease das execuções em andamento neste nó
+    private void heartbeat() {
+        if (runningExecutions.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp heartbeatAt = Timestamp.valueOf(now);
+        Timestamp leaseExpiresAt = Timestamp.valueOf(now.plusSeconds(leaseSeconds));
+
+        List<String> executionIds = new ArrayList<>(runningExecutions);
+        List<Object[]> parameters = new ArrayList<>(executionIds.size());
+        for (String executionId : executionIds) {
+            parameters.add(new Object[]{heartbeatAt, leaseExpiresAt, executionId, nodeId});
+        }
+
+        try {
+            int[] updated = jdbcTemplate.batchUpdate(HEARTBEAT_SQL, parameters);
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    logger.warn("Lease da execução {} não pertence mais ao nó {}", executionIds.get(i), nodeId);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao renovar leases do nó {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    // Recupera execuções cujo último banco terminou em um nó que caiu antes de finalizar
+    private void finalizeFinishedExecutions() {
+        try {
+            executionTargetStore.finalizeFinishedExecutions();
+        } catch (Exception e) {
+            logger.error("Erro ao finalizar execuções concluídas: {}", e.getMessage());
+        }
+    }
+
+    private void release(String executionId) {
+        try {
+            jdbcTemplate.update(RELEASE_SQL, executionId, nodeId);
+        } catch (Exception e) {
+            logger.warn("Erro ao liberar lease da execução {}: {}", executionId, e.getMessage());
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Encerrando ExecutionQueue...");
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (workerPool != null) {
+            // Sem interromper: execuções ainda não iniciadas continuam PENDING e voltam
+            // para a fila quando o lease expirar (ou no próximo start deste nó)
+            workerPool.shutdown();
+            try {
+                if (!workerPool.awaitTermination(shutdownGraceSeconds, TimeUnit.SECONDS)) {
+                    logger.warn("{} execuções em início voltarão à fila", runningExecutions.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("ExecutionQueue encerrada");
+    }
+}
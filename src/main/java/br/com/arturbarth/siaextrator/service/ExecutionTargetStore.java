@@ -0,0 +1,406 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ExecutionProgressEventDTO;
+import br.com.arturbarth.siaextrator.entity.QueryExecution;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Acesso JDBC aos bancos alvo de cada execução como unidades de trabalho compartilhadas.
+ *
+ * Ao iniciar, a execução grava uma linha PENDING em query_execution_results por banco.
+ * Qualquer nó reivindica linhas pendentes (ou com lease expirado) com
+ * {@code FOR UPDATE SKIP LOCKED}, até a sua capacidade livre. Quando não resta banco
+ * pendente nem em andamento, o primeiro nó que consegue o update condicional finaliza a
+ * execução e grava o manifesto do consolidado.
+ */
+@Component
+public class ExecutionTargetStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionTargetStore.class);
+
+    private static final String START_EXECUTION_SQL =
+            "UPDATE query_executions SET status = 'RUNNING', started_at = ?, updated_at = ?, " +
+            "lease_owner = NULL, lease_expires_at = NULL WHERE id = ? AND status = 'PENDING'";
+
+    private static final String INSERT_TARGET_SQL =
+            "INSERT INTO query_execution_results (query_execution_id, cluster_id, database_name, status, " +
+            "rows_affected, attempts, schedule_order, estimated_time_ms, error_message, executed_at) " +
+            "VALUES (?, ?, ?, ?, 0, 0, ?, ?, ?, ?)";
+
+    // Pendentes (respeitando o backoff de novas tentativas) ou com lease expirado, na ordem do TargetScheduler
+    // dentro de cada execução; cada reivindicação conta uma tentativa
+    private static final String CLAIM_TARGETS_SQL =
+            "UPDATE query_execution_results SET status = 'RUNNING', lease_owner = ?, lease_expires_at = ?, " +
+            "attempts = COALESCE(attempts, 0) + 1, next_attempt_at = NULL " +
+            "WHERE id IN (SELECT r.id FROM query_execution_results r " +
+            "JOIN query_executions e ON e.id = r.query_execution_id " +
+            "WHERE e.status = 'RUNNING' " +
+            "AND ((r.status = 'PENDING' AND (r.next_attempt_at IS NULL OR r.next_attempt_at <= ?)) " +
+            "OR (r.status = 'RUNNING' AND r.lease_expires_at < ?))%s " +
+            "ORDER BY r.query_execution_id, r.schedule_order, r.id LIMIT ? FOR UPDATE OF r SKIP LOCKED) " +
+            "RETURNING id, query_execution_id, cluster_id, database_name, attempts";
+
+    // Devolução sem execução não conta como tentativa
+    private static final String RELEASE_TARGET_SQL =
+            "UPDATE query_execution_results SET status = 'PENDING', lease_owner = NULL, lease_expires_at = NULL, " +
+            "attempts = attempts - 1 WHERE id = ? AND lease_owner = ?";
+
+    private static final String RELEASE_NODE_TARGETS_SQL =
+            "UPDATE query_execution_results SET status = 'PENDING', lease_owner = NULL, lease_expires_at = NULL " +
+            "WHERE lease_owner = ? AND status = 'RUNNING'";
+
+    private static final String RENEW_TARGET_SQL =
+            "UPDATE query_execution_results SET lease_expires_at = ? WHERE id = ? AND lease_owner = ?";
+
+    // Condicional: não sobrescreve uma execução que acabou de ser finalizada nem as colunas mantidas via JDBC
+    private static final String CANCEL_EXECUTION_SQL =
+            "UPDATE query_executions SET status = 'CANCELLED', error_message = ?, completed_at = ?, updated_at = ?, " +
+            "execution_time_ms = CAST(EXTRACT(EPOCH FROM (CAST(? AS timestamp) - started_at)) * 1000 AS bigint) " +
+            "WHERE id = ? AND status IN ('PENDING', 'RUNNING')";
+
+    private static final String CANCEL_PENDING_TARGETS_SQL =
+            "UPDATE query_execution_results SET status = 'CANCELLED' " +
+            "WHERE query_execution_id = ? AND status = 'PENDING'";
+
+    // Reabre uma execução finalizada que tenha bancos com falha; os bancos concluídos e seus arquivos são mantidos
+    private static final String REOPEN_EXECUTION_SQL =
+            "UPDATE query_executions SET status = 'RUNNING', completed_at = NULL, execution_time_ms = NULL, " +
+            "error_message = NULL, updated_at = ? WHERE id = ? AND status IN ('COMPLETED', 'FAILED') " +
+            "AND EXISTS (SELECT 1 FROM query_execution_results WHERE query_execution_id = ? AND status = 'FAILED')";
+
+    private static final String RETRY_FAILED_TARGETS_SQL =
+            "UPDATE query_execution_results SET status = 'PENDING', attempts = 0, next_attempt_at = NULL, " +
+            "error_message = NULL WHERE query_execution_id = ? AND status = 'FAILED'";
+
+    // Contadores da execução calculados a partir dos bancos, qualquer que seja o nó que os executou
+    private static final String REFRESH_COUNTERS_SQL =
+            "UPDATE query_executions e SET completed_clusters = s.completed, failed_clusters = s.failed, " +
+            "total_rows = s.total_rows, updated_at = ? " +
+            "FROM (SELECT COUNT(*) FILTER (WHERE status = 'COMPLETED') AS completed, " +
+            "COUNT(*) FILTER (WHERE status = 'FAILED') AS failed, " +
+            "COALESCE(SUM(rows_affected) FILTER (WHERE status = 'COMPLETED'), 0) AS total_rows " +
+            "FROM query_execution_results WHERE query_execution_id = ?) s " +
+            "WHERE e.id = ?";
+
+    // Só um nó vence: a execução deixa de estar RUNNING no mesmo update que verifica os bancos
+    private static final String FINALIZE_SQL =
+            "UPDATE query_executions SET status = 'COMPLETED', completed_at = ?, updated_at = ?, " +
+            "execution_time_ms = CAST(EXTRACT(EPOCH FROM (CAST(? AS timestamp) - started_at)) * 1000 AS bigint) " +
+            "WHERE id = ? AND status = 'RUNNING' AND NOT EXISTS (SELECT 1 FROM query_execution_results " +
+            "WHERE query_execution_id = ? AND status IN ('PENDING', 'RUNNING')) " +
+            "RETURNING execution_id, total_rows";
+
+    private static final String FINISHED_UNFINALIZED_SQL =
+            "SELECT e.id FROM query_executions e WHERE e.status = 'RUNNING' AND NOT EXISTS " +
+            "(SELECT 1 FROM query_execution_results r WHERE r.query_execution_id = e.id " +
+            "AND r.status IN ('PENDING', 'RUNNING'))";
+
+    // Limite total de linhas da execução: bloqueado para que as concessões de bancos concorrentes sejam serializadas
+    private static final String ROW_BUDGET_SQL =
+            "SELECT row_limit - COALESCE(rows_reserved, 0) AS remaining, " +
+            "(SELECT COUNT(*) FROM query_execution_results WHERE query_execution_id = ? " +
+            "AND status IN ('PENDING', 'RUNNING')) AS open_targets " +
+            "FROM query_executions WHERE id = ? AND row_limit IS NOT NULL FOR UPDATE";
+
+    private static final String ADD_RESERVED_ROWS_SQL =
+            "UPDATE query_executions SET rows_reserved = COALESCE(rows_reserved, 0) + ? WHERE id = ?";
+
+    private static final String RESULT_FILES_SQL =
+            "SELECT result_file_path, data_offset FROM query_execution_results " +
+            "WHERE query_execution_id = ? AND status = 'COMPLETED' AND result_file_path IS NOT NULL";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ResultManifest resultManifest;
+
+    @Autowired
+    private ExecutionProgressTracker executionProgressTracker;
+
+    @Autowired
+    private ExtractionMetrics extractionMetrics;
+
+    /**
+     * Passa a execução para RUNNING e grava os bancos alvo, na mesma transação: pendentes,
+     * ou já com falha quando o cluster estava indisponível. Retorna false se a execução não
+     * estava mais pendente (cancelada).
+     */
+    public boolean startExecution(QueryExecution queryExecution, List<QueryExecutionResult> targets) {
+        Timestamp now = Timestamp.valueOf(queryExecution.getStartedAt());
+
+        List<Object[]> rows = new ArrayList<>(targets.size());
+        for (QueryExecutionResult target : targets) {
+            rows.add(new Object[]{queryExecution.getId(), target.getCluster().getId(), target.getDatabaseName(),
+                    target.getStatus().name(), target.getScheduleOrder(), target.getEstimatedTimeMs(),
+                    target.getErrorMessage(), now});
+        }
+
+        Boolean started = new TransactionTemplate(transactionManager).execute(status -> {
+            if (jdbcTemplate.update(START_EXECUTION_SQL, now, now, queryExecution.getId()) == 0) {
+                return false;
+            }
+            jdbcTemplate.batchUpdate(INSERT_TARGET_SQL, rows);
+
+            ExecutionProgressEventDTO event = new ExecutionProgressEventDTO(
+                    queryExecution.getExecutionId(), ExecutionProgressEventDTO.STARTED, "RUNNING");
+            event.setTotalDatabases(targets.size());
+            executionProgressTracker.publish(event);
+            return true;
+        });
+        return Boolean.TRUE.equals(started);
+    }
+
+    /**
+     * Reivindica até {@code limit} bancos pendentes ou com lease expirado, ignorando os
+     * clusters que já estão no limite de concorrência deste nó.
+     */
+    public List<ClaimedTarget> claimTargets(String nodeId, int limit, Collection<Long> excludedClusters,
+                                            int leaseSeconds) {
+        LocalDateTime now = LocalDateTime.now();
+
+        String clusterFilter = excludedClusters.isEmpty() ? "" :
+                " AND r.cluster_id NOT IN (" +
+                excludedClusters.stream().map(id -> "?").collect(Collectors.joining(", ")) + ")";
+
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(nodeId);
+        parameters.add(Timestamp.valueOf(now.plusSeconds(leaseSeconds)));
+        parameters.add(Timestamp.valueOf(now));
+        parameters.add(Timestamp.valueOf(now));
+        parameters.addAll(excludedClusters);
+        parameters.add(limit);
+
+        return jdbcTemplate.query(String.format(CLAIM_TARGETS_SQL, clusterFilter),
+                (rs, rowNum) -> new ClaimedTarget(
+                        rs.getLong("id"),
+                        rs.getLong("query_execution_id"),
+                        rs.getLong("cluster_id"),
+                        rs.getString("database_name"),
+                        rs.getInt("attempts")),
+                parameters.toArray());
+    }
+
+    // Devolve à fila um banco reivindicado que não pôde ser iniciado neste nó
+    public void releaseTarget(long targetId, String nodeId) {
+        jdbcTemplate.update(RELEASE_TARGET_SQL, targetId, nodeId);
+    }
+
+    // Bancos deixados pela instância anterior deste nó voltam para a fila sem esperar a expiração
+    public int releaseNodeTargets(String nodeId) {
+        return jdbcTemplate.update(RELEASE_NODE_TARGETS_SQL, nodeId);
+    }
+
+    /**
+     * Renova o lease dos bancos em execução neste nó.
+     *
+     * @return ids cujo lease não pertence mais a este nó
+     */
+    public List<Long> renewTargets(String nodeId, List<Long> targetIds, int leaseSeconds) {
+        if (targetIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Timestamp leaseExpiresAt = Timestamp.valueOf(LocalDateTime.now().plusSeconds(leaseSeconds));
+        List<Object[]> parameters = new ArrayList<>(targetIds.size());
+        for (Long targetId : targetIds) {
+            parameters.add(new Object[]{leaseExpiresAt, targetId, nodeId});
+        }
+
+        int[] updated = jdbcTemplate.batchUpdate(RENEW_TARGET_SQL, parameters);
+        List<Long> lost = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                lost.add(targetIds.get(i));
+            }
+        }
+        return lost;
+    }
+
+    // Execuções, entre as informadas, que foram canceladas
+    public List<Long> findCancelled(Collection<Long> queryExecutionIds) {
+        if (queryExecutionIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String placeholders = queryExecutionIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM query_executions WHERE status = 'CANCELLED' AND id IN (" + placeholders + ")",
+                Long.class, queryExecutionIds.toArray());
+    }
+
+    /**
+     * Volta para a fila apenas os bancos com falha de uma execução finalizada. Na nova
+     * finalização, o manifesto é regravado com os arquivos já existentes e os novos.
+     *
+     * @return quantidade de bancos reenfileirados (0 se a execução não estava finalizada ou não tinha falhas)
+     */
+    public int retryFailedTargets(long queryExecutionId) {
+        Integer retried = new TransactionTemplate(transactionManager).execute(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            if (jdbcTemplate.update(REOPEN_EXECUTION_SQL, now, queryExecutionId, queryExecutionId) == 0) {
+                return 0;
+            }
+            return jdbcTemplate.update(RETRY_FAILED_TARGETS_SQL, queryExecutionId);
+        });
+        return retried != null ? retried : 0;
+    }
+
+    /**
+     * Reserva linhas do limite total da execução para um banco: a parte que ainda resta
+     * dividida entre os bancos não concluídos, até {@code maxRows}. O que o banco não usar
+     * deve ser devolvido com {@link #releaseRows(long, long)} e fica para os seguintes.
+     *
+     * @return linhas concedidas, ou {@code maxRows} se a execução não tem limite total
+     */
+    public long reserveRows(long queryExecutionId, long maxRows) {
+        Long granted = new TransactionTemplate(transactionManager).execute(status -> {
+            List<long[]> budget = jdbcTemplate.query(ROW_BUDGET_SQL,
+                    (rs, rowNum) -> new long[]{rs.getLong("remaining"), rs.getLong("open_targets")},
+                    queryExecutionId, queryExecutionId);
+            if (budget.isEmpty()) {
+                return maxRows;
+            }
+
+            long remaining = Math.max(budget.get(0)[0], 0);
+            long openTargets = Math.max(budget.get(0)[1], 1);
+            long grant = Math.min(maxRows, (remaining + openTargets - 1) / openTargets);
+            if (grant > 0) {
+                jdbcTemplate.update(ADD_RESERVED_ROWS_SQL, grant, queryExecutionId);
+            }
+            return grant;
+        });
+        return granted != null ? granted : 0;
+    }
+
+    public void releaseRows(long queryExecutionId, long rows) {
+        if (rows > 0) {
+            jdbcTemplate.update(ADD_RESERVED_ROWS_SQL, -rows, queryExecutionId);
+        }
+    }
+
+    /**
+     * Marca a execução como cancelada se ela ainda estiver pendente ou em andamento.
+     *
+     * @return true se esta chamada cancelou a execução
+     */
+    public boolean cancelExecution(long queryExecutionId, String errorMessage) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.update(CANCEL_EXECUTION_SQL, errorMessage, now, now, now, queryExecutionId) > 0;
+    }
+
+    public int cancelPendingTargets(long queryExecutionId) {
+        return jdbcTemplate.update(CANCEL_PENDING_TARGETS_SQL, queryExecutionId);
+    }
+
+    /**
+     * Finaliza a execução se não houver mais bancos pendentes ou em andamento. Apenas um
+     * nó consegue o update condicional; esse nó grava o manifesto do consolidado.
+     *
+     * @return true se esta chamada finalizou a execução
+     */
+    public boolean tryFinalize(long queryExecutionId) {
+        Boolean finalized = new TransactionTemplate(transactionManager).execute(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.update(REFRESH_COUNTERS_SQL, now, queryExecutionId, queryExecutionId);
+
+            List<Object[]> finished = jdbcTemplate.query(FINALIZE_SQL,
+                    (rs, rowNum) -> new Object[]{rs.getString("execution_id"), rs.getLong("total_rows")},
+                    now, now, now, queryExecutionId, queryExecutionId);
+            if (finished.isEmpty()) {
+                return false;
+            }
+
+            String executionId = (String) finished.get(0)[0];
+            long totalRows = (Long) finished.get(0)[1];
+
+            // O consolidado é o manifesto dos arquivos dos bancos concluídos, sem regravar os dados
+            if (totalRows > 0) {
+                String manifest = writeManifest(executionId, queryExecutionId);
+                jdbcTemplate.update("UPDATE query_executions SET s3_result_path = ? WHERE id = ?",
+                        manifest, queryExecutionId);
+            }
+
+            ExecutionProgressEventDTO event = new ExecutionProgressEventDTO(
+                    executionId, ExecutionProgressEventDTO.STATUS, "COMPLETED");
+            event.setTotalRows(totalRows);
+            executionProgressTracker.publish(event);
+
+            logger.info("Query {} finalizada: {} linhas", executionId, totalRows);
+            return true;
+        });
+        return Boolean.TRUE.equals(finalized);
+    }
+
+    /**
+     * Finaliza execuções cujos bancos já terminaram mas que não foram finalizadas (por
+     * exemplo, porque o nó que executou o último banco caiu antes de finalizar).
+     */
+    public void finalizeFinishedExecutions() {
+        for (Long queryExecutionId : jdbcTemplate.queryForList(FINISHED_UNFINALIZED_SQL, Long.class)) {
+            tryFinalize(queryExecutionId);
+        }
+    }
+
+    private String writeManifest(String executionId, long queryExecutionId) {
+        long start = System.nanoTime();
+        List<ResultManifest.Entry> entries = jdbcTemplate.query(RESULT_FILES_SQL,
+                (rs, rowNum) -> new ResultManifest.Entry(
+                        Paths.get(rs.getString("result_file_path")),
+                        rs.getLong("data_offset")),
+                queryExecutionId);
+
+        try {
+            String manifest = resultManifest.write(executionId, entries);
+            extractionMetrics.recordConsolidation(System.nanoTime() - start);
+            return manifest;
+        } catch (IOException e) {
+            throw new RuntimeException("Falha ao gravar manifesto do consolidado: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Banco reivindicado por este nó.
+     */
+    public static class ClaimedTarget {
+        private final long id;
+        private final long queryExecutionId;
+        private final long clusterId;
+        private final String databaseName;
+        private final int attempts;
+
+        public ClaimedTarget(long id, long queryExecutionId, long clusterId, String databaseName, int attempts) {
+            this.id = id;
+            this.queryExecutionId = queryExecutionId;
+            this.clusterId = clusterId;
+            this.databaseName = databaseName;
+            this.attempts = attempts;
+        }
+
+        public long getId() { return id; }
+        public long getQueryExecutionId() { return queryExecutionId; }
+        public long getClusterId() { return clusterId; }
+        public String getDatabaseName() { return databaseName; }
+        public int getAttempts() { return attempts; }
+    }
+}
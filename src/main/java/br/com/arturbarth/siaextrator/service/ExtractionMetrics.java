@@ -0,0 +1,258 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Métricas do pipeline de extração publicadas pelo Micrometer (Prometheus em
+ * {@code /actuator/prometheus}): aquisição de conexão, latência e vazão de leitura por
+ * cluster, falhas por SQLState, gravação dos arquivos, consolidação, filas e despacho.
+ *
+ * As séries são por cluster (alias), nunca por banco, que podem ser milhares. Vazões são
+ * contadores; linhas/s e bytes/s saem de {@code rate()} no Prometheus.
+ */
+@Component
+public class ExtractionMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionMetrics.class);
+
+    // Profundidade das filas, compartilhadas por todos os nós
+    private static final String QUEUE_SQL =
+            "SELECT (SELECT COUNT(*) FROM query_executions WHERE status = 'PENDING') AS pending_executions, " +
+            "(SELECT COUNT(*) FROM query_executions WHERE status = 'RUNNING') AS running_executions, " +
+            "(SELECT COUNT(*) FROM query_execution_results WHERE status = 'PENDING') AS pending_targets, " +
+            "(SELECT COUNT(*) FROM query_execution_results WHERE status = 'RUNNING') AS running_targets";
+
+    @Value("${metrics.queue.refresh.seconds:10}")
+    private int queueRefreshSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TargetDispatcher targetDispatcher;
+
+    private final Map<String, ClusterMeters> clusterMeters = new ConcurrentHashMap<>();
+
+    private volatile QueueSnapshot queueSnapshot;
+
+    @PostConstruct
+    public void init() {
+        registerQueueGauge("extrator.queue.executions", "Execuções aguardando na fila", QueueSnapshot::pendingExecutions);
+        registerQueueGauge("extrator.executions.active", "Execuções em andamento", QueueSnapshot::runningExecutions);
+        registerQueueGauge("extrator.queue.targets", "Bancos aguardando execução", QueueSnapshot::pendingTargets);
+        registerQueueGauge("extrator.targets.active", "Bancos em execução em todos os nós", QueueSnapshot::runningTargets);
+
+        // Despacho neste nó, com o modo de threads como tag para comparar platform e virtual
+        String mode = targetDispatcher.getThreadMode();
+        Gauge.builder("extrator.dispatcher.tasks.active", targetDispatcher, TargetDispatcher::getActiveTasks)
+                .description("Tarefas de banco em execução neste nó")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        Gauge.builder("extrator.dispatcher.slots.available", targetDispatcher, TargetDispatcher::availableSlots)
+                .description("Permissões globais livres neste nó")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        FunctionCounter.builder("extrator.dispatcher.tasks.failed", targetDispatcher, TargetDispatcher::getFailedTasks)
+                .description("Tarefas de banco com falha, inclusive tentativas reagendadas")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        FunctionTimer.builder("extrator.dispatcher.tasks", targetDispatcher,
+                        TargetDispatcher::getCompletedTasks, TargetDispatcher::getTotalTaskNanos, TimeUnit.NANOSECONDS)
+                .description("Tarefas de banco concluídas e tempo total de execução")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Medidores do cluster, criados no primeiro uso.
+     */
+    public ClusterMeters forCluster(String clusterAlias) {
+        return clusterMeters.computeIfAbsent(clusterAlias, alias -> new ClusterMeters(meterRegistry, alias));
+    }
+
+    /**
+     * Registra o arquivo de resultado de um banco: linhas e bytes gravados em disco.
+     */
+    public void recordWrite(ResultFormat format, long rows, long bytes) {
+        String tag = format.name().toLowerCase();
+        meterRegistry.counter("extrator.writer.rows", "format", tag).increment(rows);
+        meterRegistry.counter("extrator.writer.bytes", "format", tag).increment(bytes);
+    }
+
+    public void recordConsolidation(long nanos) {
+        Timer.builder("extrator.consolidation")
+                .description("Gravação do manifesto do resultado consolidado")
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void registerQueueGauge(String name, String description, ToDoubleFunction<QueueSnapshot> value) {
+        Gauge.builder(name, this, metrics -> {
+                    QueueSnapshot snapshot = metrics.queueSnapshot();
+                    return snapshot != null ? value.applyAsDouble(snapshot) : Double.NaN;
+                })
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    // Uma consulta serve os quatro gauges e é reaproveitada por alguns segundos entre scrapes
+    private synchronized QueueSnapshot queueSnapshot() {
+        QueueSnapshot snapshot = queueSnapshot;
+        long now = System.nanoTime();
+        if (snapshot != null && now - snapshot.readAtNanos < TimeUnit.SECONDS.toNanos(queueRefreshSeconds)) {
+            return snapshot;
+        }
+
+        try {
+            snapshot = jdbcTemplate.queryForObject(QUEUE_SQL, (rs, rowNum) -> new QueueSnapshot(
+                    rs.getLong("pending_executions"), rs.getLong("running_executions"),
+                    rs.getLong("pending_targets"), rs.getLong("running_targets"), now));
+            queueSnapshot = snapshot;
+            return snapshot;
+        } catch (Exception e) {
+            logger.debug("Erro ao ler a profundidade das filas: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Tamanho aproximado de um valor lido do banco, usado na vazão de leitura em bytes:
+     * texto e binários pelo comprimento, os demais tipos como 8 bytes.
+     */
+    public static long estimateSize(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String string) {
+            return string.length();
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        return 8;
+    }
+
+    /**
+     * Medidores de um cluster.
+     */
+    public static class ClusterMeters {
+        private final MeterRegistry registry;
+        private final String clusterAlias;
+        private final Timer connectionAcquire;
+        private final Timer queryLatency;
+        private final Timer fetchDuration;
+        private final Counter fetchedRows;
+        private final Counter fetchedBytes;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        public ClusterMeters(MeterRegistry registry, String clusterAlias) {
+            this.registry = registry;
+            this.clusterAlias = clusterAlias;
+            this.connectionAcquire = Timer.builder("extrator.connection.acquire")
+                    .description("Obtenção de conexão do pool, incluindo a conexão física quando não há ociosa")
+                    .tag("cluster", clusterAlias)
+                    .register(registry);
+            this.queryLatency = Timer.builder("extrator.query.latency")
+                    .description("Tempo até a primeira resposta da query (executeQuery)")
+                    .tag("cluster", clusterAlias)
+                    .register(registry);
+            this.fetchDuration = Timer.builder("extrator.fetch.duration")
+                    .description("Leitura das linhas da query, da primeira resposta ao fim do resultado")
+                    .tag("cluster", clusterAlias)
+                    .register(registry);
+            this.fetchedRows = Counter.builder("extrator.fetch.rows")
+                    .description("Linhas lidas")
+                    .tag("cluster", clusterAlias)
+                    .register(registry);
+            this.fetchedBytes = Counter.builder("extrator.fetch.bytes")
+                    .description("Tamanho aproximado dos valores lidos")
+                    .baseUnit("bytes")
+                    .tag("cluster", clusterAlias)
+                    .register(registry);
+            Gauge.builder("extrator.queries.in.flight", inFlight, AtomicInteger::get)
+                    .description("Queries em andamento neste nó")
+                    .tag("cluster", clusterAlias)
+                    .register(registry);
+        }
+
+        public void recordConnectionAcquire(long nanos) {
+            connectionAcquire.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void recordQueryLatency(long nanos) {
+            queryLatency.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void recordFetchDuration(long nanos) {
+            fetchDuration.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void recordFetched(long rows, long bytes) {
+            fetchedRows.increment(rows);
+            fetchedBytes.increment(bytes);
+        }
+
+        public void queryStarted() {
+            inFlight.incrementAndGet();
+        }
+
+        public void queryFinished() {
+            inFlight.decrementAndGet();
+        }
+
+        public void recordSuccess() {
+            registry.counter("extrator.queries", "cluster", clusterAlias, "outcome", "success", "sqlstate", "none")
+                    .increment();
+        }
+
+        // A taxa de falhas por SQLState sai da mesma série das queries concluídas (57014 é cancelamento)
+        public void recordFailure(String sqlState) {
+            registry.counter("extrator.queries", "cluster", clusterAlias, "outcome", "failure",
+                    "sqlstate", sqlState != null ? sqlState : "unknown").increment();
+        }
+    }
+
+    private static class QueueSnapshot {
+        private final long pendingExecutions;
+        private final long runningExecutions;
+        private final long pendingTargets;
+        private final long runningTargets;
+        private final long readAtNanos;
+
+        QueueSnapshot(long pendingExecutions, long runningExecutions, long pendingTargets, long runningTargets,
+                      long readAtNanos) {
+            this.pendingExecutions = pendingExecutions;
+            this.runningExecutions = runningExecutions;
+            this.pendingTargets = pendingTargets;
+            this.runningTargets = runningTargets;
+            this.readAtNanos = readAtNanos;
+        }
+
+        double pendingExecutions() { return pendingExecutions; }
+        double runningExecutions() { return runningExecutions; }
+        double pendingTargets() { return pendingTargets; }
+        double runningTargets() { return runningTargets; }
+    }
+}
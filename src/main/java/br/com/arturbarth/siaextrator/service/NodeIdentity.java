@@ -0,0 +1,43 @@
+package br.com.arturbarth.siaextrator.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * Identificação deste nó nos leases da fila compartilhada. Usa {@code app.node.id} ou,
+ * por padrão, o hostname (estável entre reinícios do mesmo pod).
+ */
+@Component
+public class NodeIdentity {
+
+    private static final Logger logger = LoggerFactory.getLogger(NodeIdentity.class);
+
+    @Value("${app.node.id:}")
+    private String configuredNodeId;
+
+    private String nodeId;
+
+    @PostConstruct
+    public void init() {
+        if (configuredNodeId != null && !configuredNodeId.isBlank()) {
+            nodeId = configuredNodeId;
+        } else {
+            try {
+                nodeId = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                nodeId = "node-" + UUID.randomUUID().toString().substring(0, 8);
+            }
+        }
+        logger.info("Identificação do nó: {}", nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
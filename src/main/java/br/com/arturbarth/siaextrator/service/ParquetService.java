@@ -0,0 +1,553 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ResultSchema;
+import br.com.arturbarth.siaextrator.dto.RowBatch;
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
+import org.apache.parquet.bytes.BytesInput;
+import org.apache.parquet.compression.CompressionCodecFactory;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Types;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Grava resultados em Parquet com colunas tipadas a partir dos metadados do ResultSet.
+ *
+ * Cada arquivo começa com as colunas constantes {@code cluster} e {@code database}
+ * (praticamente gratuitas com dicionário), preservando a origem das linhas quando os
+ * arquivos são lidos em conjunto. Os arquivos concluídos entram no
+ * {@link ResultManifest} da execução; o download consolidado os entrega em um ZIP, sem regravação.
+ *
+ * A escrita usa {@link PlainParquetConfiguration}; o Hadoop não é
+ * inicializado, e a compressão das páginas é feita pelo {@link CompressionCodec} da
+ * aplicação em vez dos codecs do Hadoop.
+ */
+@Service
+public class ParquetService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParquetService.class);
+
+    private static final String CLUSTER_COLUMN = "cluster";
+    private static final String DATABASE_COLUMN = "database";
+
+    // Maior precisão de DECIMAL que cabe em INT32 / INT64
+    private static final int MAX_INT32_DECIMAL_PRECISION = 9;
+    private static final int MAX_INT64_DECIMAL_PRECISION = 18;
+    private static final int MAX_DECIMAL_PRECISION = 38;
+
+    @Autowired
+    private CsvService csvService;
+
+    @Autowired
+    private ExtractionMetrics extractionMetrics;
+
+    @Value("${app.parquet.compression:zstd}")
+    private String compression;
+
+    @Value("${app.parquet.compression.level:-1}")
+    private int compressionLevel;
+
+    @Value("${app.parquet.row.group.size.mb:128}")
+    private int rowGroupSizeMb;
+
+    @Value("${app.parquet.page.size.kb:1024}")
+    private int pageSizeKb;
+
+    @Value("${app.parquet.dictionary.enabled:true}")
+    private boolean dictionaryEnabled;
+
+    public ParquetResultWriter openWriter(String executionId, String clusterAlias, String databaseName) {
+        return new ParquetResultWriter(executionId, clusterAlias, databaseName);
+    }
+
+    private long rowGroupSizeBytes() {
+        return rowGroupSizeMb * 1024L * 1024L;
+    }
+
+    /**
+     * Converte o esquema JDBC em um esquema Parquet. Todas as colunas são opcionais;
+     * tipos sem equivalente direto são gravados como texto.
+     */
+    static MessageType toParquetSchema(ResultSchema schema) {
+        Types.MessageTypeBuilder builder = Types.buildMessage();
+        builder.required(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named(CLUSTER_COLUMN);
+        builder.required(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named(DATABASE_COLUMN);
+
+        Set<String> usedNames = new HashSet<>(List.of(CLUSTER_COLUMN, DATABASE_COLUMN));
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            String name = uniqueName(schema.getColumnName(i), usedNames);
+            int precision = schema.getPrecision(i);
+            int scale = schema.getScale(i);
+
+            switch (ParquetColumnKind.of(schema.getColumnType(i), precision, scale)) {
+                case BOOLEAN:
+                    builder.optional(PrimitiveTypeName.BOOLEAN).named(name);
+                    break;
+                case INT32:
+                    builder.optional(PrimitiveTypeName.INT32).named(name);
+                    break;
+                case INT64:
+                    builder.optional(PrimitiveTypeName.INT64).named(name);
+                    break;
+                case FLOAT:
+                    builder.optional(PrimitiveTypeName.FLOAT).named(name);
+                    break;
+                case DOUBLE:
+                    builder.optional(PrimitiveTypeName.DOUBLE).named(name);
+                    break;
+                case DECIMAL_INT32:
+                    builder.optional(PrimitiveTypeName.INT32)
+                            .as(LogicalTypeAnnotation.decimalType(scale, precision)).named(name);
+                    break;
+                case DECIMAL_INT64:
+                    builder.optional(PrimitiveTypeName.INT64)
+                            .as(LogicalTypeAnnotation.decimalType(scale, precision)).named(name);
+                    break;
+                case DECIMAL_BINARY:
+                    builder.optional(PrimitiveTypeName.BINARY)
+                            .as(LogicalTypeAnnotation.decimalType(scale, precision)).named(name);
+                    break;
+                case DATE:
+                    builder.optional(PrimitiveTypeName.INT32).as(LogicalTypeAnnotation.dateType()).named(name);
+                    break;
+                case TIME:
+                    builder.optional(PrimitiveTypeName.INT64)
+                            .as(LogicalTypeAnnotation.timeType(false, LogicalTypeAnnotation.TimeUnit.MICROS)).named(name);
+                    break;
+                case TIMESTAMP:
+                    builder.optional(PrimitiveTypeName.INT64)
+                            .as(LogicalTypeAnnotation.timestampType(false, LogicalTypeAnnotation.TimeUnit.MICROS)).named(name);
+                    break;
+                case BINARY:
+                    builder.optional(PrimitiveTypeName.BINARY).named(name);
+                    break;
+                default:
+                    builder.optional(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named(name);
+                    break;
+            }
+        }
+
+        return builder.named("result");
+    }
+
+    // Parquet não aceita nomes de coluna repetidos (ex.: "id" de duas tabelas em um join)
+    private static String uniqueName(String name, Set<String> usedNames) {
+        String candidate = name == null || name.isBlank() ? "column" : name;
+        String unique = candidate;
+        int suffix = 2;
+        while (!usedNames.add(unique)) {
+            unique = candidate + "_" + suffix++;
+        }
+        return unique;
+    }
+
+    // Representação física de cada coluna, resolvida uma vez a partir do tipo JDBC
+    enum ParquetColumnKind {
+        BOOLEAN, INT32, INT64, FLOAT, DOUBLE, DECIMAL_INT32, DECIMAL_INT64, DECIMAL_BINARY,
+        DATE, TIME, TIMESTAMP, BINARY, STRING;
+
+        static ParquetColumnKind of(int jdbcType, int precision, int scale) {
+            switch (jdbcType) {
+                case java.sql.Types.BOOLEAN:
+                    return BOOLEAN;
+                case java.sql.Types.BIT:
+                    // boolean do PostgreSQL; bit(n) com n > 1 segue como texto
+                    return precision <= 1 ? BOOLEAN : STRING;
+                case java.sql.Types.TINYINT:
+                case java.sql.Types.SMALLINT:
+                case java.sql.Types.INTEGER:
+                    return INT32;
+                case java.sql.Types.BIGINT:
+                    return INT64;
+                case java.sql.Types.REAL:
+                    return FLOAT;
+                case java.sql.Types.FLOAT:
+                case java.sql.Types.DOUBLE:
+                    return DOUBLE;
+                case java.sql.Types.DECIMAL:
+                case java.sql.Types.NUMERIC:
+                    // numeric sem precisão declarada não tem escala fixa; gravado como texto
+                    if (precision <= 0 || precision > MAX_DECIMAL_PRECISION || scale < 0 || scale > precision) {
+                        return STRING;
+                    }
+                    if (precision <= MAX_INT32_DECIMAL_PRECISION) {
+                        return DECIMAL_INT32;
+                    }
+                    return precision <= MAX_INT64_DECIMAL_PRECISION ? DECIMAL_INT64 : DECIMAL_BINARY;
+                case java.sql.Types.DATE:
+                    return DATE;
+                case java.sql.Types.TIME:
+                case java.sql.Types.TIME_WITH_TIMEZONE:
+                    return TIME;
+                case java.sql.Types.TIMESTAMP:
+                case java.sql.Types.TIMESTAMP_WITH_TIMEZONE:
+                    return TIMESTAMP;
+                case java.sql.Types.BINARY:
+                case java.sql.Types.VARBINARY:
+                case java.sql.Types.LONGVARBINARY:
+                case java.sql.Types.BLOB:
+                    return BINARY;
+                default:
+                    return STRING;
+            }
+        }
+    }
+
+    // Sink que grava as linhas em Parquet; os row groups são descarregados pelo ParquetWriter
+    public class ParquetResultWriter implements ResultWriter {
+        private final String executionId;
+        private final String clusterAlias;
+        private final String databaseName;
+        private final RowRef row = new RowRef();
+        private ResultSchema schema;
+        private ParquetWriter<RowRef> writer;
+        private String filePath;
+        private Path partFile;
+        private long rowCount;
+
+        private ParquetResultWriter(String executionId, String clusterAlias, String databaseName) {
+            this.executionId = executionId;
+            this.clusterAlias = clusterAlias;
+            this.databaseName = databaseName;
+        }
+
+        @Override
+        public void start(ResultSchema schema) {
+            this.schema = schema;
+        }
+
+        @Override
+        public void accept(Object[] values) throws IOException {
+            writeRow(values, 0);
+        }
+
+        @Override
+        public void acceptBatch(RowBatch batch) throws IOException {
+            for (int i = 0; i < batch.getRowCount(); i++) {
+                writeRow(batch.getValues(), batch.offsetOf(i));
+            }
+        }
+
+        private void writeRow(Object[] values, int offset) throws IOException {
+            if (writer == null) {
+                open();
+            }
+
+            row.values = values;
+            row.offset = offset;
+            writer.write(row);
+            rowCount++;
+
+            if (rowCount % 10000 == 0) {
+                logger.debug("Escritas {} linhas no Parquet...", rowCount);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (writer == null) {
+                logger.info("Nenhum dado para salvar no Parquet");
+                return;
+            }
+
+            writer.close();
+            long bytes = Files.size(partFile);
+            csvService.publishResultFile(partFile, filePath);
+            extractionMetrics.recordWrite(ResultFormat.PARQUET, rowCount, bytes);
+            logger.info("Parquet salvo com sucesso: {} ({} linhas)", Paths.get(filePath).getFileName(), rowCount);
+        }
+
+        @Override
+        public void abort() {
+            if (writer == null) {
+                return;
+            }
+
+            try {
+                writer.close();
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Erro ao fechar Parquet parcial {}: {}", filePath, e.getMessage());
+            }
+
+            try {
+                Files.deleteIfExists(partFile);
+                logger.debug("Parquet parcial removido: {}", partFile);
+            } catch (IOException e) {
+                logger.warn("Erro ao remover Parquet parcial {}: {}", partFile, e.getMessage());
+            }
+            filePath = null;
+        }
+
+        private void open() throws IOException {
+            logger.info("Salvando resultado em Parquet para execução {} - cluster {} - banco {}",
+                    executionId, clusterAlias, databaseName);
+
+            filePath = csvService.buildResultFilePath(executionId, clusterAlias, databaseName,
+                    ResultFormat.PARQUET.getFileExtension());
+
+            ResultWriteSupport writeSupport = new ResultWriteSupport(schema, clusterAlias, databaseName);
+            CompressionCodec codec = CompressionCodec.fromName(compression);
+
+            partFile = csvService.partFileFor(filePath);
+            writer = new Builder(new LocalOutputFile(partFile), writeSupport)
+                    .withConf(new PlainParquetConfiguration())
+                    .withCodecFactory(new PageCompressorFactory(codec, compressionLevel))
+                    .withCompressionCodec(PageCompressorFactory.codecName(codec))
+                    .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                    .withRowGroupSize(rowGroupSizeBytes())
+                    .withPageSize(pageSizeKb * 1024)
+                    .withDictionaryEncoding(dictionaryEnabled)
+                    .build();
+        }
+
+        @Override
+        public String getFilePath() { return filePath; }
+
+        @Override
+        public long getRowCount() { return rowCount; }
+
+        // Parquet não tem cabeçalho a pular: os arquivos vão inteiros para o ZIP
+        @Override
+        public long getDataOffset() { return 0; }
+    }
+
+    // Referência mutável à linha atual dentro do array compartilhado (linha ou lote)
+    private static final class RowRef {
+        private Object[] values;
+        private int offset;
+    }
+
+    private static final class Builder extends ParquetWriter.Builder<RowRef, Builder> {
+        private final ResultWriteSupport writeSupport;
+
+        private Builder(OutputFile file, ResultWriteSupport writeSupport) {
+            super(file);
+            this.writeSupport = writeSupport;
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @Override
+        protected WriteSupport<RowRef> getWriteSupport(ParquetConfiguration conf) {
+            return writeSupport;
+        }
+
+        @Override
+        protected WriteSupport<RowRef> getWriteSupport(org.apache.hadoop.conf.Configuration conf) {
+            return writeSupport;
+        }
+    }
+
+    // Converte os valores tipados da linha para os tipos físicos do Parquet
+    private static final class ResultWriteSupport extends WriteSupport<RowRef> {
+        private final MessageType messageType;
+        private final ParquetColumnKind[] kinds;
+        private final int[] scales;
+        private final Binary clusterValue;
+        private final Binary databaseValue;
+        private RecordConsumer consumer;
+
+        private ResultWriteSupport(ResultSchema schema, String clusterAlias, String databaseName) {
+            this.messageType = toParquetSchema(schema);
+            this.kinds = new ParquetColumnKind[schema.getColumnCount()];
+            this.scales = new int[schema.getColumnCount()];
+            for (int i = 0; i < kinds.length; i++) {
+                kinds[i] = ParquetColumnKind.of(schema.getColumnType(i), schema.getPrecision(i), schema.getScale(i));
+                scales[i] = schema.getScale(i);
+            }
+            this.clusterValue = Binary.fromString(String.valueOf(clusterAlias));
+            this.databaseValue = Binary.fromString(String.valueOf(databaseName));
+        }
+
+        @Override
+        public WriteContext init(ParquetConfiguration configuration) {
+            return new WriteContext(messageType, new HashMap<>());
+        }
+
+        @Override
+        public WriteContext init(org.apache.hadoop.conf.Configuration configuration) {
+            return new WriteContext(messageType, new HashMap<>());
+        }
+
+        @Override
+        public void prepareForWrite(RecordConsumer recordConsumer) {
+            this.consumer = recordConsumer;
+        }
+
+        @Override
+        public void write(RowRef row) {
+            consumer.startMessage();
+
+            consumer.startField(CLUSTER_COLUMN, 0);
+            consumer.addBinary(clusterValue);
+            consumer.endField(CLUSTER_COLUMN, 0);
+
+            consumer.startField(DATABASE_COLUMN, 1);
+            consumer.addBinary(databaseValue);
+            consumer.endField(DATABASE_COLUMN, 1);
+
+            for (int i = 0; i < kinds.length; i++) {
+                Object value = row.values[row.offset + i];
+                if (value == null) {
+                    continue;
+                }
+
+                int fieldIndex = i + 2;
+                String fieldName = messageType.getFieldName(fieldIndex);
+                consumer.startField(fieldName, fieldIndex);
+                writeValue(kinds[i], scales[i], value);
+                consumer.endField(fieldName, fieldIndex);
+            }
+
+            consumer.endMessage();
+        }
+
+        private void writeValue(ParquetColumnKind kind, int scale, Object value) {
+            switch (kind) {
+                case BOOLEAN:
+                    consumer.addBoolean(value instanceof Boolean b ? b : Boolean.parseBoolean(value.toString()));
+                    break;
+                case INT32:
+                    consumer.addInteger(((Number) value).intValue());
+                    break;
+                case INT64:
+                    consumer.addLong(((Number) value).longValue());
+                    break;
+                case FLOAT:
+                    consumer.addFloat(((Number) value).floatValue());
+                    break;
+                case DOUBLE:
+                    consumer.addDouble(((Number) value).doubleValue());
+                    break;
+                case DECIMAL_INT32:
+                    consumer.addInteger(unscaled(value, scale).intValueExact());
+                    break;
+                case DECIMAL_INT64:
+                    consumer.addLong(unscaled(value, scale).longValueExact());
+                    break;
+                case DECIMAL_BINARY:
+                    consumer.addBinary(Binary.fromConstantByteArray(unscaled(value, scale).toByteArray()));
+                    break;
+                case DATE:
+                    consumer.addInteger((int) ((LocalDate) value).toEpochDay());
+                    break;
+                case TIME:
+                    consumer.addLong(((LocalTime) value).toNanoOfDay() / 1_000);
+                    break;
+                case TIMESTAMP:
+                    LocalDateTime timestamp = (LocalDateTime) value;
+                    consumer.addLong(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000);
+                    break;
+                case BINARY:
+                    consumer.addBinary(Binary.fromConstantByteArray((byte[]) value));
+                    break;
+                default:
+                    consumer.addBinary(Binary.fromString(value.toString()));
+                    break;
+            }
+        }
+
+        private static java.math.BigInteger unscaled(Object value, int scale) {
+            BigDecimal decimal = value instanceof BigDecimal d ? d : new BigDecimal(value.toString());
+            return decimal.setScale(scale, RoundingMode.HALF_UP).unscaledValue();
+        }
+    }
+
+    /**
+     * Compressão das páginas com os codecs da aplicação, evitando os codecs do Hadoop
+     * (que exigiriam a configuração e as bibliotecas nativas do Hadoop).
+     */
+    private static final class PageCompressorFactory implements CompressionCodecFactory {
+        private final CompressionCodec codec;
+        private final int level;
+
+        private PageCompressorFactory(CompressionCodec codec, int level) {
+            this.codec = codec;
+            this.level = level;
+        }
+
+        static CompressionCodecName codecName(CompressionCodec codec) {
+            switch (codec) {
+                case GZIP:
+                    return CompressionCodecName.GZIP;
+                case ZSTD:
+                    return CompressionCodecName.ZSTD;
+                default:
+                    return CompressionCodecName.UNCOMPRESSED;
+            }
+        }
+
+        @Override
+        public BytesInputCompressor getCompressor(CompressionCodecName codecName) {
+            return new BytesInputCompressor() {
+                private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+                @Override
+                public BytesInput compress(BytesInput bytes) throws IOException {
+                    if (codec == CompressionCodec.NONE) {
+                        return bytes;
+                    }
+                    buffer.reset();
+                    try (OutputStream out = codec.wrapOutput(buffer, level)) {
+                        bytes.writeAllTo(out);
+                    }
+                    return BytesInput.from(buffer.toByteArray());
+                }
+
+                @Override
+                public CompressionCodecName getCodecName() {
+                    return codecName(codec);
+                }
+
+                @Override
+                public void release() {
+                }
+            };
+        }
+
+        @Override
+        public BytesInputDecompressor getDecompressor(CompressionCodecName codecName) {
+            // Usado apenas na leitura, que não passa por esta fábrica
+            throw new UnsupportedOperationException("Descompressão não suportada: " + codecName);
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -1,72 +1,88 @@
 package br.com.arturbarth.siaextrator.service;
 
+import br.com.arturbarth.siaextrator.dto.ExecutionPlan;
+import br.com.arturbarth.siaextrator.dto.ExecutionProgressEventDTO;
 import br.com.arturbarth.siaextrator.dto.RdsExecutionResult;
+import br.com.arturbarth.siaextrator.dto.RowBatch;
 import br.com.arturbarth.siaextrator.entity.*;
-import br.com.arturbarth.siaextrator.repository.ClusterRepository;
-import br.com.arturbarth.siaextrator.repository.DatabaseInstanceRepository;
+import br.com.arturbarth.siaextrator.exceptions.ExecutionNotFoundException;
 import br.com.arturbarth.siaextrator.repository.QueryExecutionRepository;
-import br.com.arturbarth.siaextrator.repository.QueryExecutionResultRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
 
 @Service
 public class QueryExecutorService {
     
     private static final Logger logger = LoggerFactory.getLogger(QueryExecutorService.class);
     
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
-    
     @Autowired
     private QueryExecutionRepository queryExecutionRepository;
     
     @Autowired
-    private QueryExecutionResultRepository queryExecutionResultRepository;
+    private ClusterTopologyCache clusterTopologyCache;
     
     @Autowired
-    private ClusterRepository clusterRepository;
+    private RdsExecutorService rdsExecutorService;
     
     @Autowired
-    private DatabaseInstanceRepository databaseInstanceRepository;
+    private CsvService csvService;
     
     @Autowired
-    private RdsExecutorService rdsExecutorService;
+    private ParquetService parquetService;
     
     @Autowired
-    private CsvService csvService;
+    private ExecutionTargetStore executionTargetStore;
     
+    @Autowired
+    private CancellationRegistry cancellationRegistry;
     
-    @Async("taskExecutor")
-    public CompletableFuture<Void> executeQueryAsync(QueryExecution queryExecution) {
-        logger.info("Iniciando execução assíncrona para query: {}", queryExecution.getExecutionId());
-        
-        return CompletableFuture.runAsync(() -> {
-            try {
-                executeQuery(queryExecution);
-            } catch (Exception e) {
-                logger.error("Erro na execução da query {}: {}", queryExecution.getExecutionId(), e.getMessage(), e);
-                handleExecutionFailure(queryExecution, e);
-            }
-        }, executorService);
-    }
+    @Autowired
+    private ExecutionPlanService executionPlanService;
+    
+    @Autowired
+    private ExecutionProgressWriter executionProgressWriter;
+    
+    @Autowired
+    private TargetRetryPolicy targetRetryPolicy;
+    
+    @Autowired
+    private DiscoveryScheduler discoveryScheduler;
+    
+    @Autowired
+    private TargetScheduler targetScheduler;
+    
+    @Autowired
+    private ExecutionProgressTracker executionProgressTracker;
     
-    @Transactional
-    public void executeQuery(QueryExecution queryExecution) {
-        logger.info("Executando query: {}", queryExecution.getExecutionId());
+    @Value("${query.execution.streaming.enabled:true}")
+    private boolean streamingEnabled;
+    
+    
+    /**
+     * Inicia a execução reivindicada pela {@link ExecutionQueue}: resolve os bancos alvo
+     * do plano e os grava como unidades de trabalho pendentes, que qualquer nó pode
+     * reivindicar pelo {@link TargetWorker}. A execução é finalizada pelo nó que concluir
+     * o último banco.
+     *
+     * @return true se os bancos foram enfileirados
+     */
+    public boolean startExecution(QueryExecution queryExecution) {
+        logger.info("Iniciando execução: {}", queryExecution.getExecutionId());
         
         try {
-            // Marcar como iniciada
-            queryExecution.markAsStarted();
-            queryExecutionRepository.save(queryExecution);
+            if (wasCancelled(queryExecution.getExecutionId())) {
+                logger.info("Execução {} cancelada antes de iniciar", queryExecution.getExecutionId());
+                return false;
+            }
             
             // Enviar notificação de início
 //            if (slackNotificationService != null) {
@@ -74,291 +90,285 @@ public class QueryExecutorService {
 //            }
             
             // Obter clusters e bancos para execução
-            List<QueryExecutionResult> executionResults = prepareExecutionResults(queryExecution);
+            List<QueryExecutionResult> unavailableResults = new ArrayList<>();
+            List<QueryExecutionResult> executionResults = prepareExecutionResults(queryExecution, unavailableResults);
             
-            if (executionResults.isEmpty()) {
+            if (executionResults.isEmpty() && unavailableResults.isEmpty()) {
                 throw new RuntimeException("Nenhum banco de dados encontrado para execução");
             }
             
-            logger.info("Preparados {} resultados de execução para query {}",
-                    executionResults.size(), queryExecution.getExecutionId());
-            
-            // Executar em cada cluster/banco
-            long totalRows = 0;
-            for (QueryExecutionResult result : executionResults) {
-                try {
-                    logger.debug("Executando no cluster {} - banco {}",
-                            result.getCluster().getAlias(), result.getDatabaseName());
-                    
-                    long startTime = System.currentTimeMillis();
-                    
-                    // Executar query via RDS Executor Service
-                    RdsExecutionResult rdsResult = rdsExecutorService.executeQuery(
-                            result.getCluster(),
-                            result.getDatabaseName(),
-                            queryExecution.getSqlQuery()
-                    );
-                    
-                    long executionTime = System.currentTimeMillis() - startTime;
-                    
-                    // Atualizar resultado
-                    result.setStatus(QueryExecutionStatus.COMPLETED);
-                    result.setRowsAffected(rdsResult.getRowCount());
-                    result.setExecutionTimeMs(executionTime);
-                    
-                    // Salvar dados no CSV via CSV Service
-                    if (rdsResult.getData() != null && !rdsResult.getData().isEmpty()) {
-                        String csvPath = csvService.saveResultToCsv(
-                                queryExecution.getExecutionId(),
-                                result.getCluster().getAlias(),
-                                result.getDatabaseName(),
-                                rdsResult.getData()
-                        );
-                        result.setResultFilePath(csvPath);
-                    }
-                    
-                    totalRows += rdsResult.getRowCount();
-                    queryExecution.incrementCompletedClusters();
-                    
-                    logger.debug("Execução concluída com sucesso: {} linhas processadas em {}ms",
-                            rdsResult.getRowCount(), executionTime);
-                    
-                } catch (Exception e) {
-                    logger.error("Erro na execução no cluster {} - banco {}: {}",
-                            result.getCluster().getAlias(), result.getDatabaseName(), e.getMessage());
-                    
-                    result.setStatus(QueryExecutionStatus.FAILED);
-                    result.setErrorMessage(e.getMessage());
-                    result.setExecutionTimeMs(System.currentTimeMillis() -
-                            (queryExecution.getStartedAt() != null ?
-                                    queryExecution.getStartedAt().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli() :
-                                    System.currentTimeMillis()));
-                    queryExecution.incrementFailedClusters();
-                }
-                
-                // Salvar resultado individual
-                queryExecutionResultRepository.save(result);
-                
-                // Atualizar execução principal
-                queryExecution.setTotalRows(totalRows);
-                queryExecutionRepository.save(queryExecution);
-            }
+            // Bancos mais caros primeiro, intercalando clusters
+            int queued = executionResults.size();
+            executionResults = targetScheduler.schedule(queryExecution, executionResults);
+            executionResults.addAll(unavailableResults);
             
-            // Consolidar resultados finais se houver dados
-            if (totalRows > 0) {
-                try {
-                    String consolidatedCsvPath = csvService.consolidateResults(queryExecution.getExecutionId());
-                    queryExecution.setS3ResultPath(consolidatedCsvPath);
-                } catch (Exception e) {
-                    logger.warn("Erro ao consolidar resultados CSV para {}: {}",
-                            queryExecution.getExecutionId(), e.getMessage());
-                }
+            queryExecution.markAsStarted();
+            if (!executionTargetStore.startExecution(queryExecution, executionResults)) {
+                logger.info("Execução {} cancelada antes de iniciar", queryExecution.getExecutionId());
+                return false;
             }
             
-            // Marcar como concluída
-            queryExecution.markAsCompleted();
-            
-            // Enviar notificação de conclusão
-//            if (slackNotificationService != null) {
-//                slackNotificationService.notifyQueryCompleted(queryExecution);
-//            }
+            logger.info("Execução {} iniciada: {} bancos enfileirados, {} com falha por cluster inativo",
+                    queryExecution.getExecutionId(), queued, unavailableResults.size());
             
-            logger.info("Query {} executada com sucesso: {} linhas, {} clusters concluídos, {} falharam",
-                    queryExecution.getExecutionId(), totalRows,
-                    queryExecution.getCompletedClusters(), queryExecution.getFailedClusters());
+            if (queued == 0) {
+                // Nenhum banco para executar: finaliza agora com as falhas registradas
+                executionTargetStore.tryFinalize(queryExecution.getId());
+                return false;
+            }
+            return true;
             
         } catch (Exception e) {
-            logger.error("Erro geral na execução da query {}: {}", queryExecution.getExecutionId(), e.getMessage(), e);
-            queryExecution.markAsFailed(e.getMessage());
-            
-            // Enviar notificação de falha
-//            if (slackNotificationService != null) {
-//                slackNotificationService.notifyQueryFailed(queryExecution);
-//            }
-            
-            throw e;
+            logger.error("Erro ao iniciar a query {}: {}", queryExecution.getExecutionId(), e.getMessage(), e);
+            handleExecutionFailure(queryExecution, e);
+            return false;
+        }
+    }
+    
+    /**
+     * Executa a query em um banco reivindicado por este nó. O resultado é gravado em lote
+     * pelo {@link ExecutionProgressWriter}.
+     */
+    public void executeTarget(QueryExecution queryExecution, QueryExecutionResult result,
+                              CancellationRegistry.ExecutionHandle cancellation) {
+        if (queryExecution.getRowLimit() == null) {
+            runTarget(queryExecution, result, cancellation, rdsExecutorService.getMaxRows());
+            return;
+        }
+        
+        // Com limite total, o banco executa só com a parte concedida; o que não usar volta para os demais
+        long grantedRows = executionTargetStore.reserveRows(queryExecution.getId(), rdsExecutorService.getMaxRows());
+        try {
+            runTarget(queryExecution, result, cancellation, grantedRows);
         } finally {
-            queryExecutionRepository.save(queryExecution);
+            long usedRows = result.getStatus() == QueryExecutionStatus.COMPLETED && result.getRowsAffected() != null
+                    ? result.getRowsAffected() : 0;
+            executionTargetStore.releaseRows(queryExecution.getId(), grantedRows - usedRows);
         }
     }
     
-    private List<QueryExecutionResult> prepareExecutionResults(QueryExecution queryExecution) {
-        logger.debug("Preparando resultados de execução para query: {}", queryExecution.getExecutionId());
+    private void runTarget(QueryExecution queryExecution, QueryExecutionResult result,
+                           CancellationRegistry.ExecutionHandle cancellation, long rowLimit) {
+        if (cancellation.isAbandoned()) {
+            logLeaseLost(result);
+            return;
+        }
         
-        // Extrair cluster IDs dos metadados
-        String metadata = queryExecution.getMetadata();
-        List<Long> clusterIds = extractClusterIdsFromMetadata(metadata);
+        if (cancellation.isCancelled()) {
+            result.setStatus(QueryExecutionStatus.CANCELLED);
+            executionProgressWriter.recordResult(result);
+            return;
+        }
         
-        // Extrair filtro de databases se especificado
-        List<String> databaseFilter = extractDatabaseFilterFromMetadata(metadata);
+        if (rowLimit <= 0) {
+            // Limite total da execução já distribuído: o banco conclui sem linhas e sem consultar
+            logger.debug("Limite de linhas esgotado, banco {} concluído sem executar", result.getDatabaseName());
+            result.setStatus(QueryExecutionStatus.COMPLETED);
+            result.setRowsAffected(0L);
+            result.setExecutionTimeMs(0L);
+            executionProgressWriter.recordResult(result);
+            return;
+        }
         
-        List<QueryExecutionResult> results = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
         
-        for (Long clusterId : clusterIds) {
-            Cluster cluster = clusterRepository.findById(clusterId)
-                    .orElseThrow(() -> new RuntimeException("Cluster não encontrado: " + clusterId));
-            
-            // Verificar se cluster está ativo
-            if (!Boolean.TRUE.equals(cluster.getConnectionActive())) {
-                logger.warn("Cluster {} está inativo, tentando descobrir bancos novamente", cluster.getAlias());
+        try {
+            logger.debug("Executando no cluster {} - banco {}",
+                    result.getCluster().getAlias(), result.getDatabaseName());
+            
+            RdsExecutionResult rdsResult;
+            ResultWriter writer = openResultWriter(queryExecution, result);
+            if (streamingEnabled) {
+                // Linhas gravadas no arquivo à medida que são lidas do banco
+                rdsResult = rdsExecutorService.executeQuery(
+                        result.getCluster(),
+                        result.getDatabaseName(),
+                        queryExecution.getSqlQuery(),
+                        writer,
+                        cancellation,
+                        rowLimit
+                );
+            } else {
+                // Executar query via RDS Executor Service
+                rdsResult = rdsExecutorService.executeQuery(
+                        result.getCluster(),
+                        result.getDatabaseName(),
+                        queryExecution.getSqlQuery(),
+                        cancellation,
+                        rowLimit
+                );
                 
-                try {
-                    // Tentar descobrir bancos novamente
-                    List<String> discoveredDatabases = discoverDatabasesForCluster(cluster);
-                    if (discoveredDatabases.isEmpty()) {
-                        logger.error("Não foi possível descobrir bancos para o cluster inativo: {}", cluster.getAlias());
-                        continue;
-                    }
-                } catch (Exception e) {
-                    logger.error("Falha ao redescobrir bancos para cluster {}: {}", cluster.getAlias(), e.getMessage());
-                    continue;
+                // Salvar os lotes no formato de saída da execução
+                if (rdsResult.hasData()) {
+                    writeBatches(writer, rdsResult);
                 }
             }
+            result.setResultFilePath(writer.getFilePath());
+            result.setDataOffset(writer.getDataOffset());
             
-            // Obter bancos do cluster
-            List<DatabaseInstance> databases = databaseInstanceRepository.findByClusterId(clusterId);
+            long executionTime = System.currentTimeMillis() - startTime;
             
-            if (databases.isEmpty()) {
-                logger.warn("Nenhum banco encontrado para o cluster: {}", cluster.getAlias());
-                continue;
-            }
+            // Atualizar resultado
+            result.setStatus(QueryExecutionStatus.COMPLETED);
+            result.setRowsAffected(rdsResult.getRowCount());
+            result.setExecutionTimeMs(executionTime);
             
-            // Aplicar filtro de databases se especificado
-            if (databaseFilter != null && !databaseFilter.isEmpty()) {
-                databases = databases.stream()
-                        .filter(db -> databaseFilter.contains(db.getDatabaseName()))
-                        .collect(java.util.stream.Collectors.toList());
-            }
+            logger.debug("Execução concluída com sucesso: {} linhas processadas em {}ms",
+                    rdsResult.getRowCount(), executionTime);
             
-            // Criar resultado para cada banco
-            for (DatabaseInstance database : databases) {
-                // Verificar se banco está acessível
-                if (!Boolean.TRUE.equals(database.getIsAccessible())) {
-                    logger.debug("Pulando banco inacessível: {} no cluster {}",
-                            database.getDatabaseName(), cluster.getAlias());
-                    continue;
-                }
-                
-                QueryExecutionResult result = new QueryExecutionResult(
-                        queryExecution, cluster, database.getDatabaseName()
-                );
-                results.add(result);
-                
-                logger.debug("Adicionado para execução: cluster={}, database={}",
-                        cluster.getAlias(), database.getDatabaseName());
-            }
-        }
-        
-        logger.debug("Preparados {} resultados de execução", results.size());
-        return results;
-    }
-    
-    private List<Long> extractClusterIdsFromMetadata(String metadata) {
-        // Implementação simplificada - em produção usar biblioteca JSON (Jackson/Gson)
-        try {
-            if (metadata == null || metadata.trim().isEmpty()) {
-                throw new RuntimeException("Metadados não encontrados na execução");
-            }
+        } catch (Exception e) {
+            result.setExecutionTimeMs(System.currentTimeMillis() - startTime);
             
-            // Procurar por "clusterIds":[1,2,3]
-            int startIndex = metadata.indexOf("\"clusterIds\":");
-            if (startIndex == -1) {
-                throw new RuntimeException("ClusterIds não encontrados nos metadados");
+            if (cancellation.isAbandoned()) {
+                // O banco pertence agora a outro nó; o arquivo parcial já foi removido
+                logLeaseLost(result);
+                return;
             }
             
-            startIndex = metadata.indexOf("[", startIndex);
-            int endIndex = metadata.indexOf("]", startIndex);
-            
-            if (startIndex == -1 || endIndex == -1) {
-                throw new RuntimeException("Formato inválido de clusterIds nos metadados");
+            if (cancellation.isCancelled()) {
+                // Statement interrompido pelo cancelamento; o arquivo parcial já foi removido
+                logger.info("Execução cancelada no cluster {} - banco {}",
+                        result.getCluster().getAlias(), result.getDatabaseName());
+                result.setStatus(QueryExecutionStatus.CANCELLED);
+                executionProgressWriter.recordResult(result);
+                return;
             }
             
-            String clusterIdsStr = metadata.substring(startIndex + 1, endIndex);
-            
-            if (clusterIdsStr.trim().isEmpty()) {
-                throw new RuntimeException("Nenhum clusterId especificado nos metadados");
+            int attempts = result.getAttempts() != null ? result.getAttempts() : 1;
+            if (targetRetryPolicy.shouldRetry(attempts, e)) {
+                // Falha transitória: o banco volta para a fila e é reivindicado após o backoff
+                result.setStatus(QueryExecutionStatus.PENDING);
+                result.setNextAttemptAt(targetRetryPolicy.nextAttemptAt(attempts));
+                result.setErrorMessage(e.getMessage());
+                logger.warn("Falha transitória no cluster {} - banco {} (tentativa {}), nova tentativa às {}: {}",
+                        result.getCluster().getAlias(), result.getDatabaseName(), attempts,
+                        result.getNextAttemptAt(), e.getMessage());
+                executionProgressWriter.recordResult(result);
+                return;
             }
             
-            return java.util.Arrays.stream(clusterIdsStr.split(","))
-                    .map(String::trim)
-                    .map(Long::parseLong)
-                    .collect(java.util.stream.Collectors.toList());
+            logger.error("Erro na execução no cluster {} - banco {}: {}",
+                    result.getCluster().getAlias(), result.getDatabaseName(), e.getMessage());
             
-        } catch (Exception e) {
-            logger.error("Erro ao extrair cluster IDs dos metadados: {}", e.getMessage());
-            throw new RuntimeException("Erro ao processar metadados da execução: " + e.getMessage(), e);
+            result.setStatus(QueryExecutionStatus.FAILED);
+            result.setErrorMessage(e.getMessage());
+        }
+        
+        if (cancellation.isAbandoned()) {
+            logLeaseLost(result);
+            return;
+        }
+        
+        // Resultado gravado no próximo flush em lote, que também atualiza os contadores da execução
+        executionProgressWriter.recordResult(result);
+    }
+    
+    private void logLeaseLost(QueryExecutionResult result) {
+        logger.warn("Lease perdido no cluster {} - banco {}, resultado local descartado",
+                result.getCluster().getAlias(), result.getDatabaseName());
+    }
+    
+    private ResultWriter openResultWriter(QueryExecution queryExecution, QueryExecutionResult result) {
+        String executionId = queryExecution.getExecutionId();
+        String clusterAlias = result.getCluster().getAlias();
+        
+        if (queryExecution.getOutputFormat() == ResultFormat.PARQUET) {
+            return parquetService.openWriter(executionId, clusterAlias, result.getDatabaseName());
         }
+        return csvService.openRowSink(executionId, clusterAlias, result.getDatabaseName());
     }
     
-    private List<String> extractDatabaseFilterFromMetadata(String metadata) {
+    private void writeBatches(ResultWriter writer, RdsExecutionResult rdsResult) {
         try {
-            if (metadata == null || !metadata.contains("\"databaseFilter\"")) {
-                return null; // Sem filtro, executar em todos os bancos
-            }
-            
-            // Procurar por "databaseFilter":["db1","db2"]
-            int startIndex = metadata.indexOf("\"databaseFilter\":");
-            if (startIndex == -1) {
-                return null;
-            }
-            
-            startIndex = metadata.indexOf("[", startIndex);
-            int endIndex = metadata.indexOf("]", startIndex);
-            
-            if (startIndex == -1 || endIndex == -1) {
-                return null;
-            }
-            
-            String databaseFilterStr = metadata.substring(startIndex + 1, endIndex);
-            
-            if (databaseFilterStr.trim().isEmpty()) {
-                return null;
+            writer.start(rdsResult.getSchema());
+            for (RowBatch batch : rdsResult.getBatches()) {
+                writer.acceptBatch(batch);
             }
-            
-            return java.util.Arrays.stream(databaseFilterStr.split(","))
-                    .map(String::trim)
-                    .map(s -> s.replaceAll("\"", ""))
-                    .collect(java.util.stream.Collectors.toList());
-            
-        } catch (Exception e) {
-            logger.warn("Erro ao extrair filtro de databases dos metadados: {}", e.getMessage());
-            return null; // Em caso de erro, não aplicar filtro
+            writer.finish();
+        } catch (IOException e) {
+            writer.abort();
+            throw new RuntimeException("Falha na gravação do resultado: " + e.getMessage(), e);
         }
     }
     
-    private List<String> discoverDatabasesForCluster(Cluster cluster) {
-        try {
-            // Usar o mesmo serviço que o ClusterService usa
-            List<String> databases = new ArrayList<>();
-            
-            String jdbcUrl = String.format("jdbc:postgresql://%s:%d/postgres", cluster.getHost(), cluster.getPort());
+    // A execução pode ter sido cancelada enquanto aguardava na fila
+    private boolean wasCancelled(String executionId) {
+        return queryExecutionRepository.findByExecutionId(executionId)
+                .map(execution -> execution.getStatus() == QueryExecutionStatus.CANCELLED)
+                .orElse(false);
+    }
+    
+    private List<QueryExecutionResult> prepareExecutionResults(QueryExecution queryExecution,
+                                                               List<QueryExecutionResult> unavailableResults) {
+        logger.debug("Preparando resultados de execução para query: {}", queryExecution.getExecutionId());
+        
+        // Plano resolvido na submissão e gravado nos metadados da execução
+        ExecutionPlan plan = executionPlanService.planFor(queryExecution);
+        
+        Map<Long, Cluster> clusters = new HashMap<>();
+        for (Cluster cluster : clusterTopologyCache.getClusters(plan.getClusterIds())) {
+            clusters.put(cluster.getId(), cluster);
+        }
+        
+        List<ExecutionPlan.Target> targets = new ArrayList<>(plan.getTargets());
+        
+        // Clusters inativos na submissão: usa o catálogo se a descoberta em segundo plano
+        // já os reativou; caso contrário pede uma descoberta antecipada sem esperar por ela
+        // e grava os bancos do cluster como falha, reexecutáveis pelo retry-failed
+        for (Long clusterId : plan.getRediscoverClusterIds()) {
+            Cluster cluster = clusters.get(clusterId);
+            if (cluster == null) {
+                logger.error("Cluster não encontrado: {}", clusterId);
+                continue;
+            }
             
-            try (java.sql.Connection connection = java.sql.DriverManager.getConnection(
-                    jdbcUrl, cluster.getUsername(), cluster.getPassword())) {
+            if (!Boolean.TRUE.equals(cluster.getConnectionActive())) {
+                discoveryScheduler.requestDiscovery(clusterId);
                 
-                String query = "SELECT datname FROM pg_database WHERE datistemplate = false AND datallowconn = true";
+                List<ExecutionPlan.Target> unavailable = executionPlanService.unavailableTargets(plan, cluster);
+                if (unavailable.isEmpty()) {
+                    throw new RuntimeException("Cluster " + cluster.getAlias() +
+                            " inativo e sem bancos conhecidos no catálogo; aguarde a redescoberta e reenvie a query");
+                }
                 
-                try (java.sql.PreparedStatement statement = connection.prepareStatement(query);
-                     java.sql.ResultSet resultSet = statement.executeQuery()) {
-                    
-                    while (resultSet.next()) {
-                        databases.add(resultSet.getString("datname"));
-                    }
+                logger.warn("Cluster {} continua inativo, {} bancos registrados com falha",
+                        cluster.getAlias(), unavailable.size());
+                for (ExecutionPlan.Target target : unavailable) {
+                    QueryExecutionResult result = new QueryExecutionResult(queryExecution, cluster, target.getDatabaseName());
+                    result.setStatus(QueryExecutionStatus.FAILED);
+                    result.setErrorMessage("Cluster " + cluster.getAlias() +
+                            " inativo no início da execução; reexecute com retry-failed após a redescoberta");
+                    unavailableResults.add(result);
                 }
+                continue;
             }
             
-            return databases;
+            targets.addAll(executionPlanService.resolveTargets(plan, cluster));
+        }
+        
+        List<QueryExecutionResult> results = new ArrayList<>(targets.size());
+        for (ExecutionPlan.Target target : targets) {
+            Cluster cluster = clusters.get(target.getClusterId());
+            if (cluster == null) {
+                logger.warn("Cluster {} do plano não existe mais, pulando banco {}",
+                        target.getClusterAlias(), target.getDatabaseName());
+                continue;
+            }
             
-        } catch (Exception e) {
-            logger.error("Erro ao descobrir bancos para cluster {}: {}", cluster.getAlias(), e.getMessage());
-            throw new RuntimeException("Falha na descoberta de bancos: " + e.getMessage(), e);
+            results.add(new QueryExecutionResult(queryExecution, cluster, target.getDatabaseName()));
+            
+            logger.debug("Adicionado para execução: cluster={}, database={}",
+                    cluster.getAlias(), target.getDatabaseName());
         }
+        
+        logger.debug("Preparados {} resultados de execução", results.size());
+        return results;
     }
     
     private void handleExecutionFailure(QueryExecution queryExecution, Exception e) {
         try {
             queryExecution.markAsFailed(e.getMessage());
-            queryExecutionRepository.save(queryExecution);
+            executionProgressWriter.updateStatus(queryExecution);
             
             // Enviar notificação de falha
 //            if (slackNotificationService != null) {
@@ -370,34 +380,61 @@ public class QueryExecutorService {
         }
     }
     
+    /**
+     * Cancela a execução: marca como cancelada e, se estiver rodando neste nó, interrompe
+     * os statements ativos e descarta os bancos ainda não iniciados.
+     *
+     * @return false se a execução já havia finalizado
+     */
     public boolean cancelExecution(String executionId) {
         logger.info("Solicitação de cancelamento para execução: {}", executionId);
         
-        try {
-            QueryExecution queryExecution = queryExecutionRepository.findByExecutionId(executionId)
-                    .orElseThrow(() -> new RuntimeException("Execução não encontrada: " + executionId));
-            
-            if (queryExecution.getStatus() == QueryExecutionStatus.COMPLETED ||
-                    queryExecution.getStatus() == QueryExecutionStatus.FAILED ||
-                    queryExecution.getStatus() == QueryExecutionStatus.CANCELLED) {
-                logger.warn("Tentativa de cancelar execução que já finalizou: {} - Status: {}",
-                        executionId, queryExecution.getStatus());
-                return false;
-            }
-            
-            queryExecution.setStatus(QueryExecutionStatus.CANCELLED);
-            queryExecution.setErrorMessage("Execução cancelada pelo usuário");
-            queryExecution.setCompletedAt(java.time.LocalDateTime.now());
-            
-            queryExecutionRepository.save(queryExecution);
-            
-            logger.info("Execução {} marcada como cancelada", executionId);
-            return true;
-            
-        } catch (Exception e) {
-            logger.error("Erro ao cancelar execução {}: {}", executionId, e.getMessage());
+        QueryExecution queryExecution = queryExecutionRepository.findByExecutionId(executionId)
+                .orElseThrow(() -> new ExecutionNotFoundException("Execução não encontrada: " + executionId));
+        
+        if (queryExecution.getStatus() == QueryExecutionStatus.COMPLETED ||
+                queryExecution.getStatus() == QueryExecutionStatus.FAILED ||
+                queryExecution.getStatus() == QueryExecutionStatus.CANCELLED) {
+            logger.warn("Tentativa de cancelar execução que já finalizou: {} - Status: {}",
+                    executionId, queryExecution.getStatus());
             return false;
         }
+        
+        // Update condicional: a execução pode ter sido finalizada desde a leitura acima
+        if (!executionTargetStore.cancelExecution(queryExecution.getId(), "Execução cancelada pelo usuário")) {
+            logger.warn("Execução {} finalizou antes do cancelamento", executionId);
+            return false;
+        }
+        executionTargetStore.cancelPendingTargets(queryExecution.getId());
+        executionProgressTracker.publish(new ExecutionProgressEventDTO(
+                executionId, ExecutionProgressEventDTO.STATUS, QueryExecutionStatus.CANCELLED.name()));
+        
+        // Os demais nós percebem o cancelamento pelo status no próximo ciclo do TargetWorker
+        boolean runningHere = cancellationRegistry.cancel(executionId);
+        logger.info("Execução {} marcada como cancelada{}", executionId,
+                runningHere ? ", statements em andamento interrompidos" : "");
+        return true;
+    }
+    
+    /**
+     * Reexecuta apenas os bancos com falha de uma execução finalizada, reaproveitando os
+     * arquivos dos bancos concluídos.
+     *
+     * @return false se a execução não está finalizada ou não tem bancos com falha
+     */
+    public boolean retryFailedTargets(String executionId) {
+        QueryExecution queryExecution = queryExecutionRepository.findByExecutionId(executionId)
+                .orElseThrow(() -> new ExecutionNotFoundException("Execução não encontrada: " + executionId));
+        
+        int retried = executionTargetStore.retryFailedTargets(queryExecution.getId());
+        if (retried == 0) {
+            logger.warn("Execução {} sem bancos com falha para reexecutar - Status: {}",
+                    executionId, queryExecution.getStatus());
+            return false;
+        }
+        
+        logger.info("Execução {}: {} bancos com falha reenfileirados", executionId, retried);
+        return true;
     }
     
     public List<QueryExecution> getRunningExecutions() {
@@ -407,27 +444,4 @@ public class QueryExecutorService {
     public List<QueryExecution> getPendingExecutions() {
         return queryExecutionRepository.findByStatus(QueryExecutionStatus.PENDING);
     }
-    
-    public void shutdown() {
-        logger.info("Encerrando QueryExecutorService...");
-        executorService.shutdown();
-        
-        try {
-            if (!executorService.awaitTermination(60, java.util.concurrent.TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
-                logger.warn("Timeout no encerramento do executor, forçando parada");
-            }
-        } catch (InterruptedException e) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-        
-        logger.info("QueryExecutorService encerrado");
-    }
-    
-    // Método para ser chamado no @PreDestroy da aplicação
-    @jakarta.annotation.PreDestroy
-    public void onDestroy() {
-        shutdown();
-    }
-}
\ No newline at end of file
+}
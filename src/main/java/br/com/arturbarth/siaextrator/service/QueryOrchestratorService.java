@@ -1,21 +1,35 @@
 package br.com.arturbarth.siaextrator.service;
 
+import br.com.arturbarth.siaextrator.dto.ExecutionPlan;
+import br.com.arturbarth.siaextrator.dto.KeysetPageDTO;
 import br.com.arturbarth.siaextrator.dto.QueryExecutionRequestDTO;
 import br.com.arturbarth.siaextrator.dto.QueryExecutionResponseDTO;
+import br.com.arturbarth.siaextrator.dto.QueryExecutionResultDTO;
+import br.com.arturbarth.siaextrator.dto.QueryExecutionSummaryDTO;
+import br.com.arturbarth.siaextrator.dto.QueryPreviewDTO;
 import br.com.arturbarth.siaextrator.entity.Cluster;
 import br.com.arturbarth.siaextrator.entity.QueryExecution;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionResult;
 import br.com.arturbarth.siaextrator.entity.QueryExecutionStatus;
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
+import br.com.arturbarth.siaextrator.exceptions.ExecutionNotFoundException;
 import br.com.arturbarth.siaextrator.mapper.QueryExecutionMapper;
-import br.com.arturbarth.siaextrator.repository.ClusterRepository;
-import br.com.arturbarth.siaextrator.repository.DatabaseInstanceRepository;
 import br.com.arturbarth.siaextrator.repository.QueryExecutionRepository;
+import br.com.arturbarth.siaextrator.repository.QueryExecutionResultRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -25,14 +39,14 @@ public class QueryOrchestratorService {
     
     private static final Logger logger = LoggerFactory.getLogger(QueryOrchestratorService.class);
     
-    @Autowired
-    private QueryExecutionRepository queryExecutionRepository;
+    // Posição inicial da listagem por keyset: depois de qualquer created_at real
+    private static final LocalDateTime FIRST_PAGE_CREATED_AT = LocalDateTime.of(9999, 12, 31, 0, 0);
     
     @Autowired
-    private ClusterRepository clusterRepository;
+    private QueryExecutionRepository queryExecutionRepository;
     
     @Autowired
-    private DatabaseInstanceRepository databaseInstanceRepository;
+    private QueryExecutionResultRepository queryExecutionResultRepository;
     
     @Autowired
     private QueryExecutorService queryExecutorService;
@@ -40,38 +54,265 @@ public class QueryOrchestratorService {
     @Autowired
     private QueryExecutionMapper queryExecutionMapper;
     
+    @Autowired
+    private ExecutionPlanService executionPlanService;
+    
+    @Autowired
+    private ExecutionQueue executionQueue;
+    
+    @Autowired
+    private ResultCache resultCache;
+    
+    @Autowired
+    private ClusterTopologyCache clusterTopologyCache;
+    
+    @Autowired
+    private TargetWorker targetWorker;
+    
+    @Autowired
+    private QueryPreviewService queryPreviewService;
+    
+    @Value("${query.execution.page.size:50}")
+    private int defaultPageSize;
+    
+    @Value("${query.execution.page.max.size:500}")
+    private int maxPageSize;
+    
     public QueryExecutionResponseDTO submitQuery(QueryExecutionRequestDTO requestDTO) {
         logger.info("Recebida nova solicitação de execução de query do usuário: {}", requestDTO.getUserId());
         
         // 1. Validar a consulta
-        validateQuery(requestDTO);
+        List<Cluster> clusters = validateQuery(requestDTO);
         
         // 2. Criar registro de execução
         String executionId = generateExecutionId();
         QueryExecution queryExecution = createQueryExecution(requestDTO, executionId);
         
-        // 3. Enriquecer com metadados
-        enrichWithMetadata(queryExecution, requestDTO);
+        // 3. Resolver o plano de execução e gravá-lo nos metadados
+        ExecutionPlan plan = executionPlanService.buildPlan(requestDTO, clusters);
+        queryExecution.setMetadata(executionPlanService.serialize(plan));
+        
+        // 4. Cache de resultados: um acerto conclui a execução sem passar pela fila.
+        //    Com bypassCache a consulta executa de novo, mas o novo resultado passa a ser o cacheado
+        String cacheKey = resultCache.cacheKey(requestDTO.getSqlQuery(), plan);
+        if (cacheKey != null && !Boolean.TRUE.equals(requestDTO.getBypassCache())) {
+            Optional<QueryExecution> cached = resultCache.lookup(cacheKey);
+            Optional<ResultCache.LinkedResult> linked = cached.flatMap(execution -> resultCache.link(execution, executionId));
+            if (linked.isPresent()) {
+                return queryExecutionMapper.toResponseDTO(completeFromCache(queryExecution, cached.get(), linked.get()));
+            }
+        }
+        queryExecution.setCacheKey(cacheKey);
+        queryExecution.setSqlFingerprint(ResultCache.fingerprint(requestDTO.getSqlQuery()));
+        executionQueue.checkAdmission();
         
-        // 4. Salvar no banco
+        // 5. Salvar no banco
         queryExecution = queryExecutionRepository.save(queryExecution);
         
-        // 5. Iniciar execução assíncrona
-        logger.info("Iniciando execução assíncrona para query: {}", executionId);
-        queryExecutorService.executeQueryAsync(queryExecution);
+        // 6. Enfileirar: a execução fica PENDING até um worker reivindicá-la
+        logger.info("Execução {} enfileirada", executionId);
+        executionQueue.wakeUp();
         
         return queryExecutionMapper.toResponseDTO(queryExecution);
     }
     
+    /**
+     * Conclui a execução com o resultado de uma execução anterior idêntica, ligado ao seu
+     * próprio diretório. Não recebe chave de cache própria, para que o TTL conte a partir
+     * da execução original.
+     */
+    private QueryExecution completeFromCache(QueryExecution queryExecution, QueryExecution cached,
+                                             ResultCache.LinkedResult linked) {
+        LocalDateTime now = LocalDateTime.now();
+        queryExecution.setStatus(QueryExecutionStatus.COMPLETED);
+        queryExecution.setCachedFrom(cached.getExecutionId());
+        queryExecution.setTotalClusters(cached.getTotalClusters());
+        queryExecution.setCompletedClusters(cached.getCompletedClusters());
+        queryExecution.setFailedClusters(cached.getFailedClusters());
+        queryExecution.setTotalRows(cached.getTotalRows());
+        queryExecution.setS3ResultPath(linked.getManifestPath());
+        queryExecution.setStartedAt(now);
+        queryExecution.setCompletedAt(now);
+        queryExecution.setExecutionTimeMs(0L);
+        
+        for (QueryExecutionResult cachedResult : cached.getResults()) {
+            QueryExecutionResult result = new QueryExecutionResult(
+                    queryExecution, cachedResult.getCluster(), cachedResult.getDatabaseName());
+            result.setStatus(cachedResult.getStatus());
+            result.setRowsAffected(cachedResult.getRowsAffected());
+            result.setExecutionTimeMs(cachedResult.getExecutionTimeMs());
+            result.setResultFilePath(linked.fileFor(cachedResult.getResultFilePath()));
+            result.setDataOffset(cachedResult.getDataOffset());
+            result.setExecutedAt(cachedResult.getExecutedAt());
+            queryExecution.getResults().add(result);
+        }
+        
+        queryExecution = queryExecutionRepository.save(queryExecution);
+        logger.info("Execução {} atendida pelo cache (resultado da execução {})",
+                queryExecution.getExecutionId(), cached.getExecutionId());
+        return queryExecution;
+    }
+    
+    /**
+     * Valida a consulta e monta o plano de execução sem executá-la (dry run).
+     */
+    public ExecutionPlan planQuery(QueryExecutionRequestDTO requestDTO) {
+        logger.info("Montando plano de execução (dry run) para o usuário: {}", requestDTO.getUserId());
+        
+        List<Cluster> clusters = validateQuery(requestDTO);
+        return executionPlanService.buildPlan(requestDTO, clusters);
+    }
+    
+    /**
+     * Valida a consulta e devolve as primeiras linhas de cada banco alvo, sem criar execução.
+     * Roda fora de transação para não reter uma conexão de metadados durante as consultas.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public QueryPreviewDTO previewQuery(QueryExecutionRequestDTO requestDTO, Integer rows, Double samplePercent) {
+        logger.info("Montando prévia da consulta para o usuário: {}", requestDTO.getUserId());
+        
+        List<Cluster> clusters = validateQuery(requestDTO);
+        ExecutionPlan plan = executionPlanService.buildPlan(requestDTO, clusters);
+        return queryPreviewService.preview(requestDTO.getSqlQuery(), plan, rows, samplePercent);
+    }
+    
     public QueryExecutionResponseDTO getExecutionStatus(String executionId) {
         logger.debug("Consultando status da execução: {}", executionId);
         
         QueryExecution queryExecution = queryExecutionRepository.findByExecutionIdWithResults(executionId)
-                .orElseThrow(() -> new RuntimeException("Execução não encontrada: " + executionId));
+                .orElseThrow(() -> new ExecutionNotFoundException("Execução não encontrada: " + executionId));
         
         return queryExecutionMapper.toResponseDTO(queryExecution);
     }
     
+    /**
+     * Status da execução sem o SQL e sem os resultados por banco, que ficam em {@link #listExecutionResults}.
+     */
+    @Transactional(readOnly = true)
+    public QueryExecutionSummaryDTO getExecutionSummary(String executionId) {
+        logger.debug("Consultando resumo da execução: {}", executionId);
+        
+        return queryExecutionRepository.findSummaryByExecutionId(executionId)
+                .orElseThrow(() -> new ExecutionNotFoundException("Execução não encontrada: " + executionId));
+    }
+    
+    /**
+     * Lista as execuções do usuário da mais recente para a mais antiga, paginando por keyset em
+     * (created_at, id): o custo de cada página não cresce com o número de páginas já lidas.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPageDTO<QueryExecutionSummaryDTO> listUserExecutions(String userId, QueryExecutionStatus status,
+                                                                     String cursor, Integer limit) {
+        logger.debug("Listando execuções do usuário {} (status={}, cursor={})", userId, status, cursor);
+        
+        int pageSize = pageSize(limit);
+        LocalDateTime createdAt = FIRST_PAGE_CREATED_AT;
+        long id = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = decodeCursor(cursor).split("\\|", 2);
+            try {
+                createdAt = LocalDateTime.parse(position[0]);
+                id = Long.parseLong(position[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+        }
+        
+        // Uma linha a mais indica se existe a próxima página
+        Limit fetch = Limit.of(pageSize + 1);
+        List<QueryExecutionSummaryDTO> items = status == null
+                ? queryExecutionRepository.findUserPage(userId, createdAt, id, fetch)
+                : queryExecutionRepository.findUserPageByStatus(userId, status, createdAt, id, fetch);
+        
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            QueryExecutionSummaryDTO last = items.get(pageSize - 1);
+            nextCursor = encodeCursor(last.getCreatedAt() + "|" + last.getId());
+        }
+        return new KeysetPageDTO<>(items, pageSize, nextCursor);
+    }
+    
+    /**
+     * Lista os resultados por banco da execução em ordem de id, paginando por keyset.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPageDTO<QueryExecutionResultDTO> listExecutionResults(String executionId, QueryExecutionStatus status,
+                                                                      String cursor, Integer limit) {
+        logger.debug("Listando resultados da execução {} (status={}, cursor={})", executionId, status, cursor);
+        
+        Long queryExecutionId = getExecutionSummary(executionId).getId();
+        int pageSize = pageSize(limit);
+        long afterId = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                afterId = Long.parseLong(decodeCursor(cursor));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+        }
+        
+        Limit fetch = Limit.of(pageSize + 1);
+        List<QueryExecutionResultDTO> items = status == null
+                ? queryExecutionResultRepository.findResultPage(queryExecutionId, afterId, fetch)
+                : queryExecutionResultRepository.findResultPageByStatus(queryExecutionId, status, afterId, fetch);
+        
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = encodeCursor(String.valueOf(items.get(pageSize - 1).getId()));
+        }
+        return new KeysetPageDTO<>(items, pageSize, nextCursor);
+    }
+    
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("O limite da página deve ser positivo");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+    
+    // O cursor é opaco para o cliente: a posição do último item em base64 (URL-safe)
+    private static String encodeCursor(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
+    
+    /**
+     * Cancela a execução, interrompendo os statements em andamento.
+     *
+     * @return false se a execução já havia finalizado
+     */
+    public boolean cancelExecution(String executionId) {
+        return queryExecutorService.cancelExecution(executionId);
+    }
+    
+    /**
+     * Reexecuta os bancos com falha da execução.
+     *
+     * @return false se a execução não está finalizada ou não tem bancos com falha
+     */
+    public boolean retryFailedTargets(String executionId) {
+        boolean retried = queryExecutorService.retryFailedTargets(executionId);
+        if (retried) {
+            targetWorker.wakeUp();
+        }
+        return retried;
+    }
+    
+    /**
+     * Todas as execuções do usuário, com SQL e resultados. Sem paginação: prefira {@link #listUserExecutions}.
+     */
     public List<QueryExecutionResponseDTO> getUserExecutions(String userId) {
         logger.debug("Consultando execuções do usuário: {}", userId);
         
@@ -81,7 +322,7 @@ public class QueryOrchestratorService {
                 .collect(Collectors.toList());
     }
     
-    private void validateQuery(QueryExecutionRequestDTO requestDTO) {
+    private List<Cluster> validateQuery(QueryExecutionRequestDTO requestDTO) {
         logger.debug("Validando consulta SQL e parâmetros");
         
         // Validação básica do SQL
@@ -102,7 +343,7 @@ public class QueryOrchestratorService {
         
         // Validar clusters
         List<Long> clusterIds = requestDTO.getClusterIds();
-        List<Cluster> clusters = clusterRepository.findAllById(clusterIds);
+        List<Cluster> clusters = clusterTopologyCache.getClusters(clusterIds);
         
         if (clusters.size() != clusterIds.size()) {
             throw new IllegalArgumentException("Um ou mais clusters não foram encontrados");
@@ -119,6 +360,7 @@ public class QueryOrchestratorService {
         }
         
         logger.info("Validação concluída com sucesso para {} clusters", clusters.size());
+        return clusters;
     }
     
     private QueryExecution createQueryExecution(QueryExecutionRequestDTO requestDTO, String executionId) {
@@ -130,36 +372,14 @@ public class QueryOrchestratorService {
         
         queryExecution.setUserEmail(requestDTO.getUserEmail());
         queryExecution.setTotalClusters(requestDTO.getClusterIds().size());
+        queryExecution.setOutputFormat(requestDTO.getOutputFormat() != null
+                ? requestDTO.getOutputFormat() : ResultFormat.CSV);
+        queryExecution.setRowLimit(requestDTO.getMaxRows());
         queryExecution.setStatus(QueryExecutionStatus.PENDING);
         
         return queryExecution;
     }
     
-    private void enrichWithMetadata(QueryExecution queryExecution, QueryExecutionRequestDTO requestDTO) {
-        logger.debug("Enriquecendo execução com metadados");
-        
-        // Criar metadados em formato JSON
-        StringBuilder metadata = new StringBuilder();
-        metadata.append("{");
-        metadata.append("\"clusterIds\":").append(requestDTO.getClusterIds());
-        
-        if (requestDTO.getDatabaseNames() != null && !requestDTO.getDatabaseNames().isEmpty()) {
-            metadata.append(",\"databaseFilter\":").append(requestDTO.getDatabaseNames());
-        }
-        
-        if (requestDTO.getDescription() != null) {
-            metadata.append(",\"description\":\"").append(requestDTO.getDescription()).append("\"");
-        }
-        
-        metadata.append(",\"sqlLength\":").append(requestDTO.getSqlQuery().length());
-        metadata.append(",\"submittedAt\":\"").append(java.time.LocalDateTime.now()).append("\"");
-        metadata.append("}");
-        
-        queryExecution.setMetadata(metadata.toString());
-        
-        logger.debug("Metadados adicionados à execução: {}", queryExecution.getExecutionId());
-    }
-    
     private String generateExecutionId() {
         return "exec_" + UUID.randomUUID().toString().replace("-", "");
     }
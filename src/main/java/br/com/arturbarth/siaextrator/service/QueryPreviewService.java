@@ -0,0 +1,149 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ExecutionPlan;
+import br.com.arturbarth.siaextrator.dto.QueryPreviewDTO;
+import br.com.arturbarth.siaextrator.dto.ResultSchema;
+import br.com.arturbarth.siaextrator.entity.Cluster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prévia síncrona de uma query: poucas linhas de cada banco alvo, sem fila, sem gravar
+ * arquivos e com timeout curto. O LIMIT é aplicado no servidor, então mesmo consultas
+ * sobre tabelas grandes respondem rápido enquanto o plano permitir parar cedo.
+ *
+ * Os bancos rodam pelo {@link TargetDispatcher}, respeitando os mesmos limites de
+ * concorrência das execuções. Apenas os primeiros {@code query.preview.max.databases}
+ * bancos do plano são consultados, e nenhum banco novo é iniciado depois do timeout.
+ */
+@Service
+public class QueryPreviewService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPreviewService.class);
+
+    @Value("${query.preview.rows:10}")
+    private int defaultRows;
+
+    @Value("${query.preview.max.rows:1000}")
+    private int maxRows;
+
+    @Value("${query.preview.max.databases:50}")
+    private int maxDatabases;
+
+    @Value("${query.preview.timeout.seconds:5}")
+    private int timeoutSeconds;
+
+    @Autowired
+    private RdsExecutorService rdsExecutorService;
+
+    @Autowired
+    private TargetDispatcher targetDispatcher;
+
+    @Autowired
+    private ClusterTopologyCache clusterTopologyCache;
+
+    public QueryPreviewDTO preview(String sqlQuery, ExecutionPlan plan, Integer rows, Double samplePercent) {
+        int rowsPerDatabase = rows != null ? rows : defaultRows;
+        if (rowsPerDatabase <= 0 || rowsPerDatabase > maxRows) {
+            throw new IllegalArgumentException("Linhas por banco na prévia devem estar entre 1 e " + maxRows);
+        }
+        if (samplePercent != null && (samplePercent <= 0 || samplePercent > 100)) {
+            throw new IllegalArgumentException("Porcentagem de amostragem deve estar entre 0 e 100");
+        }
+
+        long startTime = System.currentTimeMillis();
+        long deadline = startTime + timeoutSeconds * 1000L;
+
+        List<ExecutionPlan.Target> targets = plan.getTargets().subList(0, Math.min(plan.getTargets().size(), maxDatabases));
+        QueryPreviewDTO.DatabasePreview[] previews = new QueryPreviewDTO.DatabasePreview[targets.size()];
+
+        List<Integer> indexes = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            indexes.add(i);
+        }
+
+        int notStarted;
+        try {
+            // Com prazo também na espera por permissão, para não aguardar extrações longas ocupando o dispatcher
+            notStarted = targetDispatcher.dispatchAllUntil(indexes,
+                    index -> targets.get(index).getClusterId(),
+                    index -> previews[index] = previewDatabase(sqlQuery, targets.get(index), rowsPerDatabase, samplePercent),
+                    deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Prévia interrompida", e);
+        }
+
+        QueryPreviewDTO preview = new QueryPreviewDTO();
+        preview.setRowsPerDatabase(rowsPerDatabase);
+        preview.setSamplePercent(samplePercent);
+        preview.setTotalDatabases(plan.getTargets().size());
+        preview.setDatabasesSkipped(plan.getTargets().size() - targets.size() + notStarted);
+        Arrays.stream(previews).filter(database -> database != null).forEach(preview.getDatabases()::add);
+        preview.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+
+        logger.info("Prévia concluída: {} bancos consultados, {} ignorados, em {}ms",
+                preview.getDatabases().size(), preview.getDatabasesSkipped(), preview.getExecutionTimeMs());
+        return preview;
+    }
+
+    private QueryPreviewDTO.DatabasePreview previewDatabase(String sqlQuery, ExecutionPlan.Target target,
+                                                            int rows, Double samplePercent) {
+        QueryPreviewDTO.DatabasePreview preview =
+                new QueryPreviewDTO.DatabasePreview(target.getClusterAlias(), target.getDatabaseName());
+        long startTime = System.currentTimeMillis();
+
+        try {
+            Cluster cluster = clusterTopologyCache.getCluster(target.getClusterId());
+            if (cluster == null) {
+                throw new IllegalStateException("Cluster não encontrado: " + target.getClusterId());
+            }
+
+            PreviewRowSink sink = new PreviewRowSink(preview);
+            rdsExecutorService.executePreview(cluster, target.getDatabaseName(), sqlQuery, sink,
+                    rows, samplePercent, timeoutSeconds);
+        } catch (Exception e) {
+            logger.debug("Erro na prévia do cluster {} - banco {}: {}",
+                    target.getClusterAlias(), target.getDatabaseName(), e.getMessage());
+            preview.setRows(new ArrayList<>());
+            preview.setErrorMessage(e.getMessage());
+        }
+
+        preview.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        return preview;
+    }
+
+    // Copia cada linha para a prévia, pois o array recebido é reutilizado pelo executor
+    private static class PreviewRowSink implements RowSink {
+        private final QueryPreviewDTO.DatabasePreview preview;
+
+        private PreviewRowSink(QueryPreviewDTO.DatabasePreview preview) {
+            this.preview = preview;
+        }
+
+        @Override
+        public void start(ResultSchema schema) {
+            preview.setColumns(schema.getColumnNames());
+        }
+
+        @Override
+        public void accept(Object[] values) {
+            preview.getRows().add(Arrays.asList(values.clone()));
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void abort() {
+        }
+    }
+}
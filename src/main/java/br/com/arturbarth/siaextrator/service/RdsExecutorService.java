@@ -1,49 +1,136 @@
 package br.com.arturbarth.siaextrator.service;
 
 import br.com.arturbarth.siaextrator.dto.RdsExecutionResult;
+import br.com.arturbarth.siaextrator.dto.ResultSchema;
+import br.com.arturbarth.siaextrator.dto.RowBatch;
 import br.com.arturbarth.siaextrator.entity.Cluster;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Service
 public class RdsExecutorService {
     
     private static final Logger logger = LoggerFactory.getLogger(RdsExecutorService.class);
     
+    // SQLState do PostgreSQL para query cancelada (query_canceled)
+    private static final String QUERY_CANCELED_SQL_STATE = "57014";
+    
     @Value("${query.execution.timeout.seconds:300}")
     private int queryTimeoutSeconds;
     
     @Value("${query.execution.max.rows:1000000}")
     private long maxRows;
     
+    @Value("${query.execution.fetch.size:5000}")
+    private int fetchSize;
+    
+    // Envolve a query em um SELECT com LIMIT para que o servidor pare de produzir linhas no limite
+    @Value("${query.execution.limit.pushdown:true}")
+    private boolean limitPushdown;
+    
     @Value("${database.connection.timeout:30}")
     private int connectionTimeoutSeconds;
     
-    public RdsExecutionResult executeQuery(Cluster cluster, String databaseName, String sqlQuery) {
+    @Autowired
+    private ConnectionPoolRegistry connectionPoolRegistry;
+    
+    @Autowired
+    private ExtractionMetrics extractionMetrics;
+    
+    public long getMaxRows() {
+        return maxRows;
+    }
+    
+    public int getQueryTimeoutSeconds() {
+        return queryTimeoutSeconds;
+    }
+    
+    /**
+     * Executa a query acumulando em memória no máximo {@code rowLimit} linhas.
+     * Para resultados grandes, prefira a versão com {@link RowSink}.
+     */
+    public RdsExecutionResult executeQuery(Cluster cluster, String databaseName, String sqlQuery,
+                                           CancellationRegistry.ExecutionHandle cancellation, long rowLimit) {
+        BatchingRowSink collector = new BatchingRowSink();
+        RdsExecutionResult result = executeQuery(cluster, databaseName, sqlQuery, collector, cancellation, rowLimit);
+        result.setBatches(collector.getBatches());
+        return result;
+    }
+    
+    /**
+     * Executa a query em modo streaming: as linhas são lidas por cursor (fetch size com
+     * autocommit desligado) e entregues uma a uma ao sink, sem acumular em memória. O
+     * statement fica registrado na execução, para que um cancelamento interrompa o fetch.
+     *
+     * No máximo {@code rowLimit} linhas são lidas (limitado também por
+     * {@code query.execution.max.rows}). O limite é aplicado no servidor: a query é
+     * envolvida em um SELECT com LIMIT e o statement recebe o mesmo máximo.
+     */
+    public RdsExecutionResult executeQuery(Cluster cluster, String databaseName, String sqlQuery, RowSink sink,
+                                           CancellationRegistry.ExecutionHandle cancellation, long rowLimit) {
+        long limit = Math.min(rowLimit, maxRows);
+        String statementSql = limitPushdown ? limitedSql(sqlQuery, limit, null) : sqlQuery;
+        return execute(cluster, databaseName, statementSql, sink, cancellation, limit, queryTimeoutSeconds);
+    }
+    
+    /**
+     * Prévia da query: as primeiras {@code rows} linhas do banco ou, com
+     * {@code samplePercent}, uma amostra aleatória dessa porcentagem das linhas do
+     * resultado, até {@code rows}. Usa o timeout informado em vez do da execução.
+     */
+    public RdsExecutionResult executePreview(Cluster cluster, String databaseName, String sqlQuery, RowSink sink,
+                                             int rows, Double samplePercent, int timeoutSeconds) {
+        return execute(cluster, databaseName, limitedSql(sqlQuery, rows, samplePercent), sink, null, rows, timeoutSeconds);
+    }
+    
+    private RdsExecutionResult execute(Cluster cluster, String databaseName, String statementSql, RowSink sink,
+                                       CancellationRegistry.ExecutionHandle cancellation, long rowLimit,
+                                       int timeoutSeconds) {
         logger.info("Executando query no cluster {} - banco {}", cluster.getAlias(), databaseName);
         
         long startTime = System.currentTimeMillis();
-        String jdbcUrl = buildJdbcUrl(cluster, databaseName);
+        ExtractionMetrics.ClusterMeters meters = extractionMetrics.forCluster(cluster.getAlias());
+        meters.queryStarted();
         
-        try (Connection connection = createConnection(jdbcUrl, cluster.getUsername(), cluster.getPassword())) {
+        try (Connection connection = connectionPoolRegistry.getConnection(cluster, databaseName)) {
             
-            try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+            try (PreparedStatement statement = connection.prepareStatement(statementSql)) {
+                
+                if (cancellation != null) {
+                    cancellation.track(statement);
+                    checkNotCancelled(cancellation);
+                }
                 
                 // Configurar timeout da query
-                statement.setQueryTimeout(queryTimeoutSeconds);
+                statement.setQueryTimeout(timeoutSeconds);
+                
+                // Com autocommit desligado o driver usa cursor e busca as linhas em lotes
+                statement.setFetchSize(fetchSize);
+                
+                // O driver repassa o máximo ao servidor em cada fetch do cursor. O PostgreSQL JDBC
+                // não implementa setLargeMaxRows; acima de Integer.MAX_VALUE vale só o LIMIT
+                if (rowLimit > 0 && rowLimit <= Integer.MAX_VALUE) {
+                    statement.setMaxRows((int) rowLimit);
+                }
                 
+                long queryStart = System.nanoTime();
                 try (ResultSet resultSet = statement.executeQuery()) {
+                    long fetchStart = System.nanoTime();
+                    meters.recordQueryLatency(fetchStart - queryStart);
                     
                     // Processar resultados
-                    RdsExecutionResult result = processResultSet(resultSet);
+                    RdsExecutionResult result = processResultSet(resultSet, sink, cancellation, rowLimit, meters);
+                    sink.finish();
+                    meters.recordFetchDuration(System.nanoTime() - fetchStart);
+                    meters.recordSuccess();
                     
                     long executionTime = System.currentTimeMillis() - startTime;
                     result.setExecutionTimeMs(executionTime);
@@ -52,122 +139,185 @@ public class RdsExecutorService {
                             result.getRowCount(), executionTime);
                     
                     return result;
+                } finally {
+                    if (cancellation != null) {
+                        cancellation.untrack(statement);
+                    }
                 }
             }
             
         } catch (SQLException e) {
-            long executionTime = System.currentTimeMillis() - startTime;
+            sink.abort();
+            meters.recordFailure(e.getSQLState());
             logger.error("Erro na execução da query no cluster {} - banco {}: {}",
                     cluster.getAlias(), databaseName, e.getMessage());
             
             throw new RuntimeException("Falha na execução da query: " + e.getMessage(), e);
+        } catch (IOException e) {
+            sink.abort();
+            logger.error("Erro na gravação do resultado do cluster {} - banco {}: {}",
+                    cluster.getAlias(), databaseName, e.getMessage());
+            
+            throw new RuntimeException("Falha na gravação do resultado: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            sink.abort();
+            throw e;
+        } finally {
+            meters.queryFinished();
         }
     }
     
-    private Connection createConnection(String jdbcUrl, String username, String password) throws SQLException {
-        logger.debug("Criando conexão: {}", jdbcUrl);
-        
-        Connection connection = DriverManager.getConnection(jdbcUrl, username, password);
-        
-        // Configurar conexão
-        connection.setReadOnly(true);
-        connection.setAutoCommit(false);
-        connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
-        
-        // Configurar timeout da conexão
-        if (connection.isValid(connectionTimeoutSeconds)) {
-            logger.debug("Conexão estabelecida com sucesso");
-        } else {
-            connection.close();
-            throw new SQLException("Conexão inválida após " + connectionTimeoutSeconds + " segundos");
-        }
-        
-        return connection;
-    }
-    
-    private RdsExecutionResult processResultSet(ResultSet resultSet) throws SQLException {
+    // Visível no pacote para os benchmarks do módulo benchmarks
+    RdsExecutionResult processResultSet(ResultSet resultSet, RowSink sink,
+                                        CancellationRegistry.ExecutionHandle cancellation, long rowLimit,
+                                        ExtractionMetrics.ClusterMeters meters)
+            throws SQLException, IOException {
         logger.debug("Processando ResultSet");
         
-        List<Map<String, Object>> data = new ArrayList<>();
         List<String> columnNames = new ArrayList<>();
         
         // Obter metadados das colunas
         ResultSetMetaData metaData = resultSet.getMetaData();
         int columnCount = metaData.getColumnCount();
+        int[] columnTypes = new int[columnCount];
+        int[] precisions = new int[columnCount];
+        int[] scales = new int[columnCount];
         
-        // Extrair nomes das colunas
+        // Extrair nomes, tipos e precisão das colunas
         for (int i = 1; i <= columnCount; i++) {
             columnNames.add(metaData.getColumnName(i));
+            columnTypes[i - 1] = metaData.getColumnType(i);
+            precisions[i - 1] = metaData.getPrecision(i);
+            scales[i - 1] = metaData.getScale(i);
         }
         
+        ResultSchema schema = new ResultSchema(columnNames, columnTypes, precisions, scales);
         logger.debug("Colunas encontradas: {}", columnNames);
+        sink.start(schema);
         
-        // Processar linhas
+        // Processar linhas; o array é reutilizado entre as linhas
+        Object[] values = new Object[columnCount];
         long rowCount = 0;
+        // Vazão publicada a cada 10k linhas, para que leituras longas não apareçam de uma vez só
+        long pendingRows = 0;
+        long pendingBytes = 0;
         while (resultSet.next()) {
-            Map<String, Object> row = new HashMap<>();
+            // Entre um fetch e outro o backend está ocioso e o cancel request não tem efeito
+            if (cancellation != null) {
+                checkNotCancelled(cancellation);
+            }
             
             for (int i = 1; i <= columnCount; i++) {
-                String columnName = columnNames.get(i - 1);
-                Object value = getColumnValue(resultSet, i, metaData.getColumnType(i));
-                row.put(columnName, value);
+                Object value = getColumnValue(resultSet, i, columnTypes[i - 1]);
+                values[i - 1] = value;
+                pendingBytes += ExtractionMetrics.estimateSize(value);
             }
             
-            data.add(row);
+            sink.accept(values);
             rowCount++;
+            pendingRows++;
             
-            // Limite de segurança para evitar OutOfMemory
-            if (rowCount >= maxRows) {
-                logger.warn("Limite de {} linhas atingido, interrompendo processamento", maxRows);
+            // Salvaguarda caso o servidor não tenha aplicado o limite
+            if (rowCount >= rowLimit) {
+                logger.info("Limite de {} linhas atingido, interrompendo processamento", rowLimit);
                 break;
             }
             
             // Log de progresso a cada 10k linhas
             if (rowCount % 10000 == 0) {
                 logger.debug("Processadas {} linhas...", rowCount);
+                meters.recordFetched(pendingRows, pendingBytes);
+                pendingRows = 0;
+                pendingBytes = 0;
             }
         }
+        meters.recordFetched(pendingRows, pendingBytes);
         
         logger.debug("ResultSet processado: {} linhas, {} colunas", rowCount, columnCount);
         
-        return new RdsExecutionResult(data, columnNames, rowCount);
+        return new RdsExecutionResult(schema, rowCount);
     }
     
-    private Object getColumnValue(ResultSet resultSet, int columnIndex, int columnType) throws SQLException {
-        Object value = resultSet.getObject(columnIndex);
-        
-        if (value == null) {
-            return null;
+    /**
+     * Envolve a query em um SELECT externo com LIMIT e, opcionalmente, um filtro de
+     * amostragem. O planner do PostgreSQL incorpora a subquery e leva o LIMIT para o
+     * plano, parando a execução assim que o limite é atingido. A query original fica em
+     * linhas próprias para que um comentário de linha no final não anule o restante.
+     */
+    static String limitedSql(String sqlQuery, long limit, Double samplePercent) {
+        String sql = sqlQuery.strip();
+        while (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1).strip();
         }
         
-        // Tratamento específico para tipos de dados PostgreSQL
+        StringBuilder limited = new StringBuilder(sql.length() + 96)
+                .append("SELECT * FROM (\n").append(sql).append("\n) AS limited_query");
+        if (samplePercent != null) {
+            limited.append(" WHERE random() < ").append(samplePercent / 100.0);
+        }
+        return limited.append(" LIMIT ").append(limit).toString();
+    }
+    
+    private void checkNotCancelled(CancellationRegistry.ExecutionHandle cancellation) throws SQLException {
+        if (cancellation.isCancelled()) {
+            throw new SQLException("Execução cancelada", QUERY_CANCELED_SQL_STATE);
+        }
+    }
+    
+    private Object getColumnValue(ResultSet resultSet, int columnIndex, int columnType) throws SQLException {
+        // Tratamento específico para tipos de dados PostgreSQL; cada valor é lido uma única vez.
+        // Os valores mantêm o tipo Java (a formatação fica a cargo de cada ResultWriter)
         switch (columnType) {
             case Types.TIMESTAMP:
             case Types.TIMESTAMP_WITH_TIMEZONE:
                 Timestamp timestamp = resultSet.getTimestamp(columnIndex);
-                return timestamp != null ? timestamp.toLocalDateTime().toString() : null;
+                return timestamp != null ? timestamp.toLocalDateTime() : null;
             
             case Types.DATE:
                 Date date = resultSet.getDate(columnIndex);
-                return date != null ? date.toLocalDate().toString() : null;
+                return date != null ? date.toLocalDate() : null;
             
             case Types.TIME:
             case Types.TIME_WITH_TIMEZONE:
                 Time time = resultSet.getTime(columnIndex);
-                return time != null ? time.toLocalTime().toString() : null;
+                return time != null ? time.toLocalTime() : null;
             
             case Types.DECIMAL:
             case Types.NUMERIC:
                 return resultSet.getBigDecimal(columnIndex);
             
             case Types.BOOLEAN:
-                return resultSet.getBoolean(columnIndex);
+                boolean booleanValue = resultSet.getBoolean(columnIndex);
+                return resultSet.wasNull() ? null : booleanValue;
+            
+            case Types.BIT:
+                // No PostgreSQL, boolean é reportado como BIT; bit(n) chega como texto
+                Object bit = resultSet.getObject(columnIndex);
+                return bit == null || bit instanceof Boolean ? bit : bit.toString();
+            
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                int intValue = resultSet.getInt(columnIndex);
+                return resultSet.wasNull() ? null : intValue;
+            
+            case Types.BIGINT:
+                long longValue = resultSet.getLong(columnIndex);
+                return resultSet.wasNull() ? null : longValue;
+            
+            case Types.REAL:
+                float floatValue = resultSet.getFloat(columnIndex);
+                return resultSet.wasNull() ? null : floatValue;
+            
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                double doubleValue = resultSet.getDouble(columnIndex);
+                return resultSet.wasNull() ? null : doubleValue;
             
             case Types.BINARY:
             case Types.VARBINARY:
             case Types.LONGVARBINARY:
-                byte[] bytes = resultSet.getBytes(columnIndex);
-                return bytes != null ? java.util.Base64.getEncoder().encodeToString(bytes) : null;
+                return resultSet.getBytes(columnIndex);
             
             case Types.CLOB:
                 Clob clob = resultSet.getClob(columnIndex);
@@ -184,8 +334,7 @@ public class RdsExecutorService {
                 Blob blob = resultSet.getBlob(columnIndex);
                 if (blob != null) {
                     try {
-                        byte[] blobBytes = blob.getBytes(1, (int) blob.length());
-                        return java.util.Base64.getEncoder().encodeToString(blobBytes);
+                        return blob.getBytes(1, (int) blob.length());
                     } finally {
                         blob.free();
                     }
@@ -206,28 +355,17 @@ public class RdsExecutorService {
             
             default:
                 // Para outros tipos, converter para string
-                return value.toString();
+                Object value = resultSet.getObject(columnIndex);
+                return value != null ? value.toString() : null;
         }
     }
     
-    private String buildJdbcUrl(Cluster cluster, String databaseName) {
-        return String.format("jdbc:postgresql://%s:%d/%s?connectTimeout=%d&socketTimeout=%d&loginTimeout=%d",
-                cluster.getHost(),
-                cluster.getPort(),
-                databaseName,
-                connectionTimeoutSeconds,
-                queryTimeoutSeconds,
-                connectionTimeoutSeconds);
-    }
-    
     public boolean testConnection(Cluster cluster, String databaseName) {
-        String jdbcUrl = buildJdbcUrl(cluster, databaseName);
-        
-        logger.debug("Testando conexão: {}", jdbcUrl);
+        logger.debug("Testando conexão: cluster {} - banco {}", cluster.getAlias(), databaseName);
         
-        try (Connection connection = DriverManager.getConnection(jdbcUrl, cluster.getUsername(), cluster.getPassword())) {
+        try (Connection connection = connectionPoolRegistry.getConnection(cluster, databaseName)) {
             boolean isValid = connection.isValid(connectionTimeoutSeconds);
-            logger.debug("Teste de conexão {}: {}", jdbcUrl, isValid ? "SUCESSO" : "FALHA");
+            logger.debug("Teste de conexão {} - {}: {}", cluster.getAlias(), databaseName, isValid ? "SUCESSO" : "FALHA");
             return isValid;
             
         } catch (SQLException e) {
@@ -237,56 +375,10 @@ public class RdsExecutorService {
         }
     }
     
-    public List<String> discoverDatabases(Cluster cluster) {
-        logger.info("Descobrindo bancos no cluster: {}", cluster.getAlias());
-        
-        List<String> databases = new ArrayList<>();
-        String jdbcUrl = buildJdbcUrl(cluster, "postgres"); // Conectar no banco padrão
-        
-        try (Connection connection = createConnection(jdbcUrl, cluster.getUsername(), cluster.getPassword())) {
-            
-            String query = """
-                SELECT datname,
-                       pg_database_size(datname) as size_bytes,
-                       datcollate,
-                       datctype,
-                       datallowconn
-                FROM pg_database
-                WHERE datistemplate = false
-                  AND datallowconn = true
-                ORDER BY datname
-                """;
-            
-            try (PreparedStatement statement = connection.prepareStatement(query);
-                 ResultSet resultSet = statement.executeQuery()) {
-                
-                while (resultSet.next()) {
-                    String databaseName = resultSet.getString("datname");
-                    long sizeBytes = resultSet.getLong("size_bytes");
-                    boolean allowConn = resultSet.getBoolean("datallowconn");
-                    
-                    if (allowConn) {
-                        databases.add(databaseName);
-                        logger.debug("Banco encontrado: {} ({})", databaseName, formatBytes(sizeBytes));
-                    }
-                }
-            }
-            
-        } catch (SQLException e) {
-            logger.error("Erro ao descobrir bancos no cluster {}: {}", cluster.getAlias(), e.getMessage());
-            throw new RuntimeException("Falha na descoberta de bancos: " + e.getMessage(), e);
-        }
-        
-        logger.info("Descoberta concluída para {}: {} bancos encontrados", cluster.getAlias(), databases.size());
-        return databases;
-    }
-    
     public DatabaseInfo getDatabaseInfo(Cluster cluster, String databaseName) {
         logger.debug("Obtendo informações do banco {} no cluster {}", databaseName, cluster.getAlias());
         
-        String jdbcUrl = buildJdbcUrl(cluster, databaseName);
-        
-        try (Connection connection = createConnection(jdbcUrl, cluster.getUsername(), cluster.getPassword())) {
+        try (Connection connection = connectionPoolRegistry.getConnection(cluster, databaseName)) {
             
             String query = """
                 SELECT
@@ -328,11 +420,38 @@ public class RdsExecutorService {
         return null;
     }
     
-    private String formatBytes(long bytes) {
-        if (bytes < 1024) return bytes + " B";
-        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
-        if (bytes < 1024 * 1024 * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024));
-        return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+    // Sink que acumula as linhas em lotes na memória (modo não-streaming)
+    private static class BatchingRowSink implements RowSink {
+        private final List<RowBatch> batches = new ArrayList<>();
+        private ResultSchema schema;
+        private RowBatch current;
+        
+        @Override
+        public void start(ResultSchema schema) {
+            this.schema = schema;
+        }
+        
+        @Override
+        public void accept(Object[] values) {
+            if (current == null || current.isFull()) {
+                current = new RowBatch(schema);
+                batches.add(current);
+            }
+            current.add(values);
+        }
+        
+        @Override
+        public void finish() {
+        }
+        
+        @Override
+        public void abort() {
+            batches.clear();
+        }
+        
+        public List<RowBatch> getBatches() {
+            return batches;
+        }
     }
     
     // Classe interna para informações de banco
@@ -0,0 +1,408 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ExecutionPlan;
+import br.com.arturbarth.siaextrator.entity.QueryExecution;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionResult;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionStatus;
+import br.com.arturbarth.siaextrator.repository.QueryExecutionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cache de resultados para extrações repetidas.
+ *
+ * A chave combina o SQL normalizado, o conjunto de bancos alvo (cluster, banco), o
+ * formato de saída e o limite total de linhas, se houver. Um acerto é a execução
+ * concluída sem falhas mais recente com a mesma chave, dentro do TTL, cujo resultado
+ * ainda existe no armazenamento. A execução atendida pelo cache recebe o seu próprio
+ * diretório, com hard links para os arquivos da original e um manifesto próprio.
+ *
+ * O armazenamento em {@code app.csv.storage.path} é limitado por tamanho: quando excede
+ * o limite, os diretórios de execução usados há mais tempo são removidos (LRU pela data
+ * de modificação do manifesto, atualizada a cada acerto). Execuções pendentes ou em
+ * andamento, inclusive as reabertas pelo retry-failed, nunca são removidas.
+ */
+@Component
+public class ResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultCache.class);
+
+    private static final Set<QueryExecutionStatus> LIVE_STATUSES =
+            EnumSet.of(QueryExecutionStatus.PENDING, QueryExecutionStatus.RUNNING);
+
+    @Value("${app.result.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.result.cache.ttl.minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${app.result.cache.max.size.mb:10240}")
+    private long maxSizeMb;
+
+    @Value("${app.result.cache.eviction.interval.minutes:10}")
+    private long evictionIntervalMinutes;
+
+    @Value("${app.csv.storage.path:/tmp/query-results}")
+    private String storagePath;
+
+    @Autowired
+    private QueryExecutionRepository queryExecutionRepository;
+
+    @Autowired
+    private ResultManifest resultManifest;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled || maxSizeMb <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "result-cache-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::evictQuietly, evictionIntervalMinutes, evictionIntervalMinutes, TimeUnit.MINUTES);
+
+        logger.info("ResultCache iniciado: TTL de {} min, limite de {} MB", ttlMinutes, maxSizeMb);
+    }
+
+    /**
+     * Chave de cache da consulta, ou null quando o resultado não é cacheável (cache
+     * desabilitado ou bancos alvo de algum cluster só conhecidos após redescoberta).
+     */
+    public String cacheKey(String sqlQuery, ExecutionPlan plan) {
+        if (!enabled || !plan.getRediscoverClusterIds().isEmpty() || plan.getTargets().isEmpty()) {
+            return null;
+        }
+
+        List<String> targets = new ArrayList<>(plan.getTargets().size());
+        for (ExecutionPlan.Target target : plan.getTargets()) {
+            targets.add(target.getClusterId() + "/" + target.getDatabaseName());
+        }
+        targets.sort(Comparator.naturalOrder());
+
+        String rowBudget = plan.getRowBudget() != null ? "\nlimit=" + plan.getRowBudget() : "";
+        return sha256(normalizeSql(sqlQuery) + "\n" + plan.getOutputFormat() + rowBudget + "\n" + String.join("\n", targets));
+    }
+
+    /**
+     * Hash do SQL normalizado, independente dos bancos alvo e do formato; identifica
+     * execuções anteriores da mesma consulta.
+     */
+    public static String fingerprint(String sqlQuery) {
+        return sha256(normalizeSql(sqlQuery));
+    }
+
+    private static String sha256(String material) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(material.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Falha ao calcular hash da consulta: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Execução que pode atender a chave, marcando o resultado como usado agora.
+     */
+    public Optional<QueryExecution> lookup(String cacheKey) {
+        if (cacheKey == null) {
+            return Optional.empty();
+        }
+
+        LocalDateTime freshSince = LocalDateTime.now().minusMinutes(ttlMinutes);
+        Optional<QueryExecution> cached = queryExecutionRepository
+                .findFirstByCacheKeyAndStatusAndFailedClustersAndCompletedAtGreaterThanEqualOrderByCompletedAtDesc(
+                        cacheKey, QueryExecutionStatus.COMPLETED, 0, freshSince);
+
+        return cached.filter(this::artifactAvailable);
+    }
+
+    private boolean artifactAvailable(QueryExecution execution) {
+        if (execution.getS3ResultPath() == null) {
+            // Sem linhas não há arquivo; com linhas, o resultado foi removido
+            return execution.getTotalRows() == null || execution.getTotalRows() == 0;
+        }
+
+        Path artifact = Paths.get(execution.getS3ResultPath());
+        if (!Files.isRegularFile(artifact)) {
+            logger.debug("Resultado em cache da execução {} não existe mais", execution.getExecutionId());
+            return false;
+        }
+
+        try {
+            Files.setLastModifiedTime(artifact, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.warn("Erro ao atualizar uso do resultado {}: {}", artifact, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Dá à execução atendida pelo cache o seu próprio diretório, com hard links para os
+     * arquivos da execução original e um manifesto próprio. Remover o diretório original
+     * não afeta a execução derivada, e cada uma sai do cache pelo próprio uso.
+     *
+     * @return o resultado ligado, ou empty se algum arquivo não pôde ser ligado (removido
+     * nesse meio tempo ou armazenamento sem hard links); nesse caso a consulta executa
+     */
+    public Optional<LinkedResult> link(QueryExecution cached, String executionId) {
+        Path directory = Paths.get(storagePath, executionId);
+        Map<String, String> files = new HashMap<>();
+        List<ResultManifest.Entry> entries = new ArrayList<>();
+
+        try {
+            Files.createDirectories(directory);
+            for (QueryExecutionResult result : cached.getResults()) {
+                String original = result.getResultFilePath();
+                if (original == null || files.containsKey(original)) {
+                    continue;
+                }
+
+                Path source = Paths.get(original);
+                Path link = Files.createLink(directory.resolve(source.getFileName()), source);
+                files.put(original, link.toString());
+
+                // Mesmos arquivos que a finalização lista no manifesto
+                if (result.getStatus() == QueryExecutionStatus.COMPLETED) {
+                    entries.add(new ResultManifest.Entry(link, result.getDataOffset() != null ? result.getDataOffset() : 0L));
+                }
+            }
+
+            String manifest = cached.getS3ResultPath() != null ? resultManifest.write(executionId, entries) : null;
+            return Optional.of(new LinkedResult(manifest, files));
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("Não foi possível ligar o resultado da execução {} à execução {}: {}",
+                    cached.getExecutionId(), executionId, e.getMessage());
+            try {
+                deleteRecursively(directory);
+            } catch (IOException deleteException) {
+                logger.warn("Erro ao remover diretório {}: {}", directory, deleteException.getMessage());
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Remove os diretórios de execução usados há mais tempo até o armazenamento ficar
+     * dentro do limite. Diretórios sem manifesto (execuções sem linhas ou ainda não
+     * finalizadas) e os de execuções pendentes ou em andamento não são considerados. Os
+     * arquivos com hard links em mais de um diretório contam uma vez só e só liberam
+     * espaço quando o último diretório que os referencia é removido.
+     */
+    public void evict() throws IOException {
+        Path root = Paths.get(storagePath);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        Set<String> liveExecutions = new HashSet<>(queryExecutionRepository.findExecutionIdsByStatusIn(LIVE_STATUSES));
+
+        List<CachedArtifact> artifacts = new ArrayList<>();
+        Map<Object, StoredFile> storedFiles = new HashMap<>();
+        long totalBytes = 0;
+        try (Stream<Path> directories = Files.list(root)) {
+            for (Path directory : (Iterable<Path>) directories.filter(Files::isDirectory)::iterator) {
+                List<StoredFile> files = scanFiles(directory, storedFiles);
+                for (StoredFile file : files) {
+                    if (file.directories++ == 0) {
+                        totalBytes += file.size;
+                    }
+                }
+
+                String executionId = directory.getFileName().toString();
+                Path manifest = directory.resolve(executionId + "_consolidated" + ResultManifest.MANIFEST_EXTENSION);
+                if (Files.isRegularFile(manifest) && !liveExecutions.contains(executionId)) {
+                    artifacts.add(new CachedArtifact(directory, files, Files.getLastModifiedTime(manifest).toMillis()));
+                }
+            }
+        }
+
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+
+        artifacts.sort(Comparator.comparingLong(artifact -> artifact.lastUsed));
+        int evicted = 0;
+        for (CachedArtifact artifact : artifacts) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            // Reaberta pelo retry-failed depois da leitura dos status
+            if (queryExecutionRepository.existsByExecutionIdAndStatusIn(
+                    artifact.directory.getFileName().toString(), LIVE_STATUSES)) {
+                continue;
+            }
+            try {
+                deleteRecursively(artifact.directory);
+                for (StoredFile file : artifact.files) {
+                    if (--file.directories == 0) {
+                        totalBytes -= file.size;
+                    }
+                }
+                evicted++;
+            } catch (IOException e) {
+                logger.warn("Erro ao remover resultado {}: {}", artifact.directory, e.getMessage());
+            }
+        }
+
+        logger.info("Cache de resultados: {} execuções removidas, {} MB em uso", evicted, totalBytes / (1024 * 1024));
+    }
+
+    private void evictQuietly() {
+        try {
+            evict();
+        } catch (Exception e) {
+            logger.error("Erro na limpeza do cache de resultados: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Normaliza o SQL para a chave: espaços consecutivos fora de literais viram um só e
+     * o ponto e vírgula final é descartado. Literais e identificadores entre aspas são
+     * preservados.
+     */
+    static String normalizeSql(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                normalized.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '\'' || c == '"') {
+                quote = c;
+            }
+            normalized.append(c);
+        }
+
+        int end = normalized.length();
+        while (end > 0 && (normalized.charAt(end - 1) == ';' || normalized.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        return normalized.substring(0, end);
+    }
+
+    // Arquivos do diretório, identificados pelo inode para que hard links sejam o mesmo arquivo
+    private List<StoredFile> scanFiles(Path directory, Map<Object, StoredFile> storedFiles) throws IOException {
+        List<StoredFile> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                Object key = attributes.fileKey() != null ? attributes.fileKey() : path;
+                StoredFile file = storedFiles.computeIfAbsent(key, k -> new StoredFile(attributes.size()));
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            List<Path> ordered = paths.sorted(Comparator.reverseOrder()).toList();
+            for (Path path : ordered) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Resultado de uma execução anterior ligado ao diretório de uma execução atendida pelo cache.
+     */
+    public static class LinkedResult {
+        private final String manifestPath;
+        private final Map<String, String> files;
+
+        private LinkedResult(String manifestPath, Map<String, String> files) {
+            this.manifestPath = manifestPath;
+            this.files = files;
+        }
+
+        // Manifesto próprio, ou null se a execução original não tinha linhas
+        public String getManifestPath() { return manifestPath; }
+
+        // Caminho ligado correspondente ao arquivo da execução original
+        public String fileFor(String originalPath) {
+            return originalPath != null ? files.get(originalPath) : null;
+        }
+    }
+
+    private static final class CachedArtifact {
+        private final Path directory;
+        private final List<StoredFile> files;
+        private final long lastUsed;
+
+        private CachedArtifact(Path directory, List<StoredFile> files, long lastUsed) {
+            this.directory = directory;
+            this.files = files;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private static final class StoredFile {
+        private final long size;
+        // Diretórios ainda presentes com um link para o arquivo
+        private int directories;
+
+        private StoredFile(long size) {
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Envia arquivos de resultado diretamente do disco para o cliente, sem carregá-los na
+ * memória e sem limite de tamanho.
+ *
+ * Quando o conector do Tomcat suporta sendfile, a transferência é delegada ao kernel;
+ * caso contrário é usado {@link FileChannel#transferTo}. Requisições com cabeçalho
+ * Range (um único intervalo) são respondidas com 206, permitindo retomar downloads e
+ * baixar partes em paralelo.
+ *
+ * Arquivos comprimidos são enviados como estão, com Content-Encoding, quando o cliente
+ * aceita o codec; caso contrário são descomprimidos durante o envio.
+ *
+ * O resultado consolidado é montado a partir do {@link ResultManifest}: os CSVs de cada
+ * banco são enviados em sequência como um único arquivo virtual, e os Parquet em um ZIP.
+ */
+@Service
+public class ResultDownloadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultDownloadService.class);
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private ResultManifest resultManifest;
+
+    public void streamFile(Path path, String downloadFileName, String contentType,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        if (!Files.isRegularFile(path)) {
+            logger.warn("Arquivo para download não encontrado: {}", path);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        List<FileSegment> segments = List.of(new FileSegment(path, 0, Files.size(path)));
+        streamSegments(segments, downloadFileName, contentType, request, response);
+    }
+
+    /**
+     * Envia o resultado consolidado de uma execução. O nome do download é
+     * {@code baseName} com a extensão do formato (ou .zip para Parquet).
+     */
+    public void streamConsolidated(Path manifest, String baseName,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        if (!Files.isRegularFile(manifest)) {
+            logger.warn("Manifesto do consolidado não encontrado: {}", manifest);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        List<ResultManifest.Entry> entries = resultManifest.read(manifest);
+        if (entries.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        ResultFormat format = ResultFormat.fromFileName(entries.get(0).getFile().getFileName().toString());
+        if (format == ResultFormat.PARQUET) {
+            streamZip(entries, baseName + ".zip", response);
+            return;
+        }
+
+        // Primeiro arquivo completo; os demais sem o frame de cabeçalho
+        List<FileSegment> segments = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            ResultManifest.Entry entry = entries.get(i);
+            long size = Files.size(entry.getFile());
+            long start = i == 0 ? 0 : Math.min(entry.getDataOffset(), size);
+            segments.add(new FileSegment(entry.getFile(), start, size - start));
+        }
+
+        streamSegments(segments, baseName + format.getFileExtension(), format.getContentType(), request, response);
+    }
+
+    private void streamSegments(List<FileSegment> segments, String downloadFileName, String contentType,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        // Todos os segmentos de um consolidado usam o mesmo codec
+        CompressionCodec codec = CompressionCodec.fromFileName(segments.get(0).path.getFileName().toString());
+        if (codec != CompressionCodec.NONE) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+            if (!codec.isAcceptedBy(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+                streamDecoded(segments, codec, downloadFileName, contentType, response);
+                return;
+            }
+
+            // Os bytes comprimidos são enviados sem recompressão; Range se aplica a eles.
+            // Frames gzip/zstd concatenados formam um stream válido
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, codec.getContentEncoding());
+        }
+
+        long totalSize = 0;
+        long lastModified = 0;
+        for (FileSegment segment : segments) {
+            totalSize += segment.length;
+            lastModified = Math.max(lastModified, Files.getLastModifiedTime(segment.path).toMillis());
+        }
+        String etag = "\"" + Long.toHexString(totalSize) + "-" + Long.toHexString(lastModified)
+                + (segments.size() > 1 ? "-" + Integer.toHexString(segments.size()) : "") + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + downloadFileName);
+        response.setContentType(contentType);
+
+        long start = 0;
+        long end = totalSize - 1;
+
+        HttpRange range = resolveRange(request, etag, lastModified);
+
+        if (range != null) {
+            try {
+                start = range.getRangeStart(totalSize);
+                end = range.getRangeEnd(totalSize);
+            } catch (IllegalArgumentException e) {
+                sendRangeNotSatisfiable(response, totalSize);
+                return;
+            }
+
+            if (totalSize == 0 || start >= totalSize || start > end) {
+                sendRangeNotSatisfiable(response, totalSize);
+                return;
+            }
+
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + totalSize);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+
+        long length = totalSize == 0 ? 0 : end - start + 1;
+        response.setContentLengthLong(length);
+
+        logger.debug("Enviando {} bytes de {} arquivo(s) (intervalo {}-{})", length, segments.size(), start, end);
+
+        if (length == 0) {
+            return;
+        }
+
+        if (segments.size() == 1 && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            // O Tomcat envia o arquivo via sendfile após o retorno do controller
+            FileSegment segment = segments.get(0);
+            request.setAttribute(SENDFILE_FILENAME_ATTR, segment.path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, segment.offset + start);
+            request.setAttribute(SENDFILE_END_ATTR, segment.offset + end + 1);
+            return;
+        }
+
+        WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+        long skip = start;
+        long remaining = length;
+        for (FileSegment segment : segments) {
+            if (remaining == 0) {
+                break;
+            }
+            if (skip >= segment.length) {
+                skip -= segment.length;
+                continue;
+            }
+
+            long count = Math.min(segment.length - skip, remaining);
+            transfer(segment.path, segment.offset + skip, count, target);
+            remaining -= count;
+            skip = 0;
+        }
+    }
+
+    private void transfer(Path path, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    // Cliente sem suporte ao codec: descomprime em streaming, sem Range nem Content-Length
+    private void streamDecoded(List<FileSegment> segments, CompressionCodec codec, String downloadFileName,
+                               String contentType, HttpServletResponse response) throws IOException {
+        logger.debug("Cliente não aceita {}, descomprimindo {} arquivo(s) durante o envio",
+                codec.getContentEncoding(), segments.size());
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + downloadFileName);
+        response.setContentType(contentType);
+
+        // Cada segmento é decodificado separadamente: o GZIPInputStream só reconhece
+        // membros seguintes dentro do mesmo stream de origem
+        OutputStream out = response.getOutputStream();
+        for (FileSegment segment : segments) {
+            FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ);
+            channel.position(segment.offset);
+            try (InputStream in = codec.wrapInput(Channels.newInputStream(channel))) {
+                in.transferTo(out);
+            }
+        }
+    }
+
+    // Parquet não pode ser concatenado; os arquivos seguem em um ZIP gerado durante o envio
+    private void streamZip(List<ResultManifest.Entry> entries, String downloadFileName,
+                           HttpServletResponse response) throws IOException {
+        logger.debug("Enviando {} arquivo(s) Parquet em ZIP", entries.size());
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + downloadFileName);
+        response.setContentType("application/zip");
+
+        OutputStream out = response.getOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            // Parquet já é comprimido por página; o ZIP apenas agrupa os arquivos
+            zip.setLevel(Deflater.NO_COMPRESSION);
+            for (ResultManifest.Entry entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry.getFile().getFileName().toString()));
+                Files.copy(entry.getFile(), zip);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    // Retorna o intervalo solicitado ou null para enviar o arquivo completo
+    private HttpRange resolveRange(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            return null;
+        }
+
+        // If-Range: se o arquivo mudou desde a primeira parte, enviar tudo novamente
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                return null;
+            }
+            try {
+                long ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+                if (lastModified / 1000 > ifRangeDate / 1000) {
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // Cabeçalho inválido é ignorado, conforme a RFC 9110
+            logger.debug("Cabeçalho Range inválido ignorado: {}", rangeHeader);
+            return null;
+        }
+
+        if (ranges.size() != 1) {
+            // Múltiplos intervalos não são suportados; o cliente recebe o arquivo completo
+            return null;
+        }
+        return ranges.get(0);
+    }
+
+    private void sendRangeNotSatisfiable(HttpServletResponse response, long fileSize) {
+        response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+        response.setContentLength(0);
+    }
+
+    // Trecho de um arquivo enviado como parte do download
+    private static final class FileSegment {
+        private final Path path;
+        private final long offset;
+        private final long length;
+
+        private FileSegment(Path path, long offset, long length) {
+            this.path = path;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
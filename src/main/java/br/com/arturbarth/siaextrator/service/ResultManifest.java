@@ -0,0 +1,107 @@
+package br.com.arturbarth.siaextrator.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Manifesto do resultado consolidado de uma execução.
+ *
+ * Em vez de regravar todos os dados em um segundo arquivo, o nó que finaliza a execução
+ * grava o manifesto com os arquivos dos bancos concluídos. O consolidado é uma visão
+ * virtual: no download, os arquivos listados são enviados em sequência, com o cabeçalho
+ * apenas do primeiro (os demais a partir de {@code dataOffset}).
+ *
+ * Formato: uma linha por arquivo, {@code nomeDoArquivo<TAB>dataOffset}.
+ */
+@Component
+public class ResultManifest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultManifest.class);
+
+    public static final String MANIFEST_EXTENSION = ".manifest";
+
+    @Value("${app.csv.storage.path:/tmp/query-results}")
+    private String storagePath;
+
+    /**
+     * Grava o manifesto completo da execução, substituindo o anterior de forma atômica.
+     *
+     * @return caminho do manifesto
+     */
+    public String write(String executionId, List<Entry> entries) throws IOException {
+        Path manifest = manifestPath(executionId);
+        Files.createDirectories(manifest.getParent());
+
+        StringBuilder content = new StringBuilder();
+        for (Entry entry : entries) {
+            content.append(entry.getFile().getFileName()).append('\t').append(entry.getDataOffset()).append('\n');
+        }
+
+        Path temporary = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        Files.writeString(temporary, content, StandardCharsets.UTF_8);
+        Files.move(temporary, manifest, StandardCopyOption.REPLACE_EXISTING);
+
+        logger.debug("Manifesto da execução {} gravado com {} arquivos", executionId, entries.size());
+        return manifest.toString();
+    }
+
+    /**
+     * Lê as entradas do manifesto em ordem de nome de arquivo, mantendo o consolidado
+     * estável independentemente da ordem em que os bancos terminaram.
+     */
+    public List<Entry> read(Path manifest) throws IOException {
+        Path directory = manifest.getParent();
+        List<Entry> entries = new ArrayList<>();
+
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] parts = line.split("\t");
+            Path file = directory.resolve(parts[0]);
+            if (!Files.isRegularFile(file)) {
+                logger.warn("Arquivo listado no manifesto não encontrado: {}", file);
+                continue;
+            }
+            entries.add(new Entry(file, parts.length > 1 ? Long.parseLong(parts[1].trim()) : 0L));
+        }
+
+        entries.sort(Comparator.comparing(entry -> entry.getFile().getFileName().toString()));
+        return entries;
+    }
+
+    public static boolean isManifest(Path path) {
+        return path.getFileName().toString().endsWith(MANIFEST_EXTENSION);
+    }
+
+    private Path manifestPath(String executionId) {
+        return Paths.get(storagePath, executionId, executionId + "_consolidated" + MANIFEST_EXTENSION);
+    }
+
+    public static class Entry {
+        private final Path file;
+        private final long dataOffset;
+
+        public Entry(Path file, long dataOffset) {
+            this.file = file;
+            this.dataOffset = dataOffset;
+        }
+
+        public Path getFile() { return file; }
+
+        // Posição, em bytes do arquivo gravado, onde terminam os cabeçalhos e começam as linhas
+        public long getDataOffset() { return dataOffset; }
+    }
+}
@@ -0,0 +1,22 @@
+package br.com.arturbarth.siaextrator.service;
+
+/**
+ * Gravador do resultado de um banco em arquivo, em um dos formatos de saída
+ * suportados ({@link br.com.arturbarth.siaextrator.entity.ResultFormat}).
+ *
+ * Recebe as linhas como um {@link RowSink}; o arquivo só existe após a primeira linha,
+ * e {@link #getFilePath()} retorna null quando o resultado é vazio ou foi abortado.
+ *
+ * O nome do arquivo é determinístico por execução, cluster e banco. A gravação é feita
+ * em um arquivo temporário, movido para o nome final apenas no {@code finish}, de forma
+ * que uma nova tentativa do mesmo banco (em qualquer nó) substitui o arquivo inteiro.
+ */
+public interface ResultWriter extends RowSink {
+
+    String getFilePath();
+
+    long getRowCount();
+
+    // Posição, em bytes do arquivo gravado, onde começam as linhas (após o cabeçalho)
+    long getDataOffset();
+}
@@ -0,0 +1,39 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ResultSchema;
+import br.com.arturbarth.siaextrator.dto.RowBatch;
+
+import java.io.IOException;
+
+/**
+ * Destino das linhas lidas de um ResultSet, alimentado linha a linha pelo
+ * {@link RdsExecutorService} durante o fetch.
+ *
+ * O ciclo de vida é controlado pelo executor: {@code start} uma vez com o esquema,
+ * {@code accept} para cada linha e, ao final, {@code finish} em caso de sucesso ou
+ * {@code abort} em caso de falha. O array recebido em {@code accept} segue a ordem das
+ * colunas do esquema, é reutilizado entre as linhas e não deve ser retido pelo sink.
+ */
+public interface RowSink {
+
+    void start(ResultSchema schema) throws IOException;
+
+    void accept(Object[] values) throws IOException;
+
+    /**
+     * Entrega um lote já materializado. A implementação padrão copia cada linha para um
+     * array temporário; sinks que conseguem ler o lote diretamente devem sobrescrever.
+     */
+    default void acceptBatch(RowBatch batch) throws IOException {
+        int columnCount = batch.getSchema().getColumnCount();
+        Object[] row = new Object[columnCount];
+        for (int i = 0; i < batch.getRowCount(); i++) {
+            System.arraycopy(batch.getValues(), batch.offsetOf(i), row, 0, columnCount);
+            accept(row);
+        }
+    }
+
+    void finish() throws IOException;
+
+    void abort();
+}
@@ -0,0 +1,346 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.DispatcherStatsDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Distribui a execução de tarefas por banco (scatter/gather) respeitando um limite
+ * global de concorrência e um limite por cluster.
+ *
+ * Os limites são compartilhados entre todas as execuções em andamento, de forma que
+ * várias queries simultâneas não ultrapassem o número de conexões permitido em um
+ * mesmo cluster.
+ *
+ * No modo {@code virtual} cada tarefa roda em uma virtual thread: como o trabalho é
+ * quase todo I/O bloqueante (conexão, espera da query, leitura das linhas), a
+ * concorrência passa a ser limitada apenas pelos semáforos, não pelo tamanho do pool.
+ * O driver PostgreSQL (42.6+) e o HikariCP usam {@code ReentrantLock} nos trechos
+ * bloqueantes, sem fixar a virtual thread na thread portadora.
+ */
+@Component
+public class TargetDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TargetDispatcher.class);
+
+    // Intervalo máximo de espera quando nenhum cluster pendente possui permissão livre
+    private static final long IDLE_WAIT_MS = 100;
+
+    @Value("${query.execution.max.concurrency:10}")
+    private int maxConcurrency;
+
+    @Value("${query.execution.max.concurrency.per.cluster:4}")
+    private int maxConcurrencyPerCluster;
+
+    // platform (pool fixo de maxConcurrency threads) ou virtual (uma virtual thread por tarefa)
+    @Value("${query.execution.thread.mode:platform}")
+    private String threadMode;
+
+    private final ConcurrentHashMap<Long, Semaphore> clusterPermits = new ConcurrentHashMap<>();
+
+    private final Object dispatchSignal = new Object();
+
+    private ExecutorService workerPool;
+
+    private Semaphore globalPermits;
+
+    private boolean virtualThreads;
+
+    // Métricas para comparar a vazão entre os modos de execução
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder failedTasks = new LongAdder();
+    private final LongAdder totalTaskNanos = new LongAdder();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final AtomicInteger peakActiveTasks = new AtomicInteger();
+    private long startedAtNanos;
+
+    @PostConstruct
+    public void init() {
+        virtualThreads = "virtual".equalsIgnoreCase(threadMode);
+        if (!virtualThreads && threadMode != null && !"platform".equalsIgnoreCase(threadMode)) {
+            logger.warn("Modo de execução desconhecido '{}', usando platform", threadMode);
+        }
+
+        if (virtualThreads) {
+            workerPool = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("query-vworker-", 1).factory());
+        } else {
+            AtomicInteger threadCounter = new AtomicInteger();
+            workerPool = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                Thread thread = new Thread(runnable, "query-worker-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        globalPermits = new Semaphore(maxConcurrency, true);
+        startedAtNanos = System.nanoTime();
+
+        logger.info("TargetDispatcher iniciado: modo {}, concorrência global {}, por cluster {}",
+                getThreadMode(), maxConcurrency, maxConcurrencyPerCluster);
+    }
+
+    /**
+     * Executa a tarefa para cada alvo em paralelo, só despachando até {@code deadlineMillis}
+     * (epoch em ms): a espera por permissão global também respeita o prazo, de forma que
+     * execuções longas ocupando todas as permissões não seguram o chamador. Os alvos não
+     * iniciados até o prazo são descartados.
+     *
+     * @return quantidade de alvos descartados pelo prazo
+     */
+    public <T> int dispatchAllUntil(List<T> targets, ToLongFunction<T> clusterOf, Consumer<T> task,
+                                    long deadlineMillis) throws InterruptedException {
+        return dispatch(targets, clusterOf, task, () -> System.currentTimeMillis() > deadlineMillis, deadlineMillis);
+    }
+
+    /**
+     * Despacha os alvos e aguarda a conclusão dos iniciados.
+     *
+     * A ordem da lista é respeitada sempre que possível: o próximo alvo despachado é o
+     * primeiro cujo cluster ainda possui permissão livre. A tarefa é responsável por
+     * tratar as próprias exceções; falhas não capturadas são apenas registradas. Quando
+     * {@code cancelled} retorna true, os alvos ainda não iniciados são descartados;
+     * {@code Long.MAX_VALUE} como prazo espera a permissão global sem limite.
+     *
+     * @return quantidade de alvos descartados
+     */
+    <T> int dispatch(List<T> targets, ToLongFunction<T> clusterOf, Consumer<T> task,
+                     BooleanSupplier cancelled, long deadlineMillis) throws InterruptedException {
+
+        LinkedList<T> pending = new LinkedList<>(targets);
+        CountDownLatch remaining = new CountDownLatch(targets.size());
+        int skipped = 0;
+
+        while (!pending.isEmpty()) {
+            if (cancelled.getAsBoolean() || !acquireGlobal(deadlineMillis)) {
+                skipped = pending.size();
+                pending.forEach(target -> remaining.countDown());
+                pending.clear();
+                logger.info("Despacho cancelado, {} alvos não iniciados descartados", skipped);
+                break;
+            }
+
+            T next = null;
+            Semaphore clusterSemaphore = null;
+
+            synchronized (dispatchSignal) {
+                Iterator<T> iterator = pending.iterator();
+                while (iterator.hasNext()) {
+                    T candidate = iterator.next();
+                    Semaphore semaphore = clusterPermitsFor(clusterOf.applyAsLong(candidate));
+                    if (semaphore.tryAcquire()) {
+                        next = candidate;
+                        clusterSemaphore = semaphore;
+                        iterator.remove();
+                        break;
+                    }
+                }
+
+                if (next == null) {
+                    // Todos os clusters pendentes estão no limite, aguardar alguma tarefa terminar
+                    globalPermits.release();
+                    dispatchSignal.wait(IDLE_WAIT_MS);
+                    continue;
+                }
+            }
+
+            submit(next, clusterSemaphore, task, remaining);
+        }
+
+        remaining.await();
+        return skipped;
+    }
+
+    private boolean acquireGlobal(long deadlineMillis) throws InterruptedException {
+        if (deadlineMillis == Long.MAX_VALUE) {
+            globalPermits.acquire();
+            return true;
+        }
+        long remainingMillis = deadlineMillis - System.currentTimeMillis();
+        return remainingMillis > 0 && globalPermits.tryAcquire(remainingMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private <T> void submit(T target, Semaphore clusterSemaphore, Consumer<T> task, CountDownLatch remaining) {
+        try {
+            workerPool.execute(() -> {
+                try {
+                    runMeasured(() -> {
+                        task.accept(target);
+                        return true;
+                    });
+                } catch (Exception e) {
+                    logger.error("Erro não tratado na execução do alvo {}: {}", target, e.getMessage(), e);
+                } finally {
+                    release(clusterSemaphore);
+                    remaining.countDown();
+                }
+            });
+        } catch (RuntimeException e) {
+            release(clusterSemaphore);
+            remaining.countDown();
+            throw e;
+        }
+    }
+
+    /**
+     * Submete um único alvo sem bloquear. Retorna false se não houver permissão livre,
+     * global ou do cluster; nesse caso a tarefa não é executada.
+     *
+     * A tarefa trata as próprias exceções e informa o resultado: false quando o alvo
+     * falhou, o que é contado nas falhas do dispatcher.
+     */
+    public boolean trySubmit(long clusterId, BooleanSupplier task) {
+        if (!globalPermits.tryAcquire()) {
+            return false;
+        }
+
+        Semaphore clusterSemaphore = clusterPermitsFor(clusterId);
+        if (!clusterSemaphore.tryAcquire()) {
+            globalPermits.release();
+            return false;
+        }
+
+        try {
+            workerPool.execute(() -> {
+                try {
+                    runMeasured(task);
+                } catch (Exception e) {
+                    logger.error("Erro não tratado na execução de alvo do cluster {}: {}", clusterId, e.getMessage(), e);
+                } finally {
+                    release(clusterSemaphore);
+                }
+            });
+        } catch (RuntimeException e) {
+            release(clusterSemaphore);
+            throw e;
+        }
+        return true;
+    }
+
+    // Falhas: alvos que a tarefa informou como falhos e exceções não tratadas
+    private void runMeasured(BooleanSupplier task) {
+        peakActiveTasks.accumulateAndGet(activeTasks.incrementAndGet(), Math::max);
+        long start = System.nanoTime();
+        try {
+            if (!task.getAsBoolean()) {
+                failedTasks.increment();
+            }
+        } catch (RuntimeException e) {
+            failedTasks.increment();
+            throw e;
+        } finally {
+            totalTaskNanos.add(System.nanoTime() - start);
+            completedTasks.increment();
+            activeTasks.decrementAndGet();
+        }
+    }
+
+    public int getActiveTasks() {
+        return activeTasks.get();
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks.sum();
+    }
+
+    public long getFailedTasks() {
+        return failedTasks.sum();
+    }
+
+    public long getTotalTaskNanos() {
+        return totalTaskNanos.sum();
+    }
+
+    // Permissões globais livres neste nó
+    public int availableSlots() {
+        return globalPermits.availablePermits();
+    }
+
+    // Clusters que já atingiram o limite de concorrência neste nó
+    public Set<Long> saturatedClusters() {
+        Set<Long> saturated = new HashSet<>();
+        clusterPermits.forEach((clusterId, semaphore) -> {
+            if (semaphore.availablePermits() == 0) {
+                saturated.add(clusterId);
+            }
+        });
+        return saturated;
+    }
+
+    private void release(Semaphore clusterSemaphore) {
+        clusterSemaphore.release();
+        globalPermits.release();
+        synchronized (dispatchSignal) {
+            dispatchSignal.notifyAll();
+        }
+    }
+
+    private Semaphore clusterPermitsFor(long clusterId) {
+        return clusterPermits.computeIfAbsent(clusterId, id -> new Semaphore(maxConcurrencyPerCluster));
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getMaxConcurrencyPerCluster() {
+        return maxConcurrencyPerCluster;
+    }
+
+    public String getThreadMode() {
+        return virtualThreads ? "virtual" : "platform";
+    }
+
+    public DispatcherStatsDTO getStats() {
+        DispatcherStatsDTO stats = new DispatcherStatsDTO();
+        stats.setThreadMode(getThreadMode());
+        stats.setMaxConcurrency(maxConcurrency);
+        stats.setMaxConcurrencyPerCluster(maxConcurrencyPerCluster);
+        stats.setActiveTasks(activeTasks.get());
+        stats.setPeakActiveTasks(peakActiveTasks.get());
+
+        long completed = completedTasks.sum();
+        long uptimeNanos = System.nanoTime() - startedAtNanos;
+        stats.setCompletedTasks(completed);
+        stats.setFailedTasks(failedTasks.sum());
+        stats.setAvgTaskTimeMs(completed > 0 ? totalTaskNanos.sum() / completed / 1_000_000.0 : 0.0);
+        stats.setTasksPerSecond(uptimeNanos > 0 ? completed * 1_000_000_000.0 / uptimeNanos : 0.0);
+        stats.setUptimeSeconds(TimeUnit.NANOSECONDS.toSeconds(uptimeNanos));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Encerrando TargetDispatcher...");
+        workerPool.shutdown();
+
+        try {
+            if (!workerPool.awaitTermination(60, TimeUnit.SECONDS)) {
+                workerPool.shutdownNow();
+                logger.warn("Timeout no encerramento dos workers, forçando parada");
+            }
+        } catch (InterruptedException e) {
+            workerPool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package br.com.arturbarth.siaextrator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Política de nova tentativa automática de um banco que falhou.
+ *
+ * Só falhas transitórias são repetidas: conexão (classe 08), failover e reinício do
+ * servidor (57P01-57P03), limite de conexões (53300) e conflitos de concorrência
+ * (40001, 40P01). O intervalo dobra a cada tentativa, com jitter, até o máximo.
+ * Timeout de statement (57014) não é repetido, pois também indica cancelamento.
+ */
+@Component
+public class TargetRetryPolicy {
+
+    private static final Set<String> TRANSIENT_SQL_STATES = Set.of(
+            "40001", "40P01", "53300", "57P01", "57P02", "57P03");
+
+    @Value("${query.execution.retry.max.attempts:3}")
+    private int maxAttempts;
+
+    @Value("${query.execution.retry.backoff.initial.ms:5000}")
+    private long initialBackoffMs;
+
+    @Value("${query.execution.retry.backoff.max.ms:300000}")
+    private long maxBackoffMs;
+
+    /**
+     * @param attempts tentativas já feitas, incluindo a que falhou
+     */
+    public boolean shouldRetry(int attempts, Throwable error) {
+        return attempts < maxAttempts && isTransient(error);
+    }
+
+    public LocalDateTime nextAttemptAt(int attempts) {
+        long backoff = initialBackoffMs << Math.min(Math.max(attempts - 1, 0), 20);
+        backoff = Math.min(backoff, maxBackoffMs);
+        long jitter = ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+        return LocalDateTime.now().plusNanos((backoff + jitter) * 1_000_000);
+    }
+
+    public boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                String sqlState = sqlException.getSQLState();
+                if (sqlState != null && (sqlState.startsWith("08") || TRANSIENT_SQL_STATES.contains(sqlState))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,176 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.entity.DatabaseInstance;
+import br.com.arturbarth.siaextrator.entity.QueryExecution;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Define a ordem em que os bancos de uma execução são reivindicados.
+ *
+ * O custo de cada banco é o tempo médio das execuções anteriores do mesmo SQL nesse
+ * banco. Sem histórico, é estimado pelo tamanho do banco, na proporção tempo/tamanho
+ * observada nos bancos que têm histórico, ou apenas pelo tamanho quando a consulta
+ * nunca rodou. Os mais caros começam primeiro (LPT), e os clusters são intercalados em
+ * ondas do tamanho do limite por cluster, para que um cluster com bancos grandes não
+ * ocupe a frente da fila enquanto os demais ficam ociosos.
+ */
+@Component
+public class TargetScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TargetScheduler.class);
+
+    private static final String HISTORY_SQL =
+            "SELECT r.cluster_id, r.database_name, AVG(r.execution_time_ms) AS avg_ms " +
+            "FROM query_execution_results r JOIN query_executions e ON e.id = r.query_execution_id " +
+            "WHERE e.sql_fingerprint = ? AND e.created_at >= ? AND r.status = 'COMPLETED' " +
+            "AND r.execution_time_ms IS NOT NULL " +
+            "GROUP BY r.cluster_id, r.database_name";
+
+    @Value("${query.execution.scheduling.history.days:30}")
+    private long historyDays;
+
+    @Value("${query.execution.max.concurrency.per.cluster:4}")
+    private int maxConcurrencyPerCluster;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ClusterTopologyCache clusterTopologyCache;
+
+    /**
+     * Estima o custo dos bancos e os devolve na ordem de execução, com
+     * {@code scheduleOrder} e {@code estimatedTimeMs} preenchidos.
+     */
+    public List<QueryExecutionResult> schedule(QueryExecution queryExecution, List<QueryExecutionResult> targets) {
+        Map<String, Long> history = loadHistory(queryExecution.getSqlFingerprint());
+        Map<String, Long> sizes = loadSizes(targets);
+
+        // Proporção tempo/tamanho dos bancos com histórico, para estimar os demais
+        double historyMs = 0;
+        double historyBytes = 0;
+        for (Map.Entry<String, Long> entry : history.entrySet()) {
+            Long size = sizes.get(entry.getKey());
+            if (size != null && size > 0) {
+                historyMs += entry.getValue();
+                historyBytes += size;
+            }
+        }
+        Double msPerByte = historyBytes > 0 ? historyMs / historyBytes : null;
+
+        int estimated = 0;
+        for (QueryExecutionResult target : targets) {
+            String key = key(target.getCluster().getId(), target.getDatabaseName());
+            Long timeMs = history.get(key);
+            Long size = sizes.get(key);
+            if (timeMs == null && size != null && msPerByte != null) {
+                timeMs = Math.round(size * msPerByte);
+            }
+            target.setEstimatedTimeMs(timeMs);
+            if (timeMs != null) {
+                estimated++;
+            }
+        }
+
+        // Com estimativas em tempo, os bancos sem estimativa ficam com a média; sem nenhuma, ordena pelo tamanho
+        Map<QueryExecutionResult, Double> costs = new HashMap<>();
+        if (estimated > 0) {
+            double average = targets.stream().filter(t -> t.getEstimatedTimeMs() != null)
+                    .mapToLong(QueryExecutionResult::getEstimatedTimeMs).average().orElse(0);
+            for (QueryExecutionResult target : targets) {
+                costs.put(target, target.getEstimatedTimeMs() != null ? target.getEstimatedTimeMs() : average);
+            }
+        } else {
+            for (QueryExecutionResult target : targets) {
+                Long size = sizes.get(key(target.getCluster().getId(), target.getDatabaseName()));
+                costs.put(target, size != null ? size.doubleValue() : 0);
+            }
+        }
+
+        List<QueryExecutionResult> ordered = order(targets, costs, maxConcurrencyPerCluster);
+        for (int i = 0; i < ordered.size(); i++) {
+            ordered.get(i).setScheduleOrder(i);
+        }
+
+        logger.debug("Execução {}: {} bancos ordenados por custo, {} com estimativa de tempo ({} com histórico)",
+                queryExecution.getExecutionId(), ordered.size(), estimated, history.size());
+        return ordered;
+    }
+
+    /**
+     * Maiores primeiro dentro de cada cluster; os clusters são intercalados em ondas de
+     * {@code perClusterLimit} bancos, e dentro de cada onda os maiores vêm primeiro.
+     */
+    static List<QueryExecutionResult> order(List<QueryExecutionResult> targets,
+                                            Map<QueryExecutionResult, Double> costs, int perClusterLimit) {
+        Comparator<QueryExecutionResult> byCostDesc = Comparator.comparing(costs::get, Comparator.reverseOrder());
+
+        Map<Long, List<QueryExecutionResult>> byCluster = new LinkedHashMap<>();
+        for (QueryExecutionResult target : targets) {
+            byCluster.computeIfAbsent(target.getCluster().getId(), id -> new ArrayList<>()).add(target);
+        }
+
+        int waveSize = Math.max(perClusterLimit, 1);
+        Map<QueryExecutionResult, Integer> waves = new HashMap<>();
+        for (List<QueryExecutionResult> clusterTargets : byCluster.values()) {
+            clusterTargets.sort(byCostDesc);
+            for (int i = 0; i < clusterTargets.size(); i++) {
+                waves.put(clusterTargets.get(i), i / waveSize);
+            }
+        }
+
+        List<QueryExecutionResult> ordered = new ArrayList<>(targets);
+        ordered.sort(Comparator.comparing((QueryExecutionResult target) -> waves.get(target)).thenComparing(byCostDesc));
+        return ordered;
+    }
+
+    private Map<String, Long> loadHistory(String sqlFingerprint) {
+        Map<String, Long> history = new HashMap<>();
+        if (sqlFingerprint == null) {
+            return history;
+        }
+
+        try {
+            Timestamp since = Timestamp.valueOf(LocalDateTime.now().minusDays(historyDays));
+            jdbcTemplate.query(HISTORY_SQL, rs -> {
+                history.put(key(rs.getLong("cluster_id"), rs.getString("database_name")),
+                        Math.round(rs.getDouble("avg_ms")));
+            }, sqlFingerprint, since);
+        } catch (Exception e) {
+            // Sem histórico a ordem ainda usa o tamanho dos bancos
+            logger.warn("Erro ao carregar histórico de tempos da consulta: {}", e.getMessage());
+        }
+        return history;
+    }
+
+    private Map<String, Long> loadSizes(List<QueryExecutionResult> targets) {
+        Map<String, Long> sizes = new HashMap<>();
+        for (Long clusterId : targets.stream().map(target -> target.getCluster().getId()).distinct().toList()) {
+            for (DatabaseInstance database : clusterTopologyCache.getDatabases(clusterId)) {
+                if (database.getDatabaseSize() != null) {
+                    sizes.put(key(clusterId, database.getDatabaseName()), database.getDatabaseSize());
+                }
+            }
+        }
+        return sizes;
+    }
+
+    private static String key(Long clusterId, String databaseName) {
+        return clusterId + "/" + databaseName;
+    }
+}
@@ -0,0 +1,295 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.entity.Cluster;
+import br.com.arturbarth.siaextrator.entity.QueryExecution;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionResult;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionStatus;
+import br.com.arturbarth.siaextrator.repository.QueryExecutionRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executa neste nó os bancos alvo reivindicados da fila compartilhada.
+ *
+ * A cada ciclo reivindica no máximo a capacidade livre do {@link TargetDispatcher}
+ * (limite global e por cluster deste nó), de forma que um fan-out grande se espalha por
+ * todos os nós ativos. Também renova os leases dos bancos em execução e repassa ao
+ * {@link CancellationRegistry} local os cancelamentos feitos em qualquer nó.
+ */
+@Component
+public class TargetWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(TargetWorker.class);
+
+    @Value("${query.execution.target.poll.interval.ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${query.execution.target.lease.seconds:60}")
+    private int leaseSeconds;
+
+    @Autowired
+    private ExecutionTargetStore executionTargetStore;
+
+    @Autowired
+    private TargetDispatcher targetDispatcher;
+
+    @Autowired
+    private QueryExecutorService queryExecutorService;
+
+    @Autowired
+    private QueryExecutionRepository queryExecutionRepository;
+
+    @Autowired
+    private ClusterTopologyCache clusterTopologyCache;
+
+    @Autowired
+    private CancellationRegistry cancellationRegistry;
+
+    @Autowired
+    private NodeIdentity nodeIdentity;
+
+    // Bancos em execução neste nó, por id do resultado
+    private final Map<Long, RunningTarget> runningTargets = new ConcurrentHashMap<>();
+
+    // Execuções com bancos em andamento neste nó, carregadas uma vez
+    private final Map<Long, ActiveExecution> activeExecutions = new HashMap<>();
+
+    private final AtomicBoolean pollScheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "target-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int released = executionTargetStore.releaseNodeTargets(nodeIdentity.getNodeId());
+        if (released > 0) {
+            logger.warn("{} bancos interrompidos na instância anterior do nó {} devolvidos à fila",
+                    released, nodeIdentity.getNodeId());
+        }
+
+        long heartbeatIntervalMs = TimeUnit.SECONDS.toMillis(leaseSeconds) / 3;
+        scheduler.scheduleWithFixedDelay(this::pollQuietly, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+
+        logger.info("TargetWorker iniciado no nó {}: lease de {}s", nodeIdentity.getNodeId(), leaseSeconds);
+    }
+
+    /**
+     * Antecipa o próximo ciclo (novos bancos pendentes ou capacidade liberada). Dentro de
+     * uma transação, espera o commit para que os bancos reenfileirados já estejam visíveis.
+     */
+    public void wakeUp() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedulePoll();
+                }
+            });
+        } else {
+            schedulePoll();
+        }
+    }
+
+    private void schedulePoll() {
+        if (scheduler != null && pollScheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                pollScheduled.set(false);
+                pollQuietly();
+            });
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            propagateCancellations();
+            poll();
+        } catch (Exception e) {
+            logger.error("Erro ao reivindicar bancos da fila: {}", e.getMessage());
+        }
+    }
+
+    private void poll() {
+        int slots = targetDispatcher.availableSlots();
+        if (slots == 0) {
+            return;
+        }
+
+        String nodeId = nodeIdentity.getNodeId();
+        List<ExecutionTargetStore.ClaimedTarget> claimed = executionTargetStore.claimTargets(
+                nodeId, slots, targetDispatcher.saturatedClusters(), leaseSeconds);
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Cluster> clusters = loadClusters(claimed);
+
+        for (ExecutionTargetStore.ClaimedTarget target : claimed) {
+            Cluster cluster = clusters.get(target.getClusterId());
+            ActiveExecution execution = cluster != null ? acquire(target.getQueryExecutionId()) : null;
+            if (execution == null) {
+                logger.warn("Banco {} reivindicado sem cluster ou execução, devolvendo à fila", target.getDatabaseName());
+                executionTargetStore.releaseTarget(target.getId(), nodeId);
+                continue;
+            }
+
+            QueryExecutionResult result = new QueryExecutionResult(execution.queryExecution, cluster, target.getDatabaseName());
+            result.setId(target.getId());
+            result.setStatus(QueryExecutionStatus.RUNNING);
+            result.setAttempts(target.getAttempts());
+
+            // Handle próprio do banco, para interrompê-lo sozinho se o lease for perdido
+            CancellationRegistry.ExecutionHandle cancellation =
+                    execution.cancellation.forTarget(cluster.getAlias() + "/" + target.getDatabaseName());
+            runningTargets.put(target.getId(), new RunningTarget(target.getQueryExecutionId(), cancellation));
+            boolean submitted = targetDispatcher.trySubmit(target.getClusterId(), () -> {
+                try {
+                    queryExecutorService.executeTarget(execution.queryExecution, result, cancellation);
+                    // Falha definitiva ou tentativa reagendada contam como falha da tarefa
+                    return result.getStatus() != QueryExecutionStatus.FAILED
+                            && result.getStatus() != QueryExecutionStatus.PENDING;
+                } finally {
+                    runningTargets.remove(target.getId());
+                    release(target.getQueryExecutionId());
+                    wakeUp();
+                }
+            });
+
+            if (!submitted) {
+                // Cluster atingiu o limite dentro deste mesmo lote
+                runningTargets.remove(target.getId());
+                release(target.getQueryExecutionId());
+                executionTargetStore.releaseTarget(target.getId(), nodeId);
+            }
+        }
+    }
+
+    private Map<Long, Cluster> loadClusters(List<ExecutionTargetStore.ClaimedTarget> claimed) {
+        Set<Long> clusterIds = new HashSet<>();
+        for (ExecutionTargetStore.ClaimedTarget target : claimed) {
+            clusterIds.add(target.getClusterId());
+        }
+
+        Map<Long, Cluster> clusters = new HashMap<>();
+        for (Cluster cluster : clusterTopologyCache.getClusters(clusterIds)) {
+            clusters.put(cluster.getId(), cluster);
+        }
+        return clusters;
+    }
+
+    private synchronized ActiveExecution acquire(long queryExecutionId) {
+        ActiveExecution execution = activeExecutions.get(queryExecutionId);
+        if (execution == null) {
+            QueryExecution queryExecution = queryExecutionRepository.findById(queryExecutionId).orElse(null);
+            if (queryExecution == null) {
+                return null;
+            }
+            execution = new ActiveExecution(queryExecution,
+                    cancellationRegistry.register(queryExecution.getExecutionId()));
+            activeExecutions.put(queryExecutionId, execution);
+        }
+        execution.references++;
+        return execution;
+    }
+
+    private synchronized void release(long queryExecutionId) {
+        ActiveExecution execution = activeExecutions.get(queryExecutionId);
+        if (execution != null && --execution.references == 0) {
+            activeExecutions.remove(queryExecutionId);
+            cancellationRegistry.unregister(execution.queryExecution.getExecutionId());
+        }
+    }
+
+    // Cancelamentos feitos em outro nó chegam aqui pelo status da execução
+    private void propagateCancellations() {
+        Set<Long> executionIds = new HashSet<>();
+        for (RunningTarget target : runningTargets.values()) {
+            executionIds.add(target.queryExecutionId);
+        }
+        for (Long queryExecutionId : executionTargetStore.findCancelled(executionIds)) {
+            ActiveExecution execution;
+            synchronized (this) {
+                execution = activeExecutions.get(queryExecutionId);
+            }
+            if (execution != null && !execution.cancellation.isCancelled()) {
+                execution.cancellation.cancel();
+            }
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            List<Long> lost = executionTargetStore.renewTargets(
+                    nodeIdentity.getNodeId(), new ArrayList<>(runningTargets.keySet()), leaseSeconds);
+            for (Long targetId : lost) {
+                // Outro nó pode já ter reivindicado o banco: interrompe o statement e descarta o resultado local
+                logger.warn("Lease do banco {} não pertence mais ao nó {}, interrompendo a execução local",
+                        targetId, nodeIdentity.getNodeId());
+                RunningTarget target = runningTargets.get(targetId);
+                if (target != null) {
+                    target.cancellation.abandon();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao renovar leases dos bancos: {}", e.getMessage());
+        }
+    }
+
+    public int getRunningTargetCount() {
+        return runningTargets.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Encerrando TargetWorker...");
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static final class RunningTarget {
+        private final long queryExecutionId;
+        private final CancellationRegistry.ExecutionHandle cancellation;
+
+        private RunningTarget(long queryExecutionId, CancellationRegistry.ExecutionHandle cancellation) {
+            this.queryExecutionId = queryExecutionId;
+            this.cancellation = cancellation;
+        }
+    }
+
+    private static final class ActiveExecution {
+        private final QueryExecution queryExecution;
+        private final CancellationRegistry.ExecutionHandle cancellation;
+        private int references;
+
+        private ActiveExecution(QueryExecution queryExecution, CancellationRegistry.ExecutionHandle cancellation) {
+            this.queryExecution = queryExecution;
+            this.cancellation = cancellation;
+        }
+    }
+}
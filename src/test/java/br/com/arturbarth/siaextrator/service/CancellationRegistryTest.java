@@ -0,0 +1,70 @@
+package br.com.arturbarth.siaextrator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CancellationRegistryTest {
+
+	@Test
+	void handleStaysRegisteredWhileAnyUserHoldsIt() {
+		CancellationRegistry registry = new CancellationRegistry();
+
+		CancellationRegistry.ExecutionHandle queue = registry.register("exec-1");
+		CancellationRegistry.ExecutionHandle worker = registry.register("exec-1");
+		assertSame(queue, worker);
+
+		// A fila termina antes dos bancos em andamento no nó
+		registry.unregister("exec-1");
+		assertTrue(registry.cancel("exec-1"));
+		assertTrue(worker.isCancelled());
+
+		registry.unregister("exec-1");
+		assertFalse(registry.cancel("exec-1"));
+		assertNotSame(worker, registry.register("exec-1"));
+	}
+
+	@Test
+	void abandoningTargetCancelsOnlyItsStatement() {
+		CancellationRegistry.ExecutionHandle execution = new CancellationRegistry().register("exec-1");
+		CancellationRegistry.ExecutionHandle lost = execution.forTarget("a/db1");
+		CancellationRegistry.ExecutionHandle other = execution.forTarget("a/db2");
+		AtomicInteger lostCancels = new AtomicInteger();
+		AtomicInteger otherCancels = new AtomicInteger();
+		lost.track(statement(lostCancels));
+		other.track(statement(otherCancels));
+
+		lost.abandon();
+		assertTrue(lost.isAbandoned());
+		assertEquals(1, lostCancels.get());
+		assertEquals(0, otherCancels.get());
+		assertFalse(execution.isCancelled());
+
+		// Cancelar a execução alcança os statements dos bancos
+		execution.cancel();
+		assertTrue(other.isCancelled());
+		assertFalse(other.isAbandoned());
+		assertEquals(1, otherCancels.get());
+	}
+
+	private Statement statement(AtomicInteger cancels) {
+		return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+				(proxy, method, args) -> switch (method.getName()) {
+					case "cancel" -> {
+						cancels.incrementAndGet();
+						yield null;
+					}
+					case "hashCode" -> System.identityHashCode(proxy);
+					case "equals" -> proxy == args[0];
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+}
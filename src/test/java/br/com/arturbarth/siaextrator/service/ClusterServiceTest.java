@@ -0,0 +1,87 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.entity.Cluster;
+import br.com.arturbarth.siaextrator.repository.ClusterRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ClusterServiceTest {
+
+	@Test
+	void failedDiscoveryMarksClusterInactiveInItsOwnTransaction() {
+		Cluster cluster = new Cluster();
+		cluster.setId(7L);
+		cluster.setAlias("fora-do-ar");
+		cluster.setConnectionActive(true);
+
+		List<String> events = new ArrayList<>();
+		ClusterService clusterService = new ClusterService();
+		ReflectionTestUtils.setField(clusterService, "clusterRepository", repositoryWith(cluster));
+		ReflectionTestUtils.setField(clusterService, "databaseDiscoveryService", new DatabaseDiscoveryService() {
+			@Override
+			public List<DiscoveredDatabase> discoverDatabases(Cluster target) {
+				throw new RuntimeException("Connection refused");
+			}
+		});
+		ReflectionTestUtils.setField(clusterService, "clusterTopologyCache", new ClusterTopologyCache());
+		ReflectionTestUtils.setField(clusterService, "transactionManager", transactionManager(events));
+		ReflectionTestUtils.setField(clusterService, "jdbcTemplate", new JdbcTemplate() {
+			@Override
+			public int update(String sql, Object... args) {
+				events.add("update " + sql.substring(0, sql.indexOf(" WHERE")) + " id=" + args[args.length - 1]);
+				return 1;
+			}
+		});
+		clusterService.init();
+
+		assertThrows(RuntimeException.class, () -> clusterService.discoverDatabases(7L));
+
+		// A gravação não depende da transação do chamador, que é desfeita pela exceção
+		assertEquals(List.of(
+				"begin REQUIRES_NEW",
+				"update UPDATE clusters SET connection_active = false, updated_at = ? id=7",
+				"commit"), events);
+	}
+
+	private ClusterRepository repositoryWith(Cluster cluster) {
+		return (ClusterRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{ClusterRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+					case "findById" -> cluster.getId().equals(args[0]) ? Optional.of(cluster) : Optional.empty();
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	private PlatformTransactionManager transactionManager(List<String> events) {
+		return new PlatformTransactionManager() {
+			@Override
+			public TransactionStatus getTransaction(TransactionDefinition definition) {
+				events.add("begin " + (definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW
+						? "REQUIRES_NEW" : "propagation " + definition.getPropagationBehavior()));
+				return new SimpleTransactionStatus();
+			}
+
+			@Override
+			public void commit(TransactionStatus status) {
+				events.add("commit");
+			}
+
+			@Override
+			public void rollback(TransactionStatus status) {
+				events.add("rollback");
+			}
+		};
+	}
+}
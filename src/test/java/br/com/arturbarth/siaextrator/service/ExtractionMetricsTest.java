@@ -0,0 +1,41 @@
+package br.com.arturbarth.siaextrator.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExtractionMetricsTest {
+
+	@Test
+	void clusterMetersTagFailuresBySqlState() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		ExtractionMetrics.ClusterMeters meters = new ExtractionMetrics.ClusterMeters(registry, "prod");
+
+		meters.recordSuccess();
+		meters.recordSuccess();
+		meters.recordFailure("57014");
+		meters.recordFailure(null);
+
+		assertEquals(2.0, registry.get("extrator.queries").tags("cluster", "prod", "outcome", "success").counter().count());
+		assertEquals(1.0, registry.get("extrator.queries").tags("sqlstate", "57014").counter().count());
+		assertEquals(1.0, registry.get("extrator.queries").tags("sqlstate", "unknown").counter().count());
+	}
+
+	@Test
+	void clusterMetersTrackInFlightAndFetchedRows() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		ExtractionMetrics.ClusterMeters meters = new ExtractionMetrics.ClusterMeters(registry, "prod");
+
+		meters.queryStarted();
+		meters.queryStarted();
+		meters.queryFinished();
+		meters.recordFetched(10, ExtractionMetrics.estimateSize("abcd") + ExtractionMetrics.estimateSize(42L)
+				+ ExtractionMetrics.estimateSize(null));
+
+		assertEquals(1.0, registry.get("extrator.queries.in.flight").tag("cluster", "prod").gauge().value());
+		assertEquals(10.0, registry.get("extrator.fetch.rows").counter().count());
+		assertEquals(12.0, registry.get("extrator.fetch.bytes").counter().count());
+	}
+}
@@ -0,0 +1,27 @@
+package br.com.arturbarth.siaextrator.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RdsExecutorServiceTest {
+
+	@Test
+	void wrapsQueryInLimitDroppingTrailingSemicolons() {
+		assertEquals("SELECT * FROM (\nselect id from clientes\n) AS limited_query LIMIT 100",
+				RdsExecutorService.limitedSql("  select id from clientes ;; ", 100, null));
+	}
+
+	@Test
+	void trailingLineCommentDoesNotSwallowTheLimit() {
+		String sql = RdsExecutorService.limitedSql("select id from clientes -- todos", 10, null);
+
+		assertEquals("SELECT * FROM (\nselect id from clientes -- todos\n) AS limited_query LIMIT 10", sql);
+	}
+
+	@Test
+	void samplesAFractionOfTheResultBeforeLimiting() {
+		assertEquals("SELECT * FROM (\nselect id from clientes\n) AS limited_query WHERE random() < 0.05 LIMIT 10",
+				RdsExecutorService.limitedSql("select id from clientes", 10, 5.0));
+	}
+}
@@ -0,0 +1,111 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.dto.ExecutionPlan;
+import br.com.arturbarth.siaextrator.entity.ResultFormat;
+import br.com.arturbarth.siaextrator.repository.QueryExecutionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultCacheTest {
+
+	private ResultCache resultCache;
+
+	@BeforeEach
+	void setUp() {
+		resultCache = new ResultCache();
+		ReflectionTestUtils.setField(resultCache, "enabled", true);
+	}
+
+	@Test
+	void normalizesWhitespaceOutsideLiterals() {
+		assertEquals("SELECT a, 'x  y' FROM t", ResultCache.normalizeSql("  SELECT   a,\n\t'x  y'\nFROM t ;  "));
+	}
+
+	@Test
+	void keyIgnoresTargetOrderButNotFormat() {
+		ExecutionPlan plan = plan(ResultFormat.CSV, new ExecutionPlan.Target(1L, "a", "db1"), new ExecutionPlan.Target(2L, "b", "db2"));
+		ExecutionPlan reordered = plan(ResultFormat.CSV, new ExecutionPlan.Target(2L, "b", "db2"), new ExecutionPlan.Target(1L, "a", "db1"));
+		ExecutionPlan parquet = plan(ResultFormat.PARQUET, new ExecutionPlan.Target(1L, "a", "db1"), new ExecutionPlan.Target(2L, "b", "db2"));
+
+		String key = resultCache.cacheKey("select 1", plan);
+		assertEquals(key, resultCache.cacheKey("select   1;", reordered));
+		assertNotEquals(key, resultCache.cacheKey("select 1", parquet));
+	}
+
+	@Test
+	void skipsPlansWithClustersPendingRediscovery() {
+		ExecutionPlan plan = plan(ResultFormat.CSV, new ExecutionPlan.Target(1L, "a", "db1"));
+		plan.getRediscoverClusterIds().add(2L);
+
+		assertNull(resultCache.cacheKey("select 1", plan));
+	}
+
+	@Test
+	void evictionCountsLinkedFilesOnceAndSkipsLiveExecutions(@TempDir Path storage) throws IOException {
+		// "hit" foi atendida pelo cache com links para "original"; "live" foi reaberta pelo retry-failed
+		Path original = artifact(storage, "original", 400 * 1024);
+		Path hit = Files.createDirectories(storage.resolve("hit"));
+		Files.createLink(hit.resolve("a_db.csv"), original.resolve("a_db.csv"));
+		Files.writeString(manifest(hit), "a_db.csv\t0\n");
+		Path live = artifact(storage, "live", 400 * 1024);
+
+		ReflectionTestUtils.setField(resultCache, "storagePath", storage.toString());
+		ReflectionTestUtils.setField(resultCache, "maxSizeMb", 1L);
+		ReflectionTestUtils.setField(resultCache, "queryExecutionRepository", repositoryWithLive("live"));
+
+		// 800 KB em disco, apesar de três diretórios com 400 KB cada
+		resultCache.evict();
+		assertTrue(Files.exists(original));
+		assertTrue(Files.exists(hit));
+
+		// Acima do limite: o espaço do arquivo ligado só é liberado removendo os dois diretórios
+		Files.write(live.resolve("b_db.csv"), new byte[400 * 1024]);
+		resultCache.evict();
+		assertFalse(Files.exists(original));
+		assertFalse(Files.exists(hit));
+		assertTrue(Files.exists(live));
+	}
+
+	private Path artifact(Path storage, String executionId, int bytes) throws IOException {
+		Path directory = Files.createDirectories(storage.resolve(executionId));
+		Files.write(directory.resolve("a_db.csv"), new byte[bytes]);
+		Files.writeString(manifest(directory), "a_db.csv\t0\n");
+		return directory;
+	}
+
+	private Path manifest(Path directory) {
+		return directory.resolve(directory.getFileName() + "_consolidated" + ResultManifest.MANIFEST_EXTENSION);
+	}
+
+	private QueryExecutionRepository repositoryWithLive(String executionId) {
+		return (QueryExecutionRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{QueryExecutionRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+					case "findExecutionIdsByStatusIn" -> List.of(executionId);
+					case "existsByExecutionIdAndStatusIn" -> executionId.equals(args[0]);
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	private ExecutionPlan plan(ResultFormat format, ExecutionPlan.Target... targets) {
+		ExecutionPlan plan = new ExecutionPlan();
+		plan.setOutputFormat(format);
+		for (ExecutionPlan.Target target : targets) {
+			plan.getTargets().add(target);
+		}
+		return plan;
+	}
+}
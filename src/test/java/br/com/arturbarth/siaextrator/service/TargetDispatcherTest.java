@@ -0,0 +1,201 @@
+package br.com.arturbarth.siaextrator.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TargetDispatcherTest {
+
+	private TargetDispatcher dispatcher;
+
+	@BeforeEach
+	void setUp() {
+		dispatcher = new TargetDispatcher();
+		ReflectionTestUtils.setField(dispatcher, "maxConcurrency", 6);
+		ReflectionTestUtils.setField(dispatcher, "maxConcurrencyPerCluster", 2);
+		dispatcher.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		dispatcher.shutdown();
+	}
+
+	@Test
+	void respectsGlobalAndPerClusterLimits() throws InterruptedException {
+		List<long[]> targets = new ArrayList<>();
+		for (long cluster = 1; cluster <= 4; cluster++) {
+			for (int database = 0; database < 10; database++) {
+				targets.add(new long[]{cluster, database});
+			}
+		}
+
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		Map<Long, AtomicInteger> runningByCluster = new ConcurrentHashMap<>();
+		Map<Long, AtomicInteger> maxByCluster = new ConcurrentHashMap<>();
+		AtomicInteger executed = new AtomicInteger();
+
+		dispatcher.dispatch(targets, target -> target[0], target -> {
+			AtomicInteger clusterRunning = runningByCluster.computeIfAbsent(target[0], id -> new AtomicInteger());
+			AtomicInteger clusterMax = maxByCluster.computeIfAbsent(target[0], id -> new AtomicInteger());
+
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			clusterMax.accumulateAndGet(clusterRunning.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			clusterRunning.decrementAndGet();
+			running.decrementAndGet();
+			executed.incrementAndGet();
+		}, () -> false, Long.MAX_VALUE);
+
+		assertEquals(targets.size(), executed.get());
+		assertTrue(maxRunning.get() <= 6, "limite global excedido: " + maxRunning.get());
+		maxByCluster.values().forEach(max -> assertTrue(max.get() <= 2, "limite por cluster excedido: " + max.get()));
+	}
+
+	@Test
+	void skipsPendingTargetsOnceCancelled() throws InterruptedException {
+		List<long[]> targets = new ArrayList<>();
+		for (int database = 0; database < 20; database++) {
+			targets.add(new long[]{1, database});
+		}
+
+		AtomicInteger executed = new AtomicInteger();
+		int skipped = dispatcher.dispatch(targets, target -> target[0], target -> {
+			executed.incrementAndGet();
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, () -> executed.get() >= 3, Long.MAX_VALUE);
+
+		assertTrue(skipped > 0, "nenhum alvo descartado");
+		assertEquals(targets.size(), executed.get() + skipped);
+	}
+
+	@Test
+	void trySubmitRefusesWhenClusterIsSaturated() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(2);
+		BooleanSupplier blocking = () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finished.countDown();
+			return true;
+		};
+
+		assertTrue(dispatcher.trySubmit(1, blocking));
+		assertTrue(dispatcher.trySubmit(1, blocking));
+		assertFalse(dispatcher.trySubmit(1, blocking));
+		assertTrue(dispatcher.saturatedClusters().contains(1L));
+		assertEquals(4, dispatcher.availableSlots());
+
+		release.countDown();
+		assertTrue(finished.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void countsTargetsReportedAsFailed() throws InterruptedException {
+		CountDownLatch finished = new CountDownLatch(3);
+		assertTrue(dispatcher.trySubmit(1, () -> {
+			finished.countDown();
+			return true;
+		}));
+		assertTrue(dispatcher.trySubmit(1, () -> {
+			finished.countDown();
+			return false;
+		}));
+		assertTrue(dispatcher.trySubmit(2, () -> {
+			finished.countDown();
+			throw new IllegalStateException("falha não tratada");
+		}));
+
+		assertTrue(finished.await(5, TimeUnit.SECONDS));
+		while (dispatcher.getCompletedTasks() < 3) {
+			Thread.sleep(5);
+		}
+		assertEquals(2L, dispatcher.getFailedTasks());
+	}
+
+	@Test
+	void deadlineDispatchDoesNotWaitForBusyGlobalPermits() throws InterruptedException {
+		// Extrações longas ocupando todas as permissões globais
+		CountDownLatch release = new CountDownLatch(1);
+		for (long cluster = 1; cluster <= 3; cluster++) {
+			for (int i = 0; i < 2; i++) {
+				assertTrue(dispatcher.trySubmit(cluster, () -> {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return true;
+				}));
+			}
+		}
+
+		List<long[]> targets = List.of(new long[]{4, 0}, new long[]{4, 1});
+		long start = System.nanoTime();
+		int skipped = dispatcher.dispatchAllUntil(targets, target -> target[0], target -> {
+		}, System.currentTimeMillis() + 200);
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		release.countDown();
+
+		assertEquals(2, skipped);
+		assertTrue(elapsedMs < 2000, "prévia aguardou permissões por " + elapsedMs + "ms");
+	}
+
+	@Test
+	void virtualModeRespectsPerClusterLimit() throws InterruptedException {
+		dispatcher.shutdown();
+		dispatcher = new TargetDispatcher();
+		ReflectionTestUtils.setField(dispatcher, "maxConcurrency", 6);
+		ReflectionTestUtils.setField(dispatcher, "maxConcurrencyPerCluster", 2);
+		ReflectionTestUtils.setField(dispatcher, "threadMode", "virtual");
+		dispatcher.init();
+
+		List<long[]> targets = new ArrayList<>();
+		for (int database = 0; database < 20; database++) {
+			targets.add(new long[]{1, database});
+		}
+
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		dispatcher.dispatch(targets, target -> target[0], target -> {
+			assertTrue(Thread.currentThread().isVirtual());
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+		}, () -> false, Long.MAX_VALUE);
+
+		assertTrue(maxRunning.get() <= 2, "limite por cluster excedido: " + maxRunning.get());
+		assertEquals("virtual", dispatcher.getStats().getThreadMode());
+		assertEquals(20L, dispatcher.getStats().getCompletedTasks());
+	}
+}
@@ -0,0 +1,48 @@
+package br.com.arturbarth.siaextrator.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TargetRetryPolicyTest {
+
+	private TargetRetryPolicy policy;
+
+	@BeforeEach
+	void setUp() {
+		policy = new TargetRetryPolicy();
+		ReflectionTestUtils.setField(policy, "maxAttempts", 3);
+		ReflectionTestUtils.setField(policy, "initialBackoffMs", 1000L);
+		ReflectionTestUtils.setField(policy, "maxBackoffMs", 4000L);
+	}
+
+	@Test
+	void retriesOnlyTransientSqlStatesWithinAttemptLimit() {
+		RuntimeException connectionLost = new RuntimeException("Falha na execução da query",
+				new SQLException("conexão perdida", "08006"));
+		RuntimeException syntaxError = new RuntimeException("Falha na execução da query",
+				new SQLException("erro de sintaxe", "42601"));
+		RuntimeException statementTimeout = new RuntimeException("Falha na execução da query",
+				new SQLException("cancelada", "57014"));
+
+		assertTrue(policy.shouldRetry(1, connectionLost));
+		assertFalse(policy.shouldRetry(3, connectionLost));
+		assertFalse(policy.shouldRetry(1, syntaxError));
+		assertFalse(policy.shouldRetry(1, statementTimeout));
+	}
+
+	@Test
+	void backoffDoublesUpToMaximum() {
+		LocalDateTime before = LocalDateTime.now();
+
+		assertTrue(policy.nextAttemptAt(1).isAfter(before.plusNanos(999_000_000)));
+		assertTrue(policy.nextAttemptAt(2).isAfter(before.plusSeconds(2).minusNanos(1_000_000)));
+		assertTrue(policy.nextAttemptAt(10).isBefore(LocalDateTime.now().plusSeconds(6)));
+	}
+}
@@ -0,0 +1,64 @@
+package br.com.arturbarth.siaextrator.service;
+
+import br.com.arturbarth.siaextrator.entity.Cluster;
+import br.com.arturbarth.siaextrator.entity.QueryExecutionResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TargetSchedulerTest {
+
+	@Test
+	void ordersLargestFirstInterleavingClustersInWaves() {
+		Cluster big = cluster(1L);
+		Cluster small = cluster(2L);
+
+		List<QueryExecutionResult> targets = new ArrayList<>();
+		Map<QueryExecutionResult, Double> costs = new HashMap<>();
+		add(targets, costs, big, "banco_a", 10);
+		add(targets, costs, big, "banco_b", 800);
+		add(targets, costs, big, "banco_c", 300);
+		add(targets, costs, small, "banco_d", 5);
+		add(targets, costs, small, "banco_e", 50);
+
+		List<QueryExecutionResult> ordered = TargetScheduler.order(targets, costs, 2);
+
+		// Primeira onda: até 2 bancos de cada cluster, os mais caros primeiro
+		assertEquals(List.of("banco_b", "banco_c", "banco_e", "banco_d", "banco_a"), names(ordered));
+	}
+
+	@Test
+	void singleClusterIsPureLargestFirst() {
+		Cluster cluster = cluster(1L);
+
+		List<QueryExecutionResult> targets = new ArrayList<>();
+		Map<QueryExecutionResult, Double> costs = new HashMap<>();
+		add(targets, costs, cluster, "banco_a", 1);
+		add(targets, costs, cluster, "banco_b", 3);
+		add(targets, costs, cluster, "banco_c", 2);
+
+		assertEquals(List.of("banco_b", "banco_c", "banco_a"), names(TargetScheduler.order(targets, costs, 1)));
+	}
+
+	private static Cluster cluster(Long id) {
+		Cluster cluster = new Cluster();
+		cluster.setId(id);
+		return cluster;
+	}
+
+	private static void add(List<QueryExecutionResult> targets, Map<QueryExecutionResult, Double> costs,
+							Cluster cluster, String databaseName, double cost) {
+		QueryExecutionResult target = new QueryExecutionResult(null, cluster, databaseName);
+		targets.add(target);
+		costs.put(target, cost);
+	}
+
+	private static List<String> names(List<QueryExecutionResult> targets) {
+		return targets.stream().map(QueryExecutionResult::getDatabaseName).toList();
+	}
+}